@@ -57,6 +57,18 @@ function showMessage(elementId, message, alertClass) {
         result.className = `alert ${alertClass}`;
     }
 }
+/**
+ * Hängt einen Button an eine Liste an, der die nächste Seite der Liste lädt
+ * @param list Liste an die der Button angehängt wird
+ * @param loadMore Funktion welche die nächste Seite lädt
+ */
+function appendLoadMoreButton(list, loadMore) {
+    const button = document.createElement('button');
+    button.classList.add('load-more-btn', 'btn', 'btn-secondary', 'btn-sm');
+    button.textContent = 'Load more';
+    button.addEventListener('click', () => loadMore());
+    list.appendChild(button);
+}
 /**
  * Entnimmt die User ID aus localStorage
  *  @returns Die User ID als String
@@ -115,10 +127,10 @@ function createAlbum(title, tags) {
 /**
  * Ruft alle Alben des Benutzers ab und zeigt diese in einem html element
  */
-function getAllAlbums() {
+function getAllAlbums(cursor) {
     return __awaiter(this, void 0, void 0, function* () {
         const userID = getUserID();
-        const url = `http://localhost:8888/${userID}/albums`;
+        const url = `http://localhost:8888/${userID}/albums` + (cursor ? `?cursor=${encodeURIComponent(cursor)}` : '');
         const options = {
             method: 'GET',
             mode: 'cors',
@@ -133,7 +145,13 @@ function getAllAlbums() {
             if (res.ok) {
                 const albumsList = document.getElementById('albumsList');
                 if (albumsList) {
-                    albumsList.innerHTML = '';
+                    if (!cursor) {
+                        albumsList.innerHTML = '';
+                    }
+                    const loadMoreBtn = albumsList.querySelector('.load-more-btn');
+                    if (loadMoreBtn) {
+                        loadMoreBtn.remove();
+                    }
                     if (data.length > 0) {
                         data.forEach((album) => {
                             const albumItem = document.createElement('div');
@@ -166,8 +184,12 @@ function getAllAlbums() {
                                 });
                             }
                         });
+                        const nextCursor = res.headers.get('X-Next-Cursor');
+                        if (nextCursor) {
+                            appendLoadMoreButton(albumsList, () => getAllAlbums(nextCursor));
+                        }
                     }
-                    else {
+                    else if (!cursor) {
                         albumsList.textContent = "No albums found.";
                     }
                 }
@@ -185,10 +207,10 @@ function getAllAlbums() {
  * Sucht nach einem Album basierend auf dem eingegeben Suchwort und zeigt das Ergebnis in einem html element
  * @param searchTerm Suchwort welches in Albumtitel und Tags berücksichtigt wird
  */
-function searchAlbum(searchTerm) {
+function searchAlbum(searchTerm, cursor) {
     return __awaiter(this, void 0, void 0, function* () {
         const userID = getUserID();
-        const url = `http://localhost:8888/${userID}/albums/search?searchTerm=${encodeURIComponent(searchTerm)}`;
+        const url = `http://localhost:8888/${userID}/albums/search?searchTerm=${encodeURIComponent(searchTerm)}` + (cursor ? `&cursor=${encodeURIComponent(cursor)}` : '');
         const options = {
             method: 'GET',
             mode: 'cors',
@@ -203,7 +225,13 @@ function searchAlbum(searchTerm) {
             if (res.ok) {
                 const albumsList = document.getElementById('albumsList');
                 if (albumsList) {
-                    albumsList.innerHTML = '';
+                    if (!cursor) {
+                        albumsList.innerHTML = '';
+                    }
+                    const loadMoreBtn = albumsList.querySelector('.load-more-btn');
+                    if (loadMoreBtn) {
+                        loadMoreBtn.remove();
+                    }
                     if (data.length > 0) {
                         data.forEach((album) => {
                             const albumItem = document.createElement('div');
@@ -236,8 +264,12 @@ function searchAlbum(searchTerm) {
                                 });
                             }
                         });
+                        const nextCursor = res.headers.get('X-Next-Cursor');
+                        if (nextCursor) {
+                            appendLoadMoreButton(albumsList, () => searchAlbum(searchTerm, nextCursor));
+                        }
                     }
-                    else {
+                    else if (!cursor) {
                         albumsList.textContent = "No albums found.";
                     }
                 }
@@ -307,7 +339,7 @@ function getAllPhotos() {
                             const photoItem = document.createElement('div');
                             photoItem.classList.add('photo-item', 'alert', 'alert-info');
                             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                         `;
                             photosList.appendChild(photoItem);
@@ -361,7 +393,7 @@ function getAllPhotosFromAlbum(albumID) {
                             const photoItem = document.createElement('div');
                             photoItem.classList.add('photo-item', 'alert', 'alert-info');
                             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                             <button class="remove-btn btn btn-danger btn-sm ml-2">Remove from Album</button>
                         `;
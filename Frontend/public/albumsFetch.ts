@@ -45,6 +45,19 @@ function showMessage(elementId: string, message: string, alertClass: string): vo
   }
 }
 
+/**
+ * Hängt einen Button an eine Liste an, der die nächste Seite der Liste lädt
+ * @param list Liste an die der Button angehängt wird
+ * @param loadMore Funktion welche die nächste Seite lädt
+ */
+function appendLoadMoreButton(list: HTMLElement, loadMore: () => Promise<void>): void {
+  const button = document.createElement('button');
+  button.classList.add('load-more-btn', 'btn', 'btn-secondary', 'btn-sm');
+  button.textContent = 'Load more';
+  button.addEventListener('click', () => loadMore());
+  list.appendChild(button);
+}
+
 /**
  * Entnimmt die User ID aus localStorage
  *  @returns Die User ID als String
@@ -104,9 +117,9 @@ async function createAlbum(title: string, tags: string): Promise<void> {
 /**
  * Ruft alle Alben des Benutzers ab und zeigt diese in einem html element
  */
-async function getAllAlbums(): Promise<void> {
+async function getAllAlbums(cursor?: string): Promise<void> {
   const userID = getUserID();
-  const url = `http://localhost:8888/${userID}/albums`;
+  const url = `http://localhost:8888/${userID}/albums` + (cursor ? `?cursor=${encodeURIComponent(cursor)}` : '');
   const options: RequestInit = {
     method: 'GET',
     mode: 'cors',
@@ -123,7 +136,13 @@ async function getAllAlbums(): Promise<void> {
     if (res.ok) {
       const albumsList: HTMLElement | null = document.getElementById('albumsList');
       if (albumsList) {
-        albumsList.innerHTML = '';
+        if (!cursor) {
+          albumsList.innerHTML = '';
+        }
+        const loadMoreBtn = albumsList.querySelector('.load-more-btn');
+        if (loadMoreBtn) {
+          loadMoreBtn.remove();
+        }
 
         if (data.length > 0) {
           data.forEach((album: { albumID: number, title: string, tags: string }) => {
@@ -161,7 +180,11 @@ async function getAllAlbums(): Promise<void> {
               });
             }
           });
-        } else {
+          const nextCursor = res.headers.get('X-Next-Cursor');
+          if (nextCursor) {
+            appendLoadMoreButton(albumsList, () => getAllAlbums(nextCursor));
+          }
+        } else if (!cursor) {
           albumsList.textContent = "No albums found.";
         }
       }
@@ -177,9 +200,9 @@ async function getAllAlbums(): Promise<void> {
  * Sucht nach einem Album basierend auf dem eingegeben Suchwort und zeigt das Ergebnis in einem html element
  * @param searchTerm Suchwort welches in Albumtitel und Tags berücksichtigt wird
  */
-async function searchAlbum(searchTerm: string): Promise<void> {
+async function searchAlbum(searchTerm: string, cursor?: string): Promise<void> {
   const userID = getUserID();
-  const url = `http://localhost:8888/${userID}/albums/search?searchTerm=${encodeURIComponent(searchTerm)}`;
+  const url = `http://localhost:8888/${userID}/albums/search?searchTerm=${encodeURIComponent(searchTerm)}` + (cursor ? `&cursor=${encodeURIComponent(cursor)}` : '');
   const options: RequestInit = {
     method: 'GET',
     mode: 'cors',
@@ -196,7 +219,13 @@ async function searchAlbum(searchTerm: string): Promise<void> {
     if (res.ok) {
       const albumsList: HTMLElement | null = document.getElementById('albumsList');
       if (albumsList) {
-        albumsList.innerHTML = '';
+        if (!cursor) {
+          albumsList.innerHTML = '';
+        }
+        const loadMoreBtn = albumsList.querySelector('.load-more-btn');
+        if (loadMoreBtn) {
+          loadMoreBtn.remove();
+        }
 
         if (data.length > 0) {
           data.forEach((album: { albumID: number, title: string, tags: string }) => {
@@ -234,7 +263,11 @@ async function searchAlbum(searchTerm: string): Promise<void> {
               });
             }
           });
-        } else {
+          const nextCursor = res.headers.get('X-Next-Cursor');
+          if (nextCursor) {
+            appendLoadMoreButton(albumsList, () => searchAlbum(searchTerm, nextCursor));
+          }
+        } else if (!cursor) {
           albumsList.textContent = "No albums found.";
         }
       }
@@ -306,11 +339,11 @@ async function getAllPhotos(): Promise<void> {
         photosList.innerHTML = '';
 
         if (data.length > 0) {
-          data.forEach((photo: { photoID: number, title: string, tags: string, url: string }) => {
+          data.forEach((photo: { photoID: number, title: string, tags: string, url: string, version: string }) => {
             const photoItem = document.createElement('div');
             photoItem.classList.add('photo-item', 'alert', 'alert-info');
             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                         `;
             photosList.appendChild(photoItem);
@@ -360,11 +393,11 @@ async function getAllPhotosFromAlbum(albumID: number): Promise<void> {
         photosList.innerHTML = '';
 
         if (data.length > 0) {
-          data.forEach((photo: { photoID: number, title: string, tags: string, url: string }) => {
+          data.forEach((photo: { photoID: number, title: string, tags: string, url: string, version: string }) => {
             const photoItem = document.createElement('div');
             photoItem.classList.add('photo-item', 'alert', 'alert-info');
             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                             <button class="remove-btn btn btn-danger btn-sm ml-2">Remove from Album</button>
                         `;
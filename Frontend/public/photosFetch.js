@@ -54,6 +54,18 @@ function showMessage(elementId, message, alertClass) {
         result.className = `alert ${alertClass}`;
     }
 }
+/**
+ * Hängt einen Button an eine Liste an, der die nächste Seite der Liste lädt
+ * @param list Liste an die der Button angehängt wird
+ * @param loadMore Funktion welche die nächste Seite lädt
+ */
+function appendLoadMoreButton(list, loadMore) {
+    const button = document.createElement('button');
+    button.classList.add('load-more-btn', 'btn', 'btn-secondary', 'btn-sm');
+    button.textContent = 'Load more';
+    button.addEventListener('click', () => loadMore());
+    list.appendChild(button);
+}
 /**
  * Entnimmt die User ID aus localStorage
  *  @returns Die User ID als String
@@ -115,10 +127,10 @@ function uploadPhoto(title, capture_date, tags, file) {
 /**
  * Ruft alle Fotos des Benutzers ab und zeigt diese in einem html element
  */
-function getAllPhotos() {
+function getAllPhotos(cursor) {
     return __awaiter(this, void 0, void 0, function* () {
         const userID = getUserID();
-        const url = `http://localhost:8888/${userID}/photos`;
+        const url = `http://localhost:8888/${userID}/photos` + (cursor ? `?cursor=${encodeURIComponent(cursor)}` : '');
         const options = {
             method: 'GET',
             mode: 'cors',
@@ -133,13 +145,19 @@ function getAllPhotos() {
             if (res.ok) {
                 const photosList = document.getElementById('photosList');
                 if (photosList) {
-                    photosList.innerHTML = '';
+                    if (!cursor) {
+                        photosList.innerHTML = '';
+                    }
+                    const loadMoreBtn = photosList.querySelector('.load-more-btn');
+                    if (loadMoreBtn) {
+                        loadMoreBtn.remove();
+                    }
                     if (data.length > 0) {
                         data.forEach((photo) => {
                             const photoItem = document.createElement('div');
                             photoItem.classList.add('photo-item', 'alert', 'alert-info');
                             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}?v=${photo.version}">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                             <button class="edit-btn btn btn-warning btn-sm ml-2">Edit</button>
                             <button class="delete-btn btn btn-danger btn-sm ml-2">Delete</button>
@@ -165,8 +183,12 @@ function getAllPhotos() {
                                 });
                             }
                         });
+                        const nextCursor = res.headers.get('X-Next-Cursor');
+                        if (nextCursor) {
+                            appendLoadMoreButton(photosList, () => getAllPhotos(nextCursor));
+                        }
                     }
-                    else {
+                    else if (!cursor) {
                         photosList.textContent = "No photos found.";
                     }
                 }
@@ -184,10 +206,10 @@ function getAllPhotos() {
  * Sucht nach einem Foto basierend auf dem eingegeben Suchwort und zeigt das Ergebnis in einem html element
  * @param searchTerm Suchwort welches im Titel und Tags berücksichtigt wird
  */
-function searchPhoto(searchTerm) {
+function searchPhoto(searchTerm, cursor) {
     return __awaiter(this, void 0, void 0, function* () {
         const userID = getUserID();
-        const url = `http://localhost:8888/${userID}/photos/search?searchTerm=${encodeURIComponent(searchTerm)}`;
+        const url = `http://localhost:8888/${userID}/photos/search?searchTerm=${encodeURIComponent(searchTerm)}` + (cursor ? `&cursor=${encodeURIComponent(cursor)}` : '');
         const options = {
             method: 'GET',
             mode: 'cors',
@@ -202,13 +224,19 @@ function searchPhoto(searchTerm) {
             if (res.ok) {
                 const photosList = document.getElementById('photosList');
                 if (photosList) {
-                    photosList.innerHTML = '';
+                    if (!cursor) {
+                        photosList.innerHTML = '';
+                    }
+                    const loadMoreBtn = photosList.querySelector('.load-more-btn');
+                    if (loadMoreBtn) {
+                        loadMoreBtn.remove();
+                    }
                     if (data.length > 0) {
                         data.forEach((photo) => {
                             const photoItem = document.createElement('div');
                             photoItem.classList.add('photo-item', 'alert', 'alert-info');
                             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}?v=${photo.version}">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                             <button class="edit-btn btn btn-warning btn-sm ml-2">Edit</button>
                             <button class="delete-btn btn btn-danger btn-sm ml-2">Delete</button>
@@ -234,8 +262,12 @@ function searchPhoto(searchTerm) {
                                 });
                             }
                         });
+                        const nextCursor = res.headers.get('X-Next-Cursor');
+                        if (nextCursor) {
+                            appendLoadMoreButton(photosList, () => searchPhoto(searchTerm, nextCursor));
+                        }
                     }
-                    else {
+                    else if (!cursor) {
                         photosList.textContent = "No photos found.";
                     }
                 }
@@ -43,6 +43,19 @@ function showMessage(elementId: string, message: string, alertClass: string): vo
   }
 }
 
+/**
+ * Hängt einen Button an eine Liste an, der die nächste Seite der Liste lädt
+ * @param list Liste an die der Button angehängt wird
+ * @param loadMore Funktion welche die nächste Seite lädt
+ */
+function appendLoadMoreButton(list: HTMLElement, loadMore: () => Promise<void>): void {
+  const button = document.createElement('button');
+  button.classList.add('load-more-btn', 'btn', 'btn-secondary', 'btn-sm');
+  button.textContent = 'Load more';
+  button.addEventListener('click', () => loadMore());
+  list.appendChild(button);
+}
+
 /**
  * Entnimmt die User ID aus localStorage
  *  @returns Die User ID als String
@@ -106,9 +119,9 @@ async function uploadPhoto(title: string, capture_date: string, tags: string, fi
 /**
  * Ruft alle Fotos des Benutzers ab und zeigt diese in einem html element
  */
-async function getAllPhotos(): Promise<void> {
+async function getAllPhotos(cursor?: string): Promise<void> {
   const userID = getUserID();
-  const url = `http://localhost:8888/${userID}/photos`;
+  const url = `http://localhost:8888/${userID}/photos` + (cursor ? `?cursor=${encodeURIComponent(cursor)}` : '');
   const options: RequestInit = {
     method: 'GET',
     mode: 'cors',
@@ -125,14 +138,20 @@ async function getAllPhotos(): Promise<void> {
     if (res.ok) {
       const photosList: HTMLElement | null = document.getElementById('photosList');
       if (photosList) {
-        photosList.innerHTML = '';
+        if (!cursor) {
+          photosList.innerHTML = '';
+        }
+        const loadMoreBtn = photosList.querySelector('.load-more-btn');
+        if (loadMoreBtn) {
+          loadMoreBtn.remove();
+        }
 
         if (data.length > 0) {
-          data.forEach((photo: { photoID: number, title: string, tags: string, url: string }) => {
+          data.forEach((photo: { photoID: number, title: string, tags: string, url: string, version: string }) => {
             const photoItem = document.createElement('div');
             photoItem.classList.add('photo-item', 'alert', 'alert-info');
             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}?v=${photo.version}">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                             <button class="edit-btn btn btn-warning btn-sm ml-2">Edit</button>
                             <button class="delete-btn btn btn-danger btn-sm ml-2">Delete</button>
@@ -162,7 +181,11 @@ async function getAllPhotos(): Promise<void> {
               });
             }
           });
-        } else {
+          const nextCursor = res.headers.get('X-Next-Cursor');
+          if (nextCursor) {
+            appendLoadMoreButton(photosList, () => getAllPhotos(nextCursor));
+          }
+        } else if (!cursor) {
           photosList.textContent = "No photos found.";
         }
       }
@@ -178,9 +201,9 @@ async function getAllPhotos(): Promise<void> {
  * Sucht nach einem Foto basierend auf dem eingegeben Suchwort und zeigt das Ergebnis in einem html element
  * @param searchTerm Suchwort welches im Titel und Tags berücksichtigt wird
  */
-async function searchPhoto(searchTerm: string): Promise<void> {
+async function searchPhoto(searchTerm: string, cursor?: string): Promise<void> {
   const userID = getUserID();
-  const url = `http://localhost:8888/${userID}/photos/search?searchTerm=${encodeURIComponent(searchTerm)}`;
+  const url = `http://localhost:8888/${userID}/photos/search?searchTerm=${encodeURIComponent(searchTerm)}` + (cursor ? `&cursor=${encodeURIComponent(cursor)}` : '');
   const options: RequestInit = {
     method: 'GET',
     mode: 'cors',
@@ -197,14 +220,20 @@ async function searchPhoto(searchTerm: string): Promise<void> {
     if (res.ok) {
       const photosList: HTMLElement | null = document.getElementById('photosList');
       if (photosList) {
-        photosList.innerHTML = '';
+        if (!cursor) {
+          photosList.innerHTML = '';
+        }
+        const loadMoreBtn = photosList.querySelector('.load-more-btn');
+        if (loadMoreBtn) {
+          loadMoreBtn.remove();
+        }
 
         if (data.length > 0) {
-          data.forEach((photo: { photoID: number, title: string, tags: string, url: string }) => {
+          data.forEach((photo: { photoID: number, title: string, tags: string, url: string, version: string }) => {
             const photoItem = document.createElement('div');
             photoItem.classList.add('photo-item', 'alert', 'alert-info');
             photoItem.innerHTML = `
-                            <img src="http://localhost:8888/photos/${photo.photoID}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}">
+                            <img src="http://localhost:8888/photos/${photo.photoID}?size=128&v=${photo.version}" alt="${photo.title}" style="max-width: 100px; max-height: 100px;" class="photo-thumbnail" data-photo-url="http://localhost:8888/photos/${photo.photoID}?v=${photo.version}">
                             <span class="photo-title" data-photo-id="${photo.photoID}">Title: ${photo.title}, Tags: ${photo.tags}</span>
                             <button class="edit-btn btn btn-warning btn-sm ml-2">Edit</button>
                             <button class="delete-btn btn btn-danger btn-sm ml-2">Delete</button>
@@ -234,7 +263,11 @@ async function searchPhoto(searchTerm: string): Promise<void> {
               });
             }
           });
-        } else {
+          const nextCursor = res.headers.get('X-Next-Cursor');
+          if (nextCursor) {
+            appendLoadMoreButton(photosList, () => searchPhoto(searchTerm, nextCursor));
+          }
+        } else if (!cursor) {
           photosList.textContent = "No photos found.";
         }
       }
@@ -70,6 +70,18 @@ function showMessage(elementId, message, alertClass) {
         result.className = `alert ${alertClass}`;
     }
 }
+/**
+ * Hängt einen Button an eine Liste an, der die nächste Seite der Liste lädt
+ * @param list Liste an die der Button angehängt wird
+ * @param loadMore Funktion welche die nächste Seite lädt
+ */
+function appendLoadMoreButton(list, loadMore) {
+    const button = document.createElement('button');
+    button.classList.add('load-more-btn', 'btn', 'btn-secondary', 'btn-sm');
+    button.textContent = 'Load more';
+    button.addEventListener('click', () => loadMore());
+    list.appendChild(button);
+}
 /**
  * Abmelden des Benutzers indem ein logout Request an den Server gesendet wird, die User ID aus localStorage
  * entfernt und man auf die login Seite weitergeleitet wird
@@ -112,9 +124,9 @@ function createUser(username, password) {
 /**
  * Fetcht und zeigt alle Benutzer vom Server an
  */
-function getAllUsers() {
+function getAllUsers(cursor) {
     return __awaiter(this, void 0, void 0, function* () {
-        const url = 'http://localhost:8888/users';
+        const url = 'http://localhost:8888/users' + (cursor ? `?cursor=${encodeURIComponent(cursor)}` : '');
         const options = {
             method: 'GET',
             mode: 'cors',
@@ -129,7 +141,13 @@ function getAllUsers() {
             if (res.ok) {
                 const usersList = document.getElementById('usersList');
                 if (usersList) {
-                    usersList.innerHTML = '';
+                    if (!cursor) {
+                        usersList.innerHTML = '';
+                    }
+                    const loadMoreBtn = usersList.querySelector('.load-more-btn');
+                    if (loadMoreBtn) {
+                        loadMoreBtn.remove();
+                    }
                     if (data.length > 0) {
                         data.forEach((user) => {
                             const userItem = document.createElement('div');
@@ -154,8 +172,12 @@ function getAllUsers() {
                                 }));
                             }
                         });
+                        const nextCursor = res.headers.get('X-Next-Cursor');
+                        if (nextCursor) {
+                            appendLoadMoreButton(usersList, () => getAllUsers(nextCursor));
+                        }
                     }
-                    else {
+                    else if (!cursor) {
                         usersList.textContent = "No users found.";
                     }
                 }
@@ -56,6 +56,19 @@ function showMessage(elementId: string, message: string, alertClass: string): vo
   }
 }
 
+/**
+ * Hängt einen Button an eine Liste an, der die nächste Seite der Liste lädt
+ * @param list Liste an die der Button angehängt wird
+ * @param loadMore Funktion welche die nächste Seite lädt
+ */
+function appendLoadMoreButton(list: HTMLElement, loadMore: () => Promise<void>): void {
+  const button = document.createElement('button');
+  button.classList.add('load-more-btn', 'btn', 'btn-secondary', 'btn-sm');
+  button.textContent = 'Load more';
+  button.addEventListener('click', () => loadMore());
+  list.appendChild(button);
+}
+
 /**
  * Abmelden des Benutzers indem ein logout Request an den Server gesendet wird, die User ID aus localStorage
  * entfernt und man auf die login Seite weitergeleitet wird
@@ -98,8 +111,8 @@ async function createUser(username: string, password: string): Promise<void> {
 /**
  * Fetcht und zeigt alle Benutzer vom Server an
  */
-async function getAllUsers(): Promise<void> {
-  const url = 'http://localhost:8888/users';
+async function getAllUsers(cursor?: string): Promise<void> {
+  const url = 'http://localhost:8888/users' + (cursor ? `?cursor=${encodeURIComponent(cursor)}` : '');
   const options: RequestInit = {
     method: 'GET',
     mode: 'cors',
@@ -116,7 +129,13 @@ async function getAllUsers(): Promise<void> {
     if (res.ok) {
       const usersList: HTMLElement | null = document.getElementById('usersList');
       if (usersList) {
-        usersList.innerHTML = '';
+        if (!cursor) {
+          usersList.innerHTML = '';
+        }
+        const loadMoreBtn = usersList.querySelector('.load-more-btn');
+        if (loadMoreBtn) {
+          loadMoreBtn.remove();
+        }
 
         if (data.length > 0) {
           data.forEach((user: { userID: number, username: string }) => {
@@ -145,7 +164,11 @@ async function getAllUsers(): Promise<void> {
               });
             }
           });
-        } else {
+          const nextCursor = res.headers.get('X-Next-Cursor');
+          if (nextCursor) {
+            appendLoadMoreButton(usersList, () => getAllUsers(nextCursor));
+          }
+        } else if (!cursor) {
           usersList.textContent = "No users found.";
         }
       }
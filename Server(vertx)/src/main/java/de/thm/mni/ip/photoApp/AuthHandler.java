@@ -0,0 +1,93 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
+
+
+/**
+ * Ermittelt den angemeldeten Benutzer einer Anfrage und legt ihn als {@link AuthTokens.Principal} im RoutingContext ab.
+ * Im Modus "token" wird das Token aus dem Header "Authorization: Bearer ..." nur über seine Signatur geprüft,
+ * im Modus "session" werden userID und Rolle aus der Session gelesen. Anfragen ohne gültige Anmeldung laufen
+ * ohne Principal weiter, die Routen entscheiden selbst über 403.
+ */
+public final class AuthHandler implements Handler<RoutingContext> {
+
+  private static final String PRINCIPAL = "principal";
+  private static final String BEARER = "Bearer ";
+
+  private final AuthTokens tokens;
+
+  private AuthHandler(AuthTokens tokens) {
+    this.tokens = tokens;
+  }
+
+  /**
+   * Handler für den Modus "token"
+   * @param tokens Token Verwaltung mit dem Schlüssel
+   * @return Handler
+   */
+  public static AuthHandler tokens(AuthTokens tokens) {
+    return new AuthHandler(tokens);
+  }
+
+  /**
+   * Handler für den Modus "session", muss nach dem SessionHandler eingehängt werden
+   * @return Handler
+   */
+  public static AuthHandler session() {
+    return new AuthHandler(null);
+  }
+
+  @Override
+  public void handle(RoutingContext context) {
+    AuthTokens.Principal principal = tokens == null ? fromSession(context.session()) : fromHeader(context);
+    if (principal != null) {
+      context.put(PRINCIPAL, principal);
+    }
+    context.next();
+  }
+
+  /**
+   * Angemeldeter Benutzer der Anfrage
+   * @param context Kontext der HTTP-Anfrage
+   * @return Principal oder null wenn niemand angemeldet ist
+   */
+  public static AuthTokens.Principal principal(RoutingContext context) {
+    return context.get(PRINCIPAL);
+  }
+
+  /**
+   * ID des angemeldeten Benutzers
+   * @param context Kontext der HTTP-Anfrage
+   * @return userID oder null wenn niemand angemeldet ist
+   */
+  public static Integer userID(RoutingContext context) {
+    AuthTokens.Principal principal = principal(context);
+    return principal == null ? null : principal.userID();
+  }
+
+  /**
+   * Prüft ob der angemeldete Benutzer die Rolle Admin hat
+   * @param context Kontext der HTTP-Anfrage
+   * @return true für Admins
+   */
+  public static boolean isAdmin(RoutingContext context) {
+    AuthTokens.Principal principal = principal(context);
+    return principal != null && principal.isAdmin();
+  }
+
+
+  private AuthTokens.Principal fromHeader(RoutingContext context) {
+    String authorization = context.request().getHeader("Authorization");
+    if (authorization == null || !authorization.startsWith(BEARER)) {
+      return null;
+    }
+    return tokens.verify(authorization.substring(BEARER.length()).trim(), System.currentTimeMillis() / 1000);
+  }
+
+  private static AuthTokens.Principal fromSession(Session session) {
+    Integer userID = session == null ? null : session.get("userID");
+    return userID == null ? null : new AuthTokens.Principal(userID, session.get("role"));
+  }
+}
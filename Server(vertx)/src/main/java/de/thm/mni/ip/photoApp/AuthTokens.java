@@ -0,0 +1,149 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * Zustandslose, mit HMAC-SHA256 signierte Anmeldetoken. Ein Token enthält userID, Rolle und Ablaufzeit und wird
+ * ohne Zugriff auf einen Session Store oder die Datenbank geprüft; es gilt damit in allen Instanzen und auf allen
+ * Servern mit demselben Schlüssel, auch nach einem Neustart. Aufbau: base64url("userID:Rolle:Ablauf") "." base64url(Signatur)
+ * Die Rolle steht zwischen dem ersten und dem letzten Doppelpunkt und darf selbst Doppelpunkte enthalten.
+ */
+public final class AuthTokens {
+
+  /**
+   * Angemeldeter Benutzer
+   * @param userID ID des Benutzers
+   * @param role Rolle aus der Spalte users.role, "Admin" oder "User"
+   */
+  public record Principal(int userID, String role) {
+
+    /**
+     * Prüft ob der Benutzer die Rolle Admin hat
+     * @return true für Admins
+     */
+    public boolean isAdmin() {
+      return ADMIN.equals(role);
+    }
+  }
+
+  /**
+   * Rolle der Administratoren
+   */
+  public static final String ADMIN = "Admin";
+
+  /**
+   * Mindestlänge eines konfigurierten Schlüssels in Bytes, so lang wie die Ausgabe von SHA-256
+   */
+  public static final int MIN_SECRET_BYTES = 32;
+
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  private final SecretKeySpec key;
+  private final long ttlSeconds;
+  // mac instanzen sind nicht threadsicher, jeder event loop bekommt seine eigene
+  private final ThreadLocal<Mac> macs;
+
+  private AuthTokens(byte[] secret, long ttlSeconds) {
+    this.key = new SecretKeySpec(secret, ALGORITHM);
+    this.ttlSeconds = ttlSeconds;
+    this.macs = ThreadLocal.withInitial(() -> {
+      try {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(key);
+        return mac;
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(ALGORITHM + " ist nicht verfügbar", e);
+      }
+    });
+  }
+
+  /**
+   * Erstellt die Token Verwaltung anhand der "auth" Konfiguration. Ohne "secret" wird ein zufälliger Schlüssel erzeugt,
+   * die Token gelten dann nur bis zum Neustart und nur auf diesem Server.
+   * @param config Konfiguration mit secret und ttlSeconds
+   * @return die erstellte Token Verwaltung
+   * @throws IllegalArgumentException wenn "secret" kürzer als {@link #MIN_SECRET_BYTES} Bytes ist
+   */
+  public static AuthTokens create(JsonObject config) {
+    String secret = config.getString("secret");
+    byte[] key;
+    if (secret == null || secret.isEmpty()) {
+      key = new byte[MIN_SECRET_BYTES];
+      new SecureRandom().nextBytes(key);
+      System.out.println("Kein auth.secret konfiguriert, Token gelten nur bis zum Neustart");
+    } else {
+      key = secret.getBytes(StandardCharsets.UTF_8);
+      // ein kurzer schlüssel lässt sich mit einem einzigen abgefangenen token offline erraten
+      if (key.length < MIN_SECRET_BYTES) {
+        throw new IllegalArgumentException("auth.secret muss mindestens " + MIN_SECRET_BYTES + " Bytes lang sein");
+      }
+    }
+    return new AuthTokens(key, config.getLong("ttlSeconds", 3600L));
+  }
+
+  /**
+   * Gültigkeitsdauer eines Tokens
+   * @return Sekunden ab Ausstellung
+   */
+  public long ttlSeconds() {
+    return ttlSeconds;
+  }
+
+  /**
+   * Stellt ein Token für einen Benutzer aus.
+   * @param userID ID des Benutzers
+   * @param role Rolle des Benutzers
+   * @param now aktuelle Zeit in Sekunden seit 1970
+   * @return signiertes Token
+   */
+  public String issue(int userID, String role, long now) {
+    String payload = ENCODER.encodeToString((userID + ":" + role + ":" + (now + ttlSeconds)).getBytes(StandardCharsets.UTF_8));
+    return payload + "." + sign(payload);
+  }
+
+  /**
+   * Prüft Signatur und Ablaufzeit eines Tokens.
+   * @param token Token aus dem Authorization Header
+   * @param now aktuelle Zeit in Sekunden seit 1970
+   * @return angemeldeter Benutzer oder null wenn das Token ungültig oder abgelaufen ist
+   */
+  public Principal verify(String token, long now) {
+    int dot = token.indexOf('.');
+    if (dot < 0) {
+      return null;
+    }
+    String payload = token.substring(0, dot);
+    // vergleich in konstanter zeit, damit die signatur nicht zeichenweise erraten werden kann
+    byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+    if (!MessageDigest.isEqual(expected, token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII))) {
+      return null;
+    }
+    try {
+      String claims = new String(DECODER.decode(payload), StandardCharsets.UTF_8);
+      // userID und ablauf sind zahlen, alles dazwischen ist die rolle
+      int first = claims.indexOf(':');
+      int last = claims.lastIndexOf(':');
+      if (first < 0 || first == last || Long.parseLong(claims.substring(last + 1)) <= now) {
+        return null;
+      }
+      return new Principal(Integer.parseInt(claims.substring(0, first)), claims.substring(first + 1, last));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+
+  private String sign(String payload) {
+    return ENCODER.encodeToString(macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+  }
+}
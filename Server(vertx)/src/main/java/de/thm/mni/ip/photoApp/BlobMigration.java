@@ -0,0 +1,94 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Launcher;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Einmalige Migration der Bilddaten aus den Spalten photos.photo_blob und photo_thumbnails.thumb_blob
+ * in den inhaltsadressierten {@link BlobStore}. Es wird immer nur ein Foto gleichzeitig geladen,
+ * bereits migrierte Fotos (blob_hash gesetzt) werden übersprungen, sodass die Migration wiederholt werden kann.
+ * Ausführen mit: java -cp target/photoApp-1.0.0-SNAPSHOT-fat.jar io.vertx.core.Launcher run de.thm.mni.ip.photoApp.BlobMigration -conf conf.json
+ */
+public class BlobMigration extends AbstractVerticle {
+
+  private DatabasePool db;
+  private BlobStore blobStore;
+  private int migrated;
+
+  /**
+   * Startet die Migration mit der Konfiguration des Servers
+   * @param args
+   */
+  public static void main(String[] args) {
+    Launcher.executeCommand("run", BlobMigration.class.getName());
+  }
+
+  @Override
+  public void start(Promise<Void> startPromise) {
+    db = DatabasePool.create(vertx, config().getJsonObject("db", new JsonObject()));
+    blobStore = BlobStore.create(vertx, config().getJsonObject("storage", new JsonObject()));
+
+    migrateNext()
+      .onSuccess(v -> System.out.println(migrated + " Fotos in den Speicher übertragen"))
+      .onFailure(e -> System.out.println("Migration fehlgeschlagen: " + e.getMessage()))
+      .onComplete(ar -> vertx.close());
+    startPromise.complete();
+  }
+
+
+  private Future<Void> migrateNext() {
+    return db.preparedQuery("migration.blobs.next", "SELECT photoID FROM photos WHERE blob_hash IS NULL ORDER BY photoID LIMIT 1")
+      .compose(rows -> {
+        if (rows.size() == 0) {
+          return Future.succeededFuture();
+        }
+        int photoID = rows.iterator().next().getInteger("photoID");
+        return migratePhoto(photoID).compose(v -> {
+          migrated++;
+          return migrateNext();
+        });
+      });
+  }
+
+
+  private Future<Void> migratePhoto(int photoID) {
+    return db.withTransaction(conn -> Statements.define("migration.blobs.photo", "SELECT photo_blob FROM photos WHERE photoID = ? FOR UPDATE")
+      .execute(conn, Tuple.of(photoID))
+      .compose(photoRows -> Statements.define("migration.blobs.thumbnails", "SELECT size, thumb_blob FROM photo_thumbnails WHERE photo_id = ? AND blob_hash IS NULL")
+        .execute(conn, Tuple.of(photoID))
+        .compose(thumbnails -> {
+          Buffer photoData = photoRows.iterator().next().getBuffer("photo_blob");
+          Buffer data = photoData == null ? Buffer.buffer() : photoData;
+          BlobStore.Blob blob = BlobStore.describe(data);
+          List<BlobStore.Blob> blobs = new ArrayList<>();
+          List<Future<Void>> files = new ArrayList<>();
+          List<Tuple> updates = new ArrayList<>();
+          blobs.add(blob);
+          files.add(blobStore.store(blob, data));
+          for (Row row : thumbnails) {
+            Buffer thumbnailData = row.getBuffer("thumb_blob");
+            BlobStore.Blob thumbnail = BlobStore.describe(thumbnailData);
+            blobs.add(thumbnail);
+            files.add(blobStore.store(thumbnail, thumbnailData));
+            updates.add(Tuple.of(thumbnail.hash(), thumbnail.size(), photoID, row.getInteger("size")));
+          }
+          // referenzen wie beim hochladen mit einer batch anweisung in sortierter reihenfolge erhöhen
+          return blobStore.retainAll(conn, blobs)
+            .compose(v -> Future.all(files))
+            .compose(v -> Statements.define("migration.blobs.updatePhoto", "UPDATE photos SET blob_hash = ?, blob_size = ?, mime_type = ?, photo_blob = NULL WHERE photoID = ?")
+              .execute(conn, Tuple.of(blob.hash(), blob.size(), blob.mimeType(), photoID)))
+            .compose(v -> updates.isEmpty() ? Future.<Void>succeededFuture()
+              : Statements.define("migration.blobs.updateThumbnail", "UPDATE photo_thumbnails SET blob_hash = ?, blob_size = ?, thumb_blob = NULL WHERE photo_id = ? AND size = ?")
+                .executeBatch(conn, updates).<Void>mapEmpty());
+        })));
+  }
+}
@@ -0,0 +1,252 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+
+/**
+ * Inhaltsadressierter Speicher für Foto- und Thumbnail-Dateien.
+ * Jede Datei wird unter ihrem SHA-256 Hash in einem zweistufigen Verzeichnisbaum abgelegt (ab/cd/abcd...),
+ * identische Inhalte werden dadurch nur einmal gespeichert. Die Tabelle blobs zählt die Referenzen,
+ * eine Datei wird nach dem Commit mit {@link #purge(DatabasePool, Collection)} gelöscht, sobald sie keine Zeile in blobs mehr hat.
+ */
+public class BlobStore {
+
+  /**
+   * Beschreibung eines gespeicherten Inhalts
+   * @param hash SHA-256 Hash als Hex String
+   * @param size Größe in Bytes
+   * @param mimeType erkannter MIME Type
+   */
+  public record Blob(String hash, long size, String mimeType) {
+  }
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final Vertx vertx;
+  private final Path root;
+  private final Path staging;
+
+  private BlobStore(Vertx vertx, Path root) {
+    this.vertx = vertx;
+    this.root = root;
+    this.staging = root.resolve("tmp");
+  }
+
+  /**
+   * Erstellt den Speicher anhand der "storage" Konfiguration und legt die Verzeichnisse an.
+   * @param vertx Vert.x Instanz
+   * @param config Konfiguration mit dem Wurzelverzeichnis path
+   * @return der erstellte Speicher
+   */
+  public static BlobStore create(Vertx vertx, JsonObject config) {
+    BlobStore store = new BlobStore(vertx, Path.of(config.getString("path", "photo-store")).toAbsolutePath());
+    vertx.fileSystem().mkdirsBlocking(store.staging.toString());
+    return store;
+  }
+
+  /**
+   * Liefert den Pfad der Datei zu einem Hash.
+   * @param hash SHA-256 Hash als Hex String
+   * @return Pfad im Speicher
+   */
+  public String path(String hash) {
+    return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash).toString();
+  }
+
+  /**
+   * Berechnet Hash, Größe und MIME Type einer Datei auf einem Worker Thread, ohne sie komplett in den Speicher zu laden.
+   * @param fileName Pfad der Datei
+   * @return Beschreibung des Inhalts
+   */
+  public Future<Blob> describe(String fileName) {
+    return vertx.executeBlocking(() -> {
+      MessageDigest digest = sha256();
+      byte[] buffer = new byte[READ_BUFFER_SIZE];
+      byte[] head = new byte[12];
+      int headLength = 0;
+      long size = 0;
+      try (InputStream in = Files.newInputStream(Path.of(fileName))) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          if (headLength < head.length) {
+            int copy = Math.min(read, head.length - headLength);
+            System.arraycopy(buffer, 0, head, headLength, copy);
+            headLength += copy;
+          }
+          digest.update(buffer, 0, read);
+          size += read;
+        }
+      }
+      return new Blob(HexFormat.of().formatHex(digest.digest()), size, sniffMimeType(head, headLength));
+    }, false);
+  }
+
+  /**
+   * Berechnet Hash, Größe und MIME Type eines Inhalts im Speicher.
+   * @param data Inhalt
+   * @return Beschreibung des Inhalts
+   */
+  public static Blob describe(Buffer data) {
+    byte[] bytes = data.getBytes();
+    return new Blob(HexFormat.of().formatHex(sha256().digest(bytes)), bytes.length, sniffMimeType(bytes, bytes.length));
+  }
+
+  /**
+   * Erhöht die Referenzzähler mehrerer Inhalte mit einer Anweisung als Batch. Mehrfach enthaltene Inhalte werden mehrfach gezählt.
+   * Die Zeilen in blobs bleiben bis zum Ende der Transaktion gesperrt, sodass ein gleichzeitiges {@link #purge(DatabasePool, Collection)}
+   * die Dateien nicht löschen kann. Alle Pfade erhöhen bzw. verringern die Zähler sortiert nach Hash, damit sich
+   * gleichzeitige Transaktionen nicht gegenseitig blockieren.
+   * Die Dateien müssen danach in derselben Transaktion mit {@link #store(Blob, String)} bzw. {@link #store(Blob, Buffer)} angelegt werden.
+   * @param conn Verbindung mit offener Transaktion
+   * @param blobs Beschreibungen der Inhalte
+   * @return Future das nach dem Zählen abgeschlossen wird
+   */
+  public Future<Void> retainAll(SqlConnection conn, List<Blob> blobs) {
+    // nach hash sortiert, damit gleichzeitige transaktionen die zeilen in derselben reihenfolge sperren
+    List<Tuple> batch = blobs.stream()
+      .sorted(Comparator.comparing(Blob::hash))
+      .map(blob -> Tuple.of(blob.hash(), blob.size(), blob.mimeType()))
+      .toList();
+    return Statements.define("blobs.retain", "INSERT INTO blobs (hash, size, mime_type, ref_count) VALUES (?, ?, ?, 1) "
+        + "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1")
+      .executeBatch(conn, batch)
+      .mapEmpty();
+  }
+
+  /**
+   * Legt die Datei eines Inhalts aus einer vorhandenen Datei an, falls sie noch nicht existiert.
+   * @param blob Beschreibung des Inhalts, dessen Referenz bereits gezählt ist
+   * @param sourceFile Datei mit dem Inhalt
+   * @return Future das nach dem Speichern abgeschlossen wird
+   */
+  public Future<Void> store(Blob blob, String sourceFile) {
+    return ensureFile(blob.hash(), stagingFile -> vertx.fileSystem().copy(sourceFile, stagingFile));
+  }
+
+  /**
+   * Legt die Datei eines Inhalts aus dem Speicher an, falls sie noch nicht existiert.
+   * @param blob Beschreibung des Inhalts, dessen Referenz bereits gezählt ist
+   * @param data Inhalt
+   * @return Future das nach dem Speichern abgeschlossen wird
+   */
+  public Future<Void> store(Blob blob, Buffer data) {
+    return ensureFile(blob.hash(), stagingFile -> vertx.fileSystem().writeFile(stagingFile, data));
+  }
+
+  /**
+   * Verringert den Referenzzähler eines Inhalts. Wird er nicht mehr referenziert, wird die Zeile gelöscht.
+   * Die Datei bleibt stehen, bis sie nach dem Commit mit {@link #purge(DatabasePool, Collection)} entfernt wird,
+   * ein Rollback lässt Zeile und Datei damit unverändert.
+   * @param conn Verbindung mit offener Transaktion
+   * @param hash SHA-256 Hash des Inhalts
+   * @return true wenn die Zeile gelöscht wurde
+   */
+  public Future<Boolean> release(SqlConnection conn, String hash) {
+    return lock(conn, hash)
+      .compose(rows -> {
+        if (rows.size() == 0) {
+          return Future.succeededFuture(false);
+        }
+        int refCount = rows.iterator().next().getInteger("ref_count");
+        if (refCount > 1) {
+          return Statements.define("blobs.release", "UPDATE blobs SET ref_count = ref_count - 1 WHERE hash = ?").execute(conn, Tuple.of(hash))
+            .map(false);
+        }
+        return Statements.define("blobs.delete", "DELETE FROM blobs WHERE hash = ?").execute(conn, Tuple.of(hash))
+          .map(true);
+      });
+  }
+
+  /**
+   * Löscht die Dateien der Inhalte, die keine Zeile in blobs mehr haben: nach dem Commit einer Löschung oder nach dem
+   * Rollback eines Uploads, dessen Dateien bereits geschrieben wurden. Die Prüfung sperrt die Zeile bzw. die Lücke im Index,
+   * ein gleichzeitiger Upload desselben Inhalts wartet daher, bis die Datei gelöscht ist, und legt sie danach neu an.
+   * Fehler werden nur protokolliert, übrig gebliebene Dateien belegen lediglich Platz.
+   * @param db Verbindungspool
+   * @param hashes SHA-256 Hashes der Inhalte
+   * @return Future das nach dem Aufräumen abgeschlossen wird
+   */
+  public Future<Void> purge(DatabasePool db, Collection<String> hashes) {
+    List<String> sorted = hashes.stream().distinct().sorted().toList();
+    if (sorted.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    return db.withTransaction(conn -> {
+        Future<Void> purged = Future.succeededFuture();
+        for (String hash : sorted) {
+          purged = purged.compose(v -> lock(conn, hash))
+            .compose(rows -> rows.size() > 0 ? Future.<Void>succeededFuture()
+              : vertx.fileSystem().delete(path(hash)).recover(e -> Future.succeededFuture()));
+        }
+        return purged;
+      })
+      .recover(e -> {
+        System.out.println("Dateien konnten nicht aufgeräumt werden: " + e.getMessage());
+        return Future.succeededFuture();
+      });
+  }
+
+  private Future<RowSet<Row>> lock(SqlConnection conn, String hash) {
+    return Statements.define("blobs.lock", "SELECT ref_count FROM blobs WHERE hash = ? FOR UPDATE").execute(conn, Tuple.of(hash));
+  }
+
+  private Future<Void> ensureFile(String hash, Function<String, Future<Void>> writer) {
+    String target = path(hash);
+    return vertx.fileSystem().exists(target).compose(exists -> {
+      if (exists) {
+        return Future.succeededFuture();
+      }
+      // erst in das staging verzeichnis schreiben und dann atomar verschieben, damit nie halbe dateien sichtbar sind
+      String stagingFile = staging.resolve(UUID.randomUUID().toString()).toString();
+      return vertx.fileSystem().mkdirs(Path.of(target).getParent().toString())
+        .compose(v -> writer.apply(stagingFile))
+        .compose(v -> vertx.fileSystem().move(stagingFile, target,
+          new CopyOptions().setAtomicMove(true).setReplaceExisting(true)))
+        .onFailure(e -> vertx.fileSystem().delete(stagingFile));
+    });
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String sniffMimeType(byte[] head, int length) {
+    if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+      return "image/jpeg";
+    }
+    if (length >= 4 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+      return "image/png";
+    }
+    if (length >= 3 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F') {
+      return "image/gif";
+    }
+    if (length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+      && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+      return "image/webp";
+    }
+    return "application/octet-stream";
+  }
+}
@@ -0,0 +1,129 @@
+package de.thm.mni.ip.photoApp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Byte Bereich einer HTTP Range Anfrage (RFC 9110, Abschnitt 14), beide Grenzen inklusive.
+ * @param start erstes Byte
+ * @param end letztes Byte
+ */
+public record ByteRange(long start, long end) {
+
+  /**
+   * Höchstanzahl an Bereichen pro Anfrage. Anfragen mit mehr Bereichen werden wie Anfragen ohne Range behandelt.
+   */
+  public static final int MAX_RANGES = 16;
+
+  /**
+   * Anzahl der Bytes im Bereich
+   * @return Länge des Bereichs
+   */
+  public long length() {
+    return end - start + 1;
+  }
+
+  /**
+   * Liefert den Wert für den Content-Range Header
+   * @param size Gesamtgröße der Ressource
+   * @return z.B. "bytes 0-499/1234"
+   */
+  public String contentRange(long size) {
+    return "bytes " + start + "-" + end + "/" + size;
+  }
+
+  /**
+   * Wertet einen Range Header aus. Bereiche die über das Ende hinausgehen werden gekürzt,
+   * nicht erfüllbare Bereiche werden verworfen. Überlappende und aneinandergrenzende Bereiche werden zusammengefasst,
+   * damit eine Anfrage jedes Byte höchstens einmal abrufen kann.
+   * @param header Wert des Range Headers
+   * @param size Gesamtgröße der Ressource
+   * @return erfüllbare Bereiche aufsteigend nach Start; leer wenn keiner erfüllbar ist (416);
+   *         null wenn der Header ungültig ist und die ganze Ressource ausgeliefert werden soll
+   */
+  public static List<ByteRange> parse(String header, long size) {
+    if (header == null || !header.startsWith("bytes=")) {
+      return null;
+    }
+    String[] specs = header.substring("bytes=".length()).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    List<ByteRange> ranges = new ArrayList<>();
+    for (String spec : specs) {
+      String trimmed = spec.trim();
+      int dash = trimmed.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+      String first = trimmed.substring(0, dash);
+      String last = trimmed.substring(dash + 1);
+      if (first.isEmpty()) {
+        // suffix bereich: die letzten n bytes
+        long suffix = number(last);
+        if (suffix < 0) {
+          return null;
+        }
+        if (suffix > 0 && size > 0) {
+          ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+        }
+        continue;
+      }
+      long start = number(first);
+      // ohne ende bis zum ende der ressource, gekürzt wird erst nach der prüfung
+      long end = last.isEmpty() ? Long.MAX_VALUE : number(last);
+      if (start < 0 || end < 0 || end < start) {
+        return null;
+      }
+      if (start < size) {
+        ranges.add(new ByteRange(start, Math.min(end, size - 1)));
+      }
+    }
+    return merge(ranges);
+  }
+
+
+  /**
+   * Liest eine Byte Position, nach RFC 9110 nur Ziffern ohne Vorzeichen
+   * @return Wert oder -1 wenn der Text keine gültige Position ist
+   */
+  private static long number(String text) {
+    if (text.isEmpty()) {
+      return -1;
+    }
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+        return -1;
+      }
+    }
+    try {
+      return Long.parseLong(text);
+    } catch (NumberFormatException e) {
+      // größer als Long.MAX_VALUE
+      return -1;
+    }
+  }
+
+
+  private static List<ByteRange> merge(List<ByteRange> ranges) {
+    if (ranges.size() < 2) {
+      return ranges;
+    }
+    ranges.sort(Comparator.comparingLong(ByteRange::start));
+    List<ByteRange> merged = new ArrayList<>();
+    ByteRange current = ranges.get(0);
+    for (ByteRange next : ranges.subList(1, ranges.size())) {
+      if (next.start() <= current.end() + 1) {
+        current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+      } else {
+        merged.add(current);
+        current = next;
+      }
+    }
+    merged.add(current);
+    return merged;
+  }
+}
@@ -0,0 +1,235 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.mysqlclient.MySQLConnectOptions;
+import io.vertx.mysqlclient.MySQLConnection;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+
+/**
+ * Begrenzter Verbindungspool für die MariaDB Datenbank.
+ * Wurde der Pool länger als validateAfterIdleMs nicht genutzt, werden Verbindungen vor der Ausgabe per Ping geprüft,
+ * tote Verbindungen werden verworfen und ersetzt. Einzelne lange ungenutzte oder alte Verbindungen schließt der Pool selbst
+ * (idleTimeout und maxLifetime), unter Last kostet eine Verbindungsanfrage damit keinen zusätzlichen Roundtrip.
+ * Alle Verticle Instanzen mit demselben Poolnamen teilen sich die Verbindungen und die Zähler, maxSize gilt für alle zusammen.
+ */
+public class DatabasePool {
+
+  private static final String COUNTERS_MAP = "photoApp.pools";
+
+  private final Pool pool;
+  private final int maxSize;
+  private final boolean validateOnBorrow;
+  private final long validateAfterIdleNanos;
+  private final Counters counters;
+
+  private DatabasePool(Pool pool, int maxSize, boolean validateOnBorrow, long validateAfterIdleMs, Counters counters) {
+    this.pool = pool;
+    this.maxSize = maxSize;
+    this.validateOnBorrow = validateOnBorrow;
+    this.validateAfterIdleNanos = TimeUnit.MILLISECONDS.toNanos(validateAfterIdleMs);
+    this.counters = counters;
+  }
+
+  /**
+   * Erstellt den Pool anhand der "db" Konfiguration. Fehlende Werte werden mit Standardwerten belegt.
+   * @param vertx Vert.x Instanz
+   * @param config Konfiguration mit Verbindungs- und Pooleinstellungen
+   * @return der erstellte Pool
+   */
+  public static DatabasePool create(Vertx vertx, JsonObject config) {
+    MySQLConnectOptions connectOptions = new MySQLConnectOptions()
+      .setHost(config.getString("host", "localhost"))
+      .setPort(config.getInteger("port", 3306))
+      .setDatabase(config.getString("database", "photoApp"))
+      .setUser(config.getString("user", "root"))
+      .setPassword(config.getString("password", "password"))
+      // vorbereitete anweisungen bleiben pro verbindung im cache und werden nicht bei jedem aufruf neu geparst
+      .setCachePreparedStatements(config.getBoolean("cachePreparedStatements", true))
+      .setPreparedStatementCacheMaxSize(config.getInteger("preparedStatementCacheMaxSize", 256))
+      .setPreparedStatementCacheSqlLimit(config.getInteger("preparedStatementCacheSqlLimit", 2048));
+
+    PoolOptions poolOptions = new PoolOptions()
+      // ein gemeinsamer pool für alle verticle instanzen, die verbindungen werden auf mehrere event loops verteilt
+      .setShared(true)
+      .setName(config.getString("poolName", "photoApp"))
+      .setEventLoopSize(config.getInteger("eventLoopSize", Runtime.getRuntime().availableProcessors()))
+      .setMaxSize(config.getInteger("maxSize", 16))
+      .setMaxWaitQueueSize(config.getInteger("maxWaitQueueSize", 256))
+      // nicht genutzte verbindungen werden nach idleTimeout vom pool cleaner geschlossen
+      .setIdleTimeout(config.getInteger("idleTimeoutSeconds", 60))
+      .setIdleTimeoutUnit(TimeUnit.SECONDS)
+      .setPoolCleanerPeriod(config.getInteger("poolCleanerPeriodMs", 5000))
+      // verbindungen werden nach maxLifetime ersetzt, auch wenn sie laufend genutzt werden
+      .setMaxLifetime(config.getInteger("maxLifetimeSeconds", 1800))
+      .setMaxLifetimeUnit(TimeUnit.SECONDS)
+      // maximale wartezeit auf eine freie verbindung
+      .setConnectionTimeout(config.getInteger("acquireTimeoutMs", 5000))
+      .setConnectionTimeoutUnit(TimeUnit.MILLISECONDS);
+
+    Pool pool = Pool.pool(vertx, connectOptions, poolOptions);
+    Counters counters = vertx.sharedData().<String, Counters>getLocalMap(COUNTERS_MAP)
+      .computeIfAbsent(poolOptions.getName(), name -> new Counters());
+    return new DatabasePool(pool, poolOptions.getMaxSize(), config.getBoolean("validateOnBorrow", true),
+      config.getLong("validateAfterIdleMs", 10_000L), counters);
+  }
+
+  /**
+   * Entnimmt eine Verbindung aus dem Pool. War der Pool länger als validateAfterIdleMs ungenutzt, wird die Verbindung
+   * per Ping geprüft. Schlägt die Prüfung fehl, wird sie geschlossen und eine neue angefordert, die ebenfalls geprüft wird.
+   * @return Future mit der Verbindung
+   */
+  private Future<SqlConnection> acquire() {
+    long start = System.nanoTime();
+    boolean validate = validateOnBorrow && start - counters.lastUsed.get() > validateAfterIdleNanos;
+    // höchstens so viele versuche wie der pool verbindungen hat, der letzte versuch baut eine neue verbindung auf
+    return borrow(validate, maxSize + 1).onSuccess(conn -> {
+      counters.active.incrementAndGet();
+      counters.acquired.incrementAndGet();
+      counters.acquireTime.recordNanos(System.nanoTime() - start);
+    });
+  }
+
+  /**
+   * Führt die übergebene Funktion mit einer Verbindung aus dem Pool aus und gibt die Verbindung danach zurück.
+   * @param function Funktion die mit der Verbindung arbeitet
+   * @return Ergebnis der Funktion
+   */
+  public <T> Future<T> withConnection(Function<SqlConnection, Future<T>> function) {
+    return acquire().compose(conn -> function.apply(conn)
+      .onSuccess(result -> counters.lastUsed.set(System.nanoTime()))
+      .eventually(() -> {
+        counters.active.decrementAndGet();
+        return conn.close();
+      }));
+  }
+
+  /**
+   * Führt die übergebene Funktion mit einer Verbindung aus dem Pool in einer Transaktion aus.
+   * @param function Funktion die mit der Verbindung arbeitet
+   * @return Ergebnis der Funktion
+   */
+  public <T> Future<T> withTransaction(Function<SqlConnection, Future<T>> function) {
+    return withConnection(conn -> conn.begin()
+      .compose(tx -> function.apply(conn)
+        .compose(
+          result -> tx.commit().map(result),
+          err -> tx.rollback().transform(ar -> Future.failedFuture(err)))));
+  }
+
+  /**
+   * Führt eine vorbereitete Abfrage auf einer Verbindung aus dem Pool aus.
+   * @param name Name der Anweisung im {@link Statements} Verzeichnis
+   * @param sql SQL Abfrage
+   * @param params Parameter der Abfrage
+   * @return Ergebnis der Abfrage
+   */
+  public Future<RowSet<Row>> preparedQuery(String name, String sql, Tuple params) {
+    Statements.Statement statement = Statements.define(name, sql);
+    return withConnection(conn -> statement.execute(conn, params));
+  }
+
+  /**
+   * Führt eine vorbereitete Abfrage ohne Parameter auf einer Verbindung aus dem Pool aus.
+   * @param name Name der Anweisung im {@link Statements} Verzeichnis
+   * @param sql SQL Abfrage
+   * @return Ergebnis der Abfrage
+   */
+  public Future<RowSet<Row>> preparedQuery(String name, String sql) {
+    return preparedQuery(name, sql, Tuple.tuple());
+  }
+
+  /**
+   * Liefert den aktuellen Zustand des Pools (aktive, freie und wartende Verbindungsanfragen).
+   * @return Statistik als JSON
+   */
+  public JsonObject stats() {
+    int activeConnections = counters.active.get();
+    return new JsonObject()
+      .put("maxSize", maxSize)
+      .put("size", pool.size())
+      .put("active", activeConnections)
+      .put("idle", Math.max(0, pool.size() - activeConnections))
+      .put("waiters", counters.waiters.get())
+      .put("acquired", counters.acquired.get())
+      .put("acquireFailures", counters.acquireFailures.get())
+      .put("evicted", counters.evicted.get());
+  }
+
+  /**
+   * Verteilung der Wartezeit auf eine Verbindung, inklusive Ping
+   * @return Histogramm über alle erfolgreichen Verbindungsanfragen
+   */
+  public Histogram acquireTime() {
+    return counters.acquireTime;
+  }
+
+  /**
+   * Gibt den Pool frei. Die Verbindungen werden geschlossen, sobald keine Verticle Instanz den Pool mehr nutzt.
+   */
+  public Future<Void> close() {
+    return pool.close();
+  }
+
+  /**
+   * Entnimmt eine Verbindung und prüft sie bei Bedarf. Nach einem fehlgeschlagenen Ping sind vermutlich auch die übrigen
+   * freien Verbindungen tot, jede weitere Verbindung wird daher ebenfalls geprüft.
+   */
+  private Future<SqlConnection> borrow(boolean validate, int attempts) {
+    return borrow().compose(conn -> {
+      if (!validate) {
+        return Future.succeededFuture(conn);
+      }
+      return MySQLConnection.cast(conn).ping()
+        .map(v -> {
+          counters.lastUsed.set(System.nanoTime());
+          return conn;
+        })
+        .recover(err -> {
+          counters.evicted.incrementAndGet();
+          if (attempts <= 1) {
+            return conn.close().transform(ar -> Future.failedFuture(err));
+          }
+          return conn.close().transform(ar -> borrow(true, attempts - 1));
+        });
+    });
+  }
+
+  private Future<SqlConnection> borrow() {
+    counters.waiters.incrementAndGet();
+    return pool.getConnection()
+      .onComplete(ar -> {
+        counters.waiters.decrementAndGet();
+        if (ar.failed()) {
+          counters.acquireFailures.incrementAndGet();
+        }
+      });
+  }
+
+
+  /**
+   * Zähler eines Pools, über die Shared Data von Vert.x zwischen den Verticle Instanzen geteilt
+   */
+  private static final class Counters implements Shareable {
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong acquireFailures = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    // zeitpunkt (System.nanoTime) an dem zuletzt eine verbindung erfolgreich genutzt wurde
+    private final AtomicLong lastUsed = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+    private final Histogram acquireTime = new Histogram();
+  }
+}
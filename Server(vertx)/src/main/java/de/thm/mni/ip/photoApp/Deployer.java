@@ -0,0 +1,38 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Launcher;
+import io.vertx.core.Promise;
+
+
+/**
+ * Startet mehrere Instanzen des {@link MainVerticle}, standardmäßig eine pro Kern. Jede Instanz läuft auf einem eigenen
+ * Event Loop, alle hören auf denselben Port. Die Anzahl wird über "instances" in der Konfiguration festgelegt.
+ * Ausführen mit: java -jar target/photoApp-1.0.0-SNAPSHOT-fat.jar -conf conf.json
+ */
+public class Deployer extends AbstractVerticle {
+
+  /**
+   * Startet die Instanzen mit der Konfiguration des Servers
+   * @param args
+   */
+  public static void main(String[] args) {
+    Launcher.executeCommand("run", Deployer.class.getName());
+  }
+
+  @Override
+  public void start(Promise<Void> startPromise) {
+    int instances = config().getInteger("instances", Runtime.getRuntime().availableProcessors());
+    int port = config().getInteger("port", 8888);
+
+    vertx.deployVerticle(MainVerticle.class.getName(), new DeploymentOptions()
+        .setConfig(config())
+        .setInstances(instances))
+      .onSuccess(id -> {
+        startPromise.complete();
+        System.out.println("HTTP server started on port " + port + " with " + instances + " instances");
+      })
+      .onFailure(startPromise::fail);
+  }
+}
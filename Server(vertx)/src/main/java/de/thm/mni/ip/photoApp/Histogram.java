@@ -0,0 +1,104 @@
+package de.thm.mni.ip.photoApp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Histogramm für Dauern in Mikrosekunden mit logarithmischen Klassen: jede Zweierpotenz ist in acht gleich breite Klassen
+ * geteilt, Quantile sind damit auf etwa 12 % genau. Das Erfassen kostet nur einige atomare Additionen ohne Sperre
+ * und ohne Speicheranforderung und ist daher auch für den Event Loop geeignet. Werte über etwa 12 Tage landen in der letzten Klasse.
+ */
+public final class Histogram {
+
+  private static final int SUB_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumMicros = new LongAdder();
+
+  /**
+   * Erfasst eine Dauer.
+   * @param nanos Dauer in Nanosekunden, z.B. aus der Differenz zweier {@link System#nanoTime()} Aufrufe
+   */
+  public void recordNanos(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+    buckets.incrementAndGet(bucket(micros));
+    count.increment();
+    sumMicros.add(micros);
+  }
+
+  /**
+   * Anzahl der erfassten Werte
+   * @return Anzahl
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * Summe der erfassten Werte
+   * @return Summe in Sekunden
+   */
+  public double sumSeconds() {
+    return sumMicros.sum() / 1_000_000.0;
+  }
+
+  /**
+   * Schätzt ein Quantil aus den Klassen. Geliefert wird die obere Grenze der Klasse, in die das Quantil fällt.
+   * Ohne erfasste Werte ist das Ergebnis 0.
+   * @param quantile Quantil zwischen 0 und 1, z.B. 0.99
+   * @return Quantil in Sekunden
+   */
+  public double quantileSeconds(double quantile) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return upperBound(i) / 1_000_000.0;
+      }
+    }
+    return upperBound(BUCKETS - 1) / 1_000_000.0;
+  }
+
+
+  /**
+   * Klasse eines Werts: Werte unter 8 haben je eine eigene Klasse, darüber bestimmen die höchsten vier Bits die Klasse.
+   */
+  static int bucket(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int sub = (int) (micros >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+    return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Kleinster Wert, der nicht mehr in die Klasse fällt
+   */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket + 1;
+    }
+    int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+    int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS);
+  }
+}
@@ -1,13 +1,16 @@
 package de.thm.mni.ip.photoApp;
 
-import at.favre.lib.crypto.bcrypt.BCrypt;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Launcher;
 import io.vertx.core.Promise;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.FileUpload;
@@ -17,96 +20,259 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.CorsHandler;
 import io.vertx.ext.web.handler.SessionHandler;
 import io.vertx.ext.web.sstore.LocalSessionStore;
-import java.sql.*;
+import io.vertx.mysqlclient.MySQLClient;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import javax.imageio.IIOException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import io.vertx.core.buffer.Buffer;
 
 
 
 public class MainVerticle extends AbstractVerticle {
 
-  private Connection conn;
+  private DatabasePool db;
+  private PasswordHasher hasher;
+  private AuthTokens authTokens;
+  private static final int RANGE_CHUNK_SIZE = 64 * 1024;
+  private static final int ALBUM_FETCH_SIZE = 50;
+  private static final int EMBED_MAX_BYTES = 64 * 1024;
+  private static final int SUGGEST_DEFAULT_LIMIT = 10;
+  private static final int SUGGEST_MAX_LIMIT = 50;
+  private static final int USER_SEARCH_DEFAULT_LIMIT = 20;
+  private static final int USER_SEARCH_MAX_LIMIT = 100;
+  private static final int ALBUM_BATCH_MAX_PHOTOS = 1000;
+  private static final String SESSION_MAP = "photoApp.sessions";
+  private static final String INSERT_PHOTO_SQL = "INSERT INTO photos (title, capture_date, tags, blob_hash, blob_size, mime_type, user_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_THUMBNAIL_SQL = "INSERT INTO photo_thumbnails (photo_id, size, blob_hash, blob_size) VALUES (?, ?, ?, ?)";
+
+  private SharedState shared;
+  private BlobStore blobStore;
+  private PhotoCache photoCache;
+  private JsonObject paginationConfig;
+  private SearchIndex photoIndex;
+  private SearchIndex albumIndex;
+  private OwnershipIndex photoOwners;
+  private OwnershipIndex albumOwners;
+  private Metrics metrics;
+  private TagSuggestions tagSuggestions;
+  private UsernameIndex usernameIndex;
+  private WorkerExecutor thumbnailExecutor;
+  private List<Integer> thumbnailSizes;
+  private long maxThumbnailPixels;
+  private long maxUploadSize;
+  private int maxBulkFiles;
 
   /**
-   * Hauptmethode um die Apllikation zum Laufen zu bringen
+   * Berechnetes Thumbnail eines hochgeladenen Fotos
+   * @param size längste Kante in Pixeln
+   * @param data JPEG Daten
+   * @param blob Hash, Größe und MIME Type der Daten
+   */
+  private record Thumbnail(int size, Buffer data, BlobStore.Blob blob) {
+  }
+
+  /**
+   * Geprüfte Datei eines Bulk Uploads mit ihren Metadaten
+   * @param index Position der Datei in der Anfrage
+   * @param fileName Pfad der hochgeladenen Datei
+   * @param title Titel
+   * @param captureDate Aufnahmedatum
+   * @param tags Tag Text
+   */
+  private record BulkPhoto(int index, String fileName, String title, LocalDate captureDate, String tags) {
+  }
+
+  /**
+   * Datei eines Bulk Uploads, deren Hash und Thumbnails berechnet sind
+   * @param photo Datei mit Metadaten
+   * @param blob Hash, Größe und MIME Type des Fotos
+   * @param thumbnails berechnete Thumbnails in temporären Dateien
+   */
+  private record PreparedPhoto(BulkPhoto photo, BlobStore.Blob blob, List<StagedThumbnail> thumbnails) {
+  }
+
+  /**
+   * Thumbnail eines Bulk Uploads, dessen Daten bis zum Speichern in einer temporären Datei neben dem Upload liegen
+   * @param size längste Kante in Pixeln
+   * @param file Pfad der temporären Datei
+   * @param blob Hash, Größe und MIME Type der Daten
+   */
+  private record StagedThumbnail(int size, String file, BlobStore.Blob blob) {
+  }
+
+  /**
+   * Hauptmethode um die Apllikation zum Laufen zu bringen. Startet über den {@link Deployer} eine Instanz pro Kern.
    * @param args
    */
   public static void main(String[] args) {
-    Launcher.executeCommand("run",MainVerticle.class.getName());
+    Launcher.executeCommand("run",Deployer.class.getName());
   }
 
   /**
    * Startet den HTTP Server, initialisiert die Routen und hört auf den festgelegten Port.
+   * Die Datenbankzugriffe laufen über einen begrenzten Verbindungspool des reaktiven MySQL/MariaDB Clients,
+   * sodass keine Abfrage den Event Loop blockiert. Mehrere Instanzen teilen sich Port, Verbindungspool, Sessions und {@link SharedState}.
    * @param startPromise
    * @throws Exception wenn ein Fehler beim Starten des Servers auftritt
    */
   @Override
   public void start(Promise<Void> startPromise) throws Exception {
-    try {
-      conn = DriverManager.getConnection(
-        "jdbc:mariadb://localhost:3306/photoApp",
-        "root", "password");
-
-      Router router = Router.router(vertx);
-
-      // CORS handler um localhost:3000 zu erlauben die aufgelisteten http verben anzuwenden
-      router.route().handler(CorsHandler.create()
-        .addOrigin("http://localhost:3000")
-        .allowedMethod(HttpMethod.GET)
-        .allowedMethod(HttpMethod.POST)
-        .allowedMethod(HttpMethod.PUT)
-        .allowedMethod(HttpMethod.DELETE)
-        .allowedHeader("Authorization")
-        .allowedHeader("content-type")
-        .allowCredentials(true)
-      );
-
-      // session handling initialisieren
-      router.route().handler(SessionHandler.create(LocalSessionStore.create(vertx)));
-
-      vertx.createHttpServer().requestHandler(router).listen(8888, http -> {
-        if (http.succeeded()) {
-          startPromise.complete();
-          System.out.println("HTTP server started on port 8888");
-        } else {
-          startPromise.fail(http.cause());
-        }
-      });
-
-      router.route().handler(BodyHandler.create());
-
-      // Login und Logout Routen
-      router.post("/login").handler(this::login);
-      router.post("/logout").handler(this::logout);
-
-      // Benutzerverwaltung Routen
-      router.post("/users").handler(this::createUser);
-      router.get("/users").handler(this::getAllUsers);
-      router.get("/users/search").handler(this::searchUser);
-      router.put("/users/:userID").handler(this::editUser);
-      router.delete("/users/:userID").handler(this::deleteUser);
-
-      // Fotoverwaltung Routen
-      router.post("/:userID/photos").handler(this::uploadPhoto);
-      router.get("/photos/:photoID").handler(this::servePhoto);
-      router.get("/:userID/photos").handler(this::getAllPhotos);
-      router.get("/:userID/photos/search").handler(this::searchPhoto);
-      router.put("/:userID/photos/:photoID").handler(this::editPhoto);
-      router.delete("/:userID/photos/:photoID").handler(this::deletePhoto);
+    db = DatabasePool.create(vertx, config().getJsonObject("db", new JsonObject()));
+    shared = SharedState.acquire(vertx, config());
+    hasher = shared.hasher();
+    authTokens = shared.authTokens();
+
+    // thumbnails werden beim hochladen auf eigenen worker threads berechnet
+    JsonObject thumbnailConfig = config().getJsonObject("thumbnails", new JsonObject());
+    thumbnailSizes = thumbnailConfig.getJsonArray("sizes", new JsonArray(ThumbnailGenerator.DEFAULT_SIZES)).stream()
+      .map(size -> ((Number) size).intValue())
+      .collect(Collectors.toList());
+    maxThumbnailPixels = thumbnailConfig.getLong("maxPixels", ThumbnailGenerator.DEFAULT_MAX_PIXELS);
+    thumbnailExecutor = vertx.createSharedWorkerExecutor("thumbnails",
+      thumbnailConfig.getInteger("workers", Runtime.getRuntime().availableProcessors()));
+
+    // fotos und thumbnails liegen inhaltsadressiert im dateisystem, die datenbank hält nur hash, größe und mime type
+    blobStore = BlobStore.create(vertx, config().getJsonObject("storage", new JsonObject()));
+    photoCache = shared.photoCache();
+    paginationConfig = config().getJsonObject("pagination", new JsonObject());
+    photoIndex = shared.photoIndex();
+    albumIndex = shared.albumIndex();
+    photoOwners = shared.photoOwners();
+    albumOwners = shared.albumOwners();
+    metrics = shared.metrics();
+    tagSuggestions = shared.tagSuggestions();
+    usernameIndex = shared.usernameIndex();
+
+    JsonObject photoConfig = config().getJsonObject("photos", new JsonObject());
+    maxUploadSize = photoConfig.getLong("maxUploadSize", 20L * 1024 * 1024);
+    maxBulkFiles = photoConfig.getInteger("maxBulkFiles", 500);
+
+    Router router = Router.router(vertx);
+
+    // jede anfrage wird zuerst gemessen, damit auch abgewiesene anfragen in den metriken auftauchen
+    router.route().handler(metrics.handler());
+    metrics.monitorEventLoop(vertx);
+
+    // CORS handler um localhost:3000 zu erlauben die aufgelisteten http verben anzuwenden
+    router.route().handler(CorsHandler.create()
+      .addOrigin("http://localhost:3000")
+      .allowedMethod(HttpMethod.GET)
+      .allowedMethod(HttpMethod.POST)
+      .allowedMethod(HttpMethod.PUT)
+      .allowedMethod(HttpMethod.DELETE)
+      .allowedHeader("Authorization")
+      .allowedHeader("content-type")
+      .exposedHeader(Pagination.NEXT_CURSOR_HEADER)
+      .allowCredentials(true)
+    );
+
+    if (authTokens != null) {
+      // zustandslose anmeldung: das signierte token wird ohne session store geprüft
+      router.route().handler(AuthHandler.tokens(authTokens));
+    } else {
+      // session handling initialisieren, die sessions liegen in einer lokalen map der vert.x instanz und gelten damit in allen verticle instanzen
+      router.route().handler(SessionHandler.create(LocalSessionStore.create(vertx, SESSION_MAP)));
+      router.route().handler(AuthHandler.session());
+    }
+
+    // der server nimmt erst anfragen an, wenn die suchindizes, der tag baum und der benutzerindex aus der datenbank aufgebaut sind.
+    // alle instanzen hören auf denselben port, vert.x verteilt die verbindungen reihum auf ihre event loops
+    shared.load(db, context)
+      .compose(v -> vertx.createHttpServer().requestHandler(router).listen(config().getInteger("port", 8888)))
+      .onSuccess(http -> startPromise.complete())
+      .onFailure(startPromise::fail);
+
+    // die größenbeschränkung greift bereits während des empfangs, temporäre upload dateien werden nach der anfrage gelöscht.
+    // der bulk upload hat eine eigene grenze für die ganze anfrage, höchstens maxBulkFiles volle dateien.
+    // jede einzelne datei ist weiterhin auf maxUploadSize begrenzt, das wird nach dem empfang pro datei geprüft
+    router.post("/:userID/photos/bulk").handler(BodyHandler.create()
+      .setBodyLimit(Math.min(photoConfig.getLong("maxBulkUploadSize", 1024L * 1024 * 1024), maxBulkFiles * maxUploadSize))
+      .setDeleteUploadedFilesOnEnd(true));
+    router.route().handler(BodyHandler.create()
+      .setBodyLimit(maxUploadSize)
+      .setDeleteUploadedFilesOnEnd(true));
+
+    // Login und Logout Routen
+    router.post("/login").handler(this::login);
+    router.post("/logout").handler(this::logout);
+
+    // Benutzerverwaltung Routen
+    router.post("/users").handler(this::createUser);
+    router.get("/users").handler(this::getAllUsers);
+    router.get("/users/search").handler(this::searchUser);
+    router.put("/users/:userID").handler(this::editUser);
+    router.delete("/users/:userID").handler(this::deleteUser);
+
+    // Fotoverwaltung Routen
+    router.post("/:userID/photos").handler(this::uploadPhoto);
+    router.post("/:userID/photos/bulk").handler(this::uploadPhotos);
+    router.get("/photos/:photoID").handler(this::servePhoto);
+    router.get("/:userID/photos").handler(this::getAllPhotos);
+    router.get("/:userID/photos/search").handler(this::searchPhoto);
+    router.get("/:userID/photos/tagged").handler(this::getTaggedPhotos);
+    router.put("/:userID/photos/:photoID").handler(this::editPhoto);
+    router.delete("/:userID/photos/:photoID").handler(this::deletePhoto);
+
+    // Albumverwaltung Routen
+    router.post("/:userID/albums").handler(this::createAlbum);
+    router.get("/:userID/albums").handler(this::getAllAlbums);
+    router.get("/:userID/albums/search").handler(this::searchAlbum);
+    router.get("/:userID/albums/tagged").handler(this::getTaggedAlbums);
+    router.put("/:userID/albums/:albumID").handler(this::editAlbum);
+    router.delete("/:userID/albums/:albumID").handler(this::deleteAlbum);
+    router.post("/:userID/albums/:albumID/photos/:photoID").handler(this::addPhotoToAlbum);
+    router.get("/:userID/albums/:albumID/photos").handler(this::getAllPhotosFromAlbum);
+    router.delete("/:userID/albums/:albumID/photos/:photoID").handler(this::deletePhotoFromAlbum);
+    router.post("/:userID/albums/:albumID/photos").handler(this::addPhotosToAlbum);
+    router.delete("/:userID/albums/:albumID/photos").handler(this::deletePhotosFromAlbum);
+
+    // Tag Routen
+    router.get("/:userID/tags").handler(this::getTagCounts);
+    router.get("/:userID/tags/suggest").handler(this::suggestTags);
+
+    // Betriebsstatistiken
+    router.get("/admin/pool").handler(this::getPoolStats);
+    router.get("/admin/statements").handler(this::getStatementStats);
+    router.get("/metrics").handler(this::getMetrics);
+  }
 
-      // Albumverwaltung Routen
-      router.post("/:userID/albums").handler(this::createAlbum);
-      router.get("/:userID/albums").handler(this::getAllAlbums);
-      router.get("/:userID/albums/search").handler(this::searchAlbum);
-      router.put("/:userID/albums/:albumID").handler(this::editAlbum);
-      router.delete("/:userID/albums/:albumID").handler(this::deleteAlbum);
-      router.post("/:userID/albums/:albumID/photos/:photoID").handler(this::addPhotoToAlbum);
-      router.get("/:userID/albums/:albumID/photos").handler(this::getAllPhotosFromAlbum);
-      router.delete("/:userID/albums/:albumID/photos/:photoID").handler(this::deletePhotoFromAlbum);
 
-    } catch (SQLException sqlex){
-      sqlex.printStackTrace();
-    }
+  /**
+   * Gibt den Verbindungspool, den gemeinsamen Zustand und den Thumbnail Pool beim Beenden des Verticles frei.
+   * Geschlossen werden sie mit der letzten Instanz.
+   * @param stopPromise
+   */
+  @Override
+  public void stop(Promise<Void> stopPromise) {
+    shared.release(vertx);
+    thumbnailExecutor.close();
+    db.close().onComplete(stopPromise);
   }
 
 
@@ -119,25 +285,47 @@ public class MainVerticle extends AbstractVerticle {
     String username = jsonBody.getString("username");
     String password = jsonBody.getString("password");
 
-    String query = "SELECT userID, hashed_password FROM users WHERE username = ?";
+    String query = "SELECT userID, hashed_password, role FROM users WHERE username = ?";
     JsonObject responseJson = new JsonObject();
-    try (PreparedStatement stmt = conn.prepareStatement(query)) {
-      stmt.setString(1, username);
-      ResultSet rs = stmt.executeQuery();
-      if (rs.next()) {
-        String hashedPassword = rs.getString("hashed_password");
-        if (BCrypt.verifyer().verify(password.toCharArray(), hashedPassword).verified) {
-          int userID = rs.getInt("userID");
-          routingContext.session().put("userID", userID);
-
-          // userID mit einfügen in das response json
-          responseJson.put("message", "Login erfolgreich");
-          responseJson.put("userID", userID);
-
-          routingContext.response()
-            .setStatusCode(200)
-            .putHeader("Content-Type", "application/json")
-            .end(responseJson.encode());
+    db.preparedQuery("users.login", query, Tuple.of(username))
+      .onSuccess(rows -> {
+        if (rows.size() > 0) {
+          Row row = rows.iterator().next();
+          String hashedPassword = row.getString("hashed_password");
+          int userID = row.getInteger("userID");
+          String role = row.getString("role");
+
+          // die bcrypt prüfung läuft auf dem hashing pool und nicht auf dem event loop
+          hasher.verify(password, hashedPassword)
+            .onSuccess(verified -> {
+              if (verified) {
+                if (authTokens != null) {
+                  long now = System.currentTimeMillis() / 1000;
+                  responseJson.put("token", authTokens.issue(userID, role, now));
+                  responseJson.put("expiresAt", now + authTokens.ttlSeconds());
+                } else {
+                  routingContext.session().put("userID", userID);
+                  routingContext.session().put("role", role);
+                }
+                rehashIfNeeded(userID, password, hashedPassword);
+
+                // userID mit einfügen in das response json
+                responseJson.put("message", "Login erfolgreich");
+                responseJson.put("userID", userID);
+
+                routingContext.response()
+                  .setStatusCode(200)
+                  .putHeader("Content-Type", "application/json")
+                  .end(responseJson.encode());
+              } else {
+                responseJson.put("message", "Ungültige Anmeldedaten");
+                routingContext.response()
+                  .setStatusCode(401)
+                  .putHeader("Content-Type", "application/json")
+                  .end(responseJson.encode());
+              }
+            })
+            .onFailure(e -> respondHashingFailure(routingContext, e));
         } else {
           responseJson.put("message", "Ungültige Anmeldedaten");
           routingContext.response()
@@ -145,44 +333,77 @@ public class MainVerticle extends AbstractVerticle {
             .putHeader("Content-Type", "application/json")
             .end(responseJson.encode());
         }
-      } else {
-        responseJson.put("message", "Ungültige Anmeldedaten");
+      })
+      .onFailure(e -> {
+        responseJson.put("message", "Datenbankfehler: " + e.getMessage());
         routingContext.response()
-          .setStatusCode(401)
+          .setStatusCode(500)
           .putHeader("Content-Type", "application/json")
           .end(responseJson.encode());
-      }
-    } catch (SQLException e) {
-      responseJson.put("message", "Datenbankfehler: " + e.getMessage());
+      });
+  }
+
+
+  /**
+   * Berechnet den Passwort Hash eines Benutzers im Hintergrund neu, wenn er nicht dem konfigurierten Kostenfaktor entspricht
+   * @param userID ID des angemeldeten Benutzers
+   * @param password Passwort im Klartext
+   * @param hashedPassword bisher gespeicherter Hash
+   */
+  private void rehashIfNeeded(int userID, String password, String hashedPassword) {
+    if (!hasher.needsRehash(hashedPassword)) {
+      return;
+    }
+    hasher.hash(password)
+      .compose(newHash -> db.preparedQuery("users.rehash", "UPDATE users SET hashed_password = ? WHERE userID = ? AND hashed_password = ?",
+        Tuple.of(newHash, userID, hashedPassword)))
+      .onFailure(e -> System.out.println("Rehash für Benutzer " + userID + " fehlgeschlagen: " + e.getMessage()));
+  }
+
+
+  /**
+   * Antwortet mit 503 wenn der Hashing Pool ausgelastet ist, ansonsten mit 500
+   * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
+   * @param e aufgetretener Fehler
+   */
+  private void respondHashingFailure(RoutingContext routingContext, Throwable e) {
+    if (e instanceof PasswordHasher.SaturatedException) {
+      routingContext.response()
+        .setStatusCode(503)
+        .putHeader("Retry-After", "1")
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Server ausgelastet, bitte später erneut versuchen").encode());
+    } else {
       routingContext.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(responseJson.encode());
+        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode());
     }
   }
 
 
   /**
    * Bearbeitet Logout Request indem die sSession des Users zerstört wird.
+   * Im Modus "token" gibt es nichts zu zerstören, der Client verwirft das Token.
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void logout(RoutingContext routingContext) {
-    routingContext.session().destroy();
+    if (routingContext.session() != null) {
+      routingContext.session().destroy();
+    }
     routingContext.response().setStatusCode(200).end("Logout erfolgreich");
   }
 
 
   /**
-   * Erstellt einen neuen Benutzer, wobei nur der Benutzer mit der userID 1 (Admin) dazu berechtigt ist
+   * Erstellt einen neuen Benutzer, wobei nur Benutzer mit der Rolle Admin dazu berechtigt sind
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void createUser(RoutingContext routingContext) {
-    // entnehme user id aus der session
-    Integer userID = routingContext.session().get("userID");
     JsonObject responseJson = new JsonObject();
 
-    // admin hat id = 1 und nur dieser darf benutzer erstellen
-    if (userID == null || userID != 1) {
+    // nur benutzer mit der rolle admin dürfen benutzer erstellen
+    if (!AuthHandler.isAdmin(routingContext)) {
       responseJson.put("message", "Nur der Admin kann Benutzer erstellen");
       routingContext.response()
         .setStatusCode(403) // Forbidden
@@ -197,20 +418,18 @@ public class MainVerticle extends AbstractVerticle {
     String password = jsonBody.getString("password");
 
     // neue benutzerinformationen in die datenbank eintragen
-    String query = "INSERT INTO users (username, hashed_password) VALUES (?, ?)";
-
-    try (PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-      String hashedPassword = BCrypt.withDefaults().hashToString(12, password.toCharArray());
-      stmt.setString(1, username);
-      stmt.setString(2, hashedPassword);
-      int affectedRows = stmt.executeUpdate();
-
-      if (affectedRows > 0) {
-        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-          if (generatedKeys.next()) {
-            int newUserID = generatedKeys.getInt(1);
+    // neue benutzer sind immer normale benutzer, ohne angabe würde die enum spalte den ersten wert "Admin" erhalten
+    String query = "INSERT INTO users (username, hashed_password, role) VALUES (?, ?, 'User')";
+
+    hasher.hash(password)
+      .compose(hashedPassword -> db.preparedQuery("users.insert", query, Tuple.of(username, hashedPassword)))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          Long newUserID = rows.property(MySQLClient.LAST_INSERTED_ID);
+          if (newUserID != null) {
+            usernameIndex.put(newUserID.intValue(), username);
             responseJson.put("message", "User created successfully");
-            responseJson.put("userID", newUserID);
+            responseJson.put("userID", newUserID.intValue());
             routingContext.response()
               .setStatusCode(201)
               .putHeader("Content-Type", "application/json")
@@ -222,119 +441,127 @@ public class MainVerticle extends AbstractVerticle {
               .putHeader("Content-Type", "application/json")
               .end(responseJson.encode());
           }
+        } else {
+          responseJson.put("message", "Creating user failed.");
+          routingContext.response()
+            .setStatusCode(500)
+            .putHeader("Content-Type", "application/json")
+            .end(responseJson.encode());
         }
-      } else {
-        responseJson.put("message", "Creating user failed.");
+      })
+      .onFailure(e -> {
+        if (e instanceof PasswordHasher.SaturatedException) {
+          respondHashingFailure(routingContext, e);
+          return;
+        }
+        responseJson.put("message", "Database error: " + e.getMessage());
         routingContext.response()
           .setStatusCode(500)
           .putHeader("Content-Type", "application/json")
           .end(responseJson.encode());
-      }
-    } catch (SQLException e) {
-      responseJson.put("message", "Database error: " + e.getMessage());
-      routingContext.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(responseJson.encode());
-    }
+      });
   }
 
 
   /**
-   * Ruft alle Benutzer (userID & username) aus der Datnbank ab, wobei nur der Benutzer mit der userID 1 (Admin) dazu berechtigt ist
+   * Ruft alle Benutzer (userID & username) aus der Datnbank ab, wobei nur Benutzer mit der Rolle Admin dazu berechtigt sind
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void getAllUsers(RoutingContext routingContext) {
-
-    Integer sessionUserID = routingContext.session().get("userID");
-
-    if (sessionUserID == null || sessionUserID != 1) {
+    if (!AuthHandler.isAdmin(routingContext)) {
       routingContext.response().setStatusCode(403).end("Nur der Admin hat Zugriff auf Benutzer");
       return;
     }
 
+    Pagination page;
     try {
-      PreparedStatement preparedStatement = conn.prepareStatement("SELECT userID, username FROM users");
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      // json array aller benutzer deklarieren
-      JsonArray users = new JsonArray();
-
-      while (resultSet.next()) {
-        JsonObject user = new JsonObject()
-          .put("userID", resultSet.getInt("userID"))
-          .put("username", resultSet.getString("username"));
-        users.add(user);
-      }
-
-      // antwort als json array aller benutzer
+      page = Pagination.of(routingContext, paginationConfig, Integer.class);
+    } catch (IllegalArgumentException e) {
       routingContext.response()
-        .setStatusCode(200)
+        .setStatusCode(400)
         .putHeader("Content-Type", "application/json")
-        .end(users.encode());
-
-      resultSet.close();
-      preparedStatement.close();
-    } catch (SQLException e) {
-      routingContext.response().setStatusCode(500).end("Error: " + e.getMessage());
+        .end(new JsonObject().put("message", e.getMessage()).encode());
+      return;
     }
+
+    // seitenweise nach userID, jede seite ist ein bereichsscan über den primärschlüssel
+    String query = "SELECT userID, username FROM users" + (page.first() ? "" : " WHERE userID > ?") + " ORDER BY userID LIMIT ?";
+    db.preparedQuery(page.first() ? "users.page" : "users.page.next", query, page.bind(Tuple.tuple()))
+      .onSuccess(rows -> {
+        // json array aller benutzer deklarieren
+        JsonArray users = new JsonArray();
+
+        for (Row row : page.page(routingContext, rows, row -> List.of(row.getInteger("userID")))) {
+          JsonObject user = new JsonObject()
+            .put("userID", row.getInteger("userID"))
+            .put("username", row.getString("username"));
+          users.add(user);
+        }
+
+        // antwort als json array aller benutzer
+        routingContext.response()
+          .setStatusCode(200)
+          .putHeader("Content-Type", "application/json")
+          .end(users.encode());
+      })
+      .onFailure(e -> routingContext.response().setStatusCode(500).end("Error: " + e.getMessage()));
   }
 
 
   /**
-   * Sucht nach Benutzern basierend auf dem eingegebenem Suchwort, wobei nur der Benutzer mit der userID 1 (Admin) dazu berechtigt ist
+   * Sucht nach Benutzern basierend auf dem eingegebenem Suchwort, wobei nur Benutzer mit der Rolle Admin dazu berechtigt sind
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void searchUser(RoutingContext context) {
 
-    Integer sessionUserID = context.session().get("userID");
-
-    if (sessionUserID == null || sessionUserID != 1) {
+    if (!AuthHandler.isAdmin(context)) {
       context.response().setStatusCode(403).end("Nur der Admin kann Benutzer suchen");
       return;
     }
 
     String searchTerm = context.queryParam("searchTerm").stream().findFirst().orElse("");
-    // suchbegriff mit % umschließen sodass in der sql abfrage alle ergebnisse geliefert werden die den suchbegriff enthalten
-    searchTerm = "%" + searchTerm + "%";
 
+    int limit;
     try {
-      String searchSql = "SELECT userID, username FROM users WHERE username LIKE ?";
-      PreparedStatement preparedStatement = conn.prepareStatement(searchSql);
-      preparedStatement.setString(1, searchTerm);
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      JsonArray users = new JsonArray();
-
-      while (resultSet.next()) {
-        JsonObject user = new JsonObject()
-          .put("userID", resultSet.getInt("userID"))
-          .put("username", resultSet.getString("username"));
-        users.add(user);
-      }
+      limit = Integer.parseInt(context.queryParam("limit").stream().findFirst().orElse(String.valueOf(USER_SEARCH_DEFAULT_LIMIT)));
+    } catch (NumberFormatException e) {
+      context.response().setStatusCode(400).end("Ungültiges Limit");
+      return;
+    }
 
-      if (!users.isEmpty()) {
-        context.response()
-          .setStatusCode(200)
-          .putHeader("content-type", "application/json")
-          .end(users.encode());
-      } else {
-        context.response().setStatusCode(404).end("Keine Benutzer gefunden");
-      }
+    // treffer kommen aus dem trigramm index, die datenbank wird bei der suche nicht abgefragt
+    JsonArray users = new JsonArray();
+    for (UsernameIndex.Hit hit : usernameIndex.search(searchTerm, Math.min(limit, USER_SEARCH_MAX_LIMIT))) {
+      JsonObject user = new JsonObject()
+        .put("userID", hit.userID())
+        .put("username", hit.username());
+      users.add(user);
+    }
 
-      resultSet.close();
-      preparedStatement.close();
-    } catch (SQLException e) {
-      context.response().setStatusCode(500).end(e.getMessage());
+    if (!users.isEmpty()) {
+      context.response()
+        .setStatusCode(200)
+        .putHeader("content-type", "application/json")
+        .end(users.encode());
+    } else {
+      context.response().setStatusCode(404).end("Keine Benutzer gefunden");
     }
   }
 
 
   /**
-   * Bearbeiten von Benutzername und/oder Passwort eines Benutzers, wobei nur der Benutzer mit der userID 1 (Admin) dazu berechtigt ist
+   * Bearbeiten von Benutzername und/oder Passwort eines Benutzers, wobei nur Benutzer mit der Rolle Admin dazu berechtigt sind
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void editUser(RoutingContext routingContext) {
+    if (!AuthHandler.isAdmin(routingContext)) {
+      routingContext.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Nur der Admin kann Benutzer bearbeiten").encode());
+      return;
+    }
+
     Integer userID = Integer.parseInt(routingContext.pathParam("userID"));
     JsonObject jsonBody = routingContext.getBodyAsJson();
     String newUsername = jsonBody.getString("username");
@@ -343,69 +570,84 @@ public class MainVerticle extends AbstractVerticle {
     String query = "UPDATE users SET username = ?, hashed_password = ? WHERE userID = ?";
     JsonObject responseJson = new JsonObject();
 
-    try (PreparedStatement stmt = conn.prepareStatement(query)) {
-      String hashedPassword = BCrypt.withDefaults().hashToString(12, newPassword.toCharArray());
-      stmt.setString(1, newUsername);
-      stmt.setString(2, hashedPassword);
-      stmt.setInt(3, userID);
-
-      int affectedRows = stmt.executeUpdate();
-      if (affectedRows > 0) {
-        responseJson.put("message", "Benutzerinformationen erfolgreich geändert.");
-        routingContext.response()
-          .setStatusCode(200)
-          .putHeader("Content-Type", "application/json")
-          .end(responseJson.encode());
-      } else {
-        responseJson.put("message", "Fehler beim Ändern der Benutzerinformationen.");
+    hasher.hash(newPassword)
+      .compose(hashedPassword -> db.preparedQuery("users.update", query, Tuple.of(newUsername, hashedPassword, userID)))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          usernameIndex.put(userID, newUsername);
+          responseJson.put("message", "Benutzerinformationen erfolgreich geändert.");
+          routingContext.response()
+            .setStatusCode(200)
+            .putHeader("Content-Type", "application/json")
+            .end(responseJson.encode());
+        } else {
+          responseJson.put("message", "Fehler beim Ändern der Benutzerinformationen.");
+          routingContext.response()
+            .setStatusCode(400)
+            .putHeader("Content-Type", "application/json")
+            .end(responseJson.encode());
+        }
+      })
+      .onFailure(e -> {
+        if (e instanceof PasswordHasher.SaturatedException) {
+          respondHashingFailure(routingContext, e);
+          return;
+        }
+        responseJson.put("message", "Datenbankfehler: " + e.getMessage());
         routingContext.response()
-          .setStatusCode(400)
+          .setStatusCode(500)
           .putHeader("Content-Type", "application/json")
           .end(responseJson.encode());
-      }
-    } catch (SQLException e) {
-      responseJson.put("message", "Datenbankfehler: " + e.getMessage());
-      routingContext.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(responseJson.encode());
-    }
+      });
   }
 
 
   /**
-   * Löscht einen Benutzer, wobei nur der Benutzer mit der userID 1 (Admin) dazu berechtigt ist
+   * Löscht einen Benutzer, wobei nur Benutzer mit der Rolle Admin dazu berechtigt sind
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void deleteUser(RoutingContext routingContext) {
+    if (!AuthHandler.isAdmin(routingContext)) {
+      routingContext.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Nur der Admin kann Benutzer löschen").encode());
+      return;
+    }
+
     Integer userID = Integer.parseInt(routingContext.pathParam("userID"));
     JsonObject responseJson = new JsonObject();
 
     String query = "DELETE FROM users WHERE userID = ?";
-    try (PreparedStatement stmt = conn.prepareStatement(query)) {
-      stmt.setInt(1, userID);
-      int affectedRows = stmt.executeUpdate();
-
-      if (affectedRows > 0) {
-        responseJson.put("message", "Benutzer erfolgreich gelöscht.");
-        routingContext.response()
-          .setStatusCode(200)
-          .putHeader("Content-Type", "application/json")
-          .end(responseJson.encode());
-      } else {
-        responseJson.put("message", "Benutzer konnte nicht gefunden werden.");
+    db.preparedQuery("users.delete", query, Tuple.of(userID))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          photoIndex.removeUser(userID);
+          albumIndex.removeUser(userID);
+          photoOwners.removeUser(userID);
+          albumOwners.removeUser(userID);
+          tagSuggestions.removeUser(userID);
+          usernameIndex.remove(userID);
+          responseJson.put("message", "Benutzer erfolgreich gelöscht.");
+          routingContext.response()
+            .setStatusCode(200)
+            .putHeader("Content-Type", "application/json")
+            .end(responseJson.encode());
+        } else {
+          responseJson.put("message", "Benutzer konnte nicht gefunden werden.");
+          routingContext.response()
+            .setStatusCode(404)
+            .putHeader("Content-Type", "application/json")
+            .end(responseJson.encode());
+        }
+      })
+      .onFailure(e -> {
+        responseJson.put("message", "Datenbankfehler: " + e.getMessage());
         routingContext.response()
-          .setStatusCode(404)
+          .setStatusCode(500)
           .putHeader("Content-Type", "application/json")
           .end(responseJson.encode());
-      }
-    } catch (SQLException e) {
-      responseJson.put("message", "Datenbankfehler: " + e.getMessage());
-      routingContext.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(responseJson.encode());
-    }
+      });
   }
 
 
@@ -415,7 +657,7 @@ public class MainVerticle extends AbstractVerticle {
    */
   private void uploadPhoto(RoutingContext routingContext) {
     // Check if the user is logged in
-    Integer userID = routingContext.session().get("userID");
+    Integer userID = AuthHandler.userID(routingContext);
 
     if (userID == null) {
       routingContext.response()
@@ -449,36 +691,63 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    vertx.fileSystem().readFile(upload.uploadedFileName(), result -> {
-      if (result.failed()) {
-        routingContext.response()
-          .setStatusCode(500)
-          .putHeader("Content-Type", "application/json")
-          .end(new JsonObject().put("message", "Fehler beim Lesen der Datei").encode());
-        return;
-      }
-
-      // konvertieren des fotos um es als blob in die datenbank einzutragen
-      Buffer uploadedFileBuffer = result.result();
-      if (uploadedFileBuffer == null) {
-        routingContext.response()
-          .setStatusCode(500)
-          .putHeader("Content-Type", "application/json")
-          .end(new JsonObject().put("message", "Fehler beim Lesen der Datei").encode());
-        return;
-      }
-
-      String insertPhotoSql = "INSERT INTO photos (title, capture_date, tags, photo_blob, user_id) VALUES (?, ?, ?, ?, ?)";
-      try (PreparedStatement insertPhotoStmt = conn.prepareStatement(insertPhotoSql)) {
-        insertPhotoStmt.setString(1, title);
-        insertPhotoStmt.setDate(2, java.sql.Date.valueOf(captureDate));
-        insertPhotoStmt.setString(3, tags);
-        insertPhotoStmt.setBytes(4, uploadedFileBuffer.getBytes());
-        insertPhotoStmt.setInt(5, userID);
-
-        int rowsInserted = insertPhotoStmt.executeUpdate();
-
-        if (rowsInserted > 0) {
+    // das datum vor hash und thumbnails prüfen, damit ein tippfehler keine arbeit und keine dateien im speicher kostet
+    LocalDate captured;
+    try {
+      captured = LocalDate.parse(captureDate);
+    } catch (DateTimeParseException e) {
+      routingContext.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Ungültiges Aufnahmedatum").encode());
+      return;
+    }
+
+    // die datei wird nur gehasht und in den inhaltsadressierten speicher kopiert, die datenbank enthält keine bilddaten.
+    // identische inhalte werden über den hash erkannt und nur einmal gespeichert
+    String fileName = upload.uploadedFileName();
+    Future<BlobStore.Blob> original = blobStore.describe(fileName);
+    Future<List<Thumbnail>> thumbnails = generateThumbnails(fileName);
+    Future.all(original, thumbnails)
+      // foto und thumbnails werden gemeinsam in einer transaktion gespeichert
+      .compose(described -> {
+        List<BlobStore.Blob> blobs = new ArrayList<>();
+        blobs.add(original.result());
+        thumbnails.result().forEach(thumbnail -> blobs.add(thumbnail.blob()));
+        // alle referenzen mit einer batch anweisung erhöhen, sie sperrt die zeilen wie bulk upload und löschen sortiert nach hash
+        return db.withTransaction(conn -> blobStore.retainAll(conn, blobs)
+            .compose(v -> {
+              List<Future<Void>> files = new ArrayList<>();
+              files.add(blobStore.store(original.result(), fileName));
+              thumbnails.result().forEach(thumbnail -> files.add(blobStore.store(thumbnail.blob(), thumbnail.data())));
+              return Future.all(files);
+            })
+            .compose(v -> Statements.define("photos.insert", INSERT_PHOTO_SQL).execute(conn, Tuple.of(title, captured, tags,
+              original.result().hash(), original.result().size(), original.result().mimeType(), userID)))
+            .compose(rows -> {
+              Long photoID = rows.property(MySQLClient.LAST_INSERTED_ID);
+              if (photoID == null) {
+                return Future.succeededFuture(rows);
+              }
+              Future<Void> tagged = TagStore.PHOTOS.replace(conn, photoID.intValue(), tags);
+              if (thumbnails.result().isEmpty()) {
+                return tagged.map(rows);
+              }
+              List<Tuple> batch = new ArrayList<>();
+              for (Thumbnail thumbnail : thumbnails.result()) {
+                batch.add(Tuple.of(photoID.intValue(), thumbnail.size(), thumbnail.blob().hash(), thumbnail.blob().size()));
+              }
+              return tagged.compose(v -> Statements.define("thumbnails.insert", INSERT_THUMBNAIL_SQL).executeBatch(conn, batch)).map(rows);
+            }))
+          // nach einem rollback haben bereits geschriebene dateien keine zeile in blobs mehr
+          .onFailure(e -> blobStore.purge(db, blobs.stream().map(BlobStore.Blob::hash).toList()));
+      })
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          int photoID = rows.property(MySQLClient.LAST_INSERTED_ID).intValue();
+          photoIndex.put(userID, photoID, title, tags);
+          photoOwners.put(photoID, userID);
+          tagSuggestions.put(userID, TagSuggestions.photo(photoID), tags);
           routingContext.response()
             .setStatusCode(201)
             .putHeader("Content-Type", "application/json")
@@ -489,112 +758,775 @@ public class MainVerticle extends AbstractVerticle {
             .putHeader("Content-Type", "application/json")
             .end(new JsonObject().put("message", "Foto konnte nicht hochgeladen werden").encode());
         }
-
-      } catch (SQLException e) {
+      })
+      .onFailure(e -> {
+        if (e instanceof ThumbnailGenerator.ImageTooLargeException) {
+          routingContext.response()
+            .setStatusCode(413)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", e.getMessage()).encode());
+          return;
+        }
         routingContext.response()
           .setStatusCode(500)
           .putHeader("Content-Type", "application/json")
           .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
-      }
-    });
+      });
   }
 
 
   /**
-   * Zeigt ein Foto anhand der photoID
-   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   * Lädt mehrere Fotos mit einer multipart Anfrage hoch. Die Metadaten stehen im Formularfeld "metadata" als JSON Objekt,
+   * dessen Schlüssel die Feldnamen der Dateien sind. Hash und Thumbnails werden für alle Dateien parallel auf Worker Threads
+   * berechnet, danach werden alle Fotos in einer Transaktion mit je einer Batch Anweisung pro Tabelle gespeichert.
+   * Ungültige Dateien werden einzeln abgelehnt, das Ergebnis enthält den Status jeder Datei.
+   * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
-  private void servePhoto(RoutingContext context) {
-    String photoIDParam = context.pathParam("photoID");
+  private void uploadPhotos(RoutingContext routingContext) {
+    Integer userID = AuthHandler.userID(routingContext);
 
-    if (photoIDParam == null || photoIDParam.isEmpty()) {
-      context.response().setStatusCode(400).end("Photo-ID darf nicht leer sein");
+    if (userID == null) {
+      routingContext.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie müssen eingeloggt sein um Fotos hochzuladen").encode());
       return;
     }
 
-    int photoID;
-    try {
-      photoID = Integer.parseInt(photoIDParam);
-    } catch (NumberFormatException e) {
-      context.response().setStatusCode(400).end("Ungültige Photo-ID");
+    List<FileUpload> uploads = routingContext.fileUploads();
+    if (uploads.isEmpty() || uploads.size() > maxBulkFiles) {
+      routingContext.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", uploads.isEmpty() ? "Kein Foto hochgeladen"
+          : "Höchstens " + maxBulkFiles + " Fotos pro Anfrage").encode());
       return;
     }
 
+    JsonObject metadata;
     try {
-      String query = "SELECT photo_blob FROM photos WHERE photoID = ?";
-      PreparedStatement preparedStatement = conn.prepareStatement(query);
-      preparedStatement.setInt(1, photoID);
-      ResultSet resultSet = preparedStatement.executeQuery();
+      String metadataParam = routingContext.request().getFormAttribute("metadata");
+      metadata = metadataParam == null ? new JsonObject() : new JsonObject(metadataParam);
+    } catch (DecodeException e) {
+      routingContext.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Ungültige Metadaten").encode());
+      return;
+    }
 
-      if (resultSet.next()) {
-        byte[] photoBlob = resultSet.getBytes("photo_blob");
+    // jede datei einzeln prüfen, ungültige dateien verhindern nicht das speichern der übrigen
+    List<JsonObject> results = new ArrayList<>();
+    List<BulkPhoto> accepted = new ArrayList<>();
+    for (FileUpload upload : uploads) {
+      JsonObject result = new JsonObject().put("file", upload.name()).put("fileName", upload.fileName());
+      results.add(result);
+      JsonObject photoMetadata = metadata.getValue(upload.name()) instanceof JsonObject json ? json : new JsonObject();
+      String title = photoMetadata.getValue("title") instanceof String text ? text : null;
+      String captureDate = photoMetadata.getValue("capture_date") instanceof String text ? text : null;
+      String tags = photoMetadata.getValue("tags") instanceof String text ? text : null;
 
-        context.response()
-          .putHeader("Content-Type", "image/jpeg")
-          .end(Buffer.buffer(photoBlob));
+      if (upload.size() > maxUploadSize) {
+        result.put("status", 413).put("message", "Foto ist größer als " + maxUploadSize + " Bytes");
+      } else if (title == null || captureDate == null) {
+        result.put("status", 400).put("message", "Titel und Aufnahmedatum dürfen nicht leer sein");
       } else {
-        context.response().setStatusCode(404).end("Foto nicht gefunden");
+        try {
+          accepted.add(new BulkPhoto(results.size() - 1, upload.uploadedFileName(), title, LocalDate.parse(captureDate), tags));
+        } catch (DateTimeParseException e) {
+          result.put("status", 400).put("message", "Ungültiges Aufnahmedatum");
+        }
       }
-
-      resultSet.close();
-      preparedStatement.close();
-    } catch (SQLException e) {
-      context.response().setStatusCode(500).end("Error: " + e.getMessage());
     }
+
+    // hash und thumbnails aller dateien gleichzeitig auf den worker threads berechnen
+    List<Future<PreparedPhoto>> prepared = accepted.stream()
+      .map(photo -> {
+        Future<BlobStore.Blob> original = blobStore.describe(photo.fileName());
+        Future<List<StagedThumbnail>> thumbnails = stageThumbnails(photo.fileName());
+        return Future.all(original, thumbnails).map(all -> new PreparedPhoto(photo, original.result(), thumbnails.result()));
+      })
+      .toList();
+
+    Future.join(prepared)
+      .transform(joined -> {
+        List<PreparedPhoto> ready = new ArrayList<>();
+        for (int i = 0; i < prepared.size(); i++) {
+          if (prepared.get(i).succeeded()) {
+            ready.add(prepared.get(i).result());
+          } else if (prepared.get(i).cause() instanceof ThumbnailGenerator.ImageTooLargeException e) {
+            results.get(accepted.get(i).index()).put("status", 413).put("message", e.getMessage());
+          } else {
+            results.get(accepted.get(i).index()).put("status", 500).put("message", "Foto konnte nicht gelesen werden");
+          }
+        }
+        if (ready.isEmpty()) {
+          return Future.succeededFuture();
+        }
+        return db.withTransaction(conn -> insertPhotos(conn, userID, ready))
+          .onSuccess(photoIDs -> {
+            for (int i = 0; i < ready.size(); i++) {
+              BulkPhoto photo = ready.get(i).photo();
+              int photoID = photoIDs.get(i);
+              photoIndex.put(userID, photoID, photo.title(), photo.tags());
+              photoOwners.put(photoID, userID);
+              tagSuggestions.put(userID, TagSuggestions.photo(photoID), photo.tags());
+              results.get(photo.index()).put("status", 201).put("photoID", photoID);
+            }
+          })
+          .recover(e -> {
+            // die transaktion wurde zurückgerollt, keines der fotos ist gespeichert. bereits geschriebene dateien werden aufgeräumt
+            ready.forEach(photo -> results.get(photo.photo().index()).put("status", 500).put("message", "Datenbankfehler: " + e.getMessage()));
+            List<String> hashes = new ArrayList<>();
+            ready.forEach(photo -> {
+              hashes.add(photo.blob().hash());
+              photo.thumbnails().forEach(thumbnail -> hashes.add(thumbnail.blob().hash()));
+            });
+            blobStore.purge(db, hashes);
+            return Future.succeededFuture();
+          })
+          .mapEmpty();
+      })
+      .onComplete(done -> {
+        // die temporären thumbnail dateien werden nicht vom body handler verwaltet
+        prepared.stream().filter(Future::succeeded).forEach(photo -> photo.result().thumbnails()
+          .forEach(thumbnail -> vertx.fileSystem().delete(thumbnail.file())));
+        long created = results.stream().filter(result -> result.getInteger("status") == 201).count();
+        boolean failed = results.stream().anyMatch(result -> result.getInteger("status") == 500);
+        routingContext.response()
+          .setStatusCode(created == results.size() ? 201 : created > 0 ? 207 : failed ? 500 : 400)
+          .putHeader("Content-Type", "application/json")
+          .end(new JsonObject()
+            .put("message", created + " von " + results.size() + " Fotos wurden hochgeladen")
+            .put("results", new JsonArray(results))
+            .encode());
+      });
   }
 
 
   /**
-   * Ruft alle Fotos des angemeldeten Benutzers ab
-   * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
+   * Speichert die vorbereiteten Fotos eines Bulk Uploads samt Tags und Thumbnails. Jede Tabelle wird mit einer
+   * Batch Anweisung für alle Fotos beschrieben, die Dateien werden danach parallel im Speicher abgelegt.
+   * @param conn Verbindung mit offener Transaktion
+   * @param userID Besitzer der Fotos
+   * @param photos vorbereitete Fotos
+   * @return IDs der Fotos in derselben Reihenfolge
    */
-  private void getAllPhotos(RoutingContext routingContext) {
-    Integer sessionUserID = routingContext.session().get("userID");
+  private Future<List<Integer>> insertPhotos(SqlConnection conn, int userID, List<PreparedPhoto> photos) {
+    List<BlobStore.Blob> blobs = new ArrayList<>();
+    List<Tuple> photoRows = new ArrayList<>();
+    for (PreparedPhoto photo : photos) {
+      blobs.add(photo.blob());
+      photo.thumbnails().forEach(thumbnail -> blobs.add(thumbnail.blob()));
+      photoRows.add(Tuple.of(photo.photo().title(), photo.photo().captureDate(), photo.photo().tags(),
+        photo.blob().hash(), photo.blob().size(), photo.blob().mimeType(), userID));
+    }
+
+    return blobStore.retainAll(conn, blobs)
+      .compose(v -> Statements.define("photos.insert", INSERT_PHOTO_SQL).executeBatch(conn, photoRows))
+      .compose(rows -> {
+        // der batch liefert pro foto eine eigene ergebnismenge mit der vergebenen id
+        List<Integer> photoIDs = new ArrayList<>();
+        for (RowSet<Row> result = rows; result != null; result = result.next()) {
+          photoIDs.add(result.property(MySQLClient.LAST_INSERTED_ID).intValue());
+        }
+        Map<Integer, String> tagsByID = new HashMap<>();
+        List<Tuple> thumbnailRows = new ArrayList<>();
+        List<Future<Void>> files = new ArrayList<>();
+        for (int i = 0; i < photos.size(); i++) {
+          PreparedPhoto photo = photos.get(i);
+          int photoID = photoIDs.get(i);
+          tagsByID.put(photoID, photo.photo().tags());
+          files.add(blobStore.store(photo.blob(), photo.photo().fileName()));
+          for (StagedThumbnail thumbnail : photo.thumbnails()) {
+            thumbnailRows.add(Tuple.of(photoID, thumbnail.size(), thumbnail.blob().hash(), thumbnail.blob().size()));
+            files.add(blobStore.store(thumbnail.blob(), thumbnail.file()));
+          }
+        }
+        Future<Void> inserted = TagStore.PHOTOS.insertAll(conn, tagsByID)
+          .compose(v -> thumbnailRows.isEmpty() ? Future.<Void>succeededFuture()
+            : Statements.define("thumbnails.insert", INSERT_THUMBNAIL_SQL).executeBatch(conn, thumbnailRows).<Void>mapEmpty());
+        // die dateien werden parallel zu den anweisungen geschrieben, die transaktion endet erst wenn beides abgeschlossen ist
+        return Future.join(inserted, Future.join(files)).map(photoIDs);
+      });
+  }
 
-    if (sessionUserID == null) {
-      routingContext.response()
-        .setStatusCode(403)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um ihre Fotos zu sehen").encode());
-      return;
-    }
 
-    try (PreparedStatement preparedStatement = conn.prepareStatement("SELECT photoID, title, capture_date, tags FROM photos WHERE user_id = ?")) {
-      preparedStatement.setInt(1, sessionUserID);
-      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+  /**
+   * Berechnet die Thumbnails einer hochgeladenen Datei samt Hash auf dem Thumbnail Worker Pool.
+   * Kann die Datei nicht als Bild gelesen werden, wird das Foto ohne Thumbnails gespeichert. Hat das Bild mehr als
+   * "maxPixels" Pixel, schlägt das Future mit {@link ThumbnailGenerator.ImageTooLargeException} fehl.
+   * @param fileName Pfad der hochgeladenen Datei
+   * @return Thumbnails aufsteigend nach Größe
+   */
+  private Future<List<Thumbnail>> generateThumbnails(String fileName) {
+    return thumbnailExecutor.<List<Thumbnail>>executeBlocking(() -> thumbnails(fileName), false)
+      .recover(e -> withoutThumbnails(fileName, e));
+  }
 
-        JsonArray photos = new JsonArray();
 
-        while (resultSet.next()) {
-          JsonObject photo = new JsonObject()
-            .put("photoID", resultSet.getInt("photoID"))
-            .put("title", resultSet.getString("title"))
-            .put("capture_date", resultSet.getDate("capture_date").toString())
-            .put("tags", resultSet.getString("tags"))
-            .put("url", "/photo/" + resultSet.getInt("photoID")); // URL to serve the photo blob
-          photos.add(photo);
+  /**
+   * Berechnet die Thumbnails einer Datei eines Bulk Uploads und schreibt sie sofort in temporäre Dateien neben dem Upload
+   * (Dateiname.Größe), sodass bis zum Commit nur Hash und Größe im Speicher bleiben. Die Dateien müssen nach der Anfrage
+   * gelöscht werden.
+   * @param fileName Pfad der hochgeladenen Datei
+   * @return Thumbnails aufsteigend nach Größe
+   */
+  private Future<List<StagedThumbnail>> stageThumbnails(String fileName) {
+    return thumbnailExecutor.<List<StagedThumbnail>>executeBlocking(() -> {
+        List<StagedThumbnail> staged = new ArrayList<>();
+        try {
+          for (Thumbnail thumbnail : thumbnails(fileName)) {
+            Path file = Path.of(fileName + "." + thumbnail.size());
+            Files.write(file, thumbnail.data().getBytes());
+            staged.add(new StagedThumbnail(thumbnail.size(), file.toString(), thumbnail.blob()));
+          }
+          return staged;
+        } catch (Exception e) {
+          for (StagedThumbnail thumbnail : staged) {
+            Files.deleteIfExists(Path.of(thumbnail.file()));
+          }
+          throw e;
         }
+      }, false)
+      .recover(e -> withoutThumbnails(fileName, e));
+  }
 
-        routingContext.response()
-          .setStatusCode(200)
-          .putHeader("Content-Type", "application/json")
-          .end(photos.encode());
-      }
-    } catch (SQLException e) {
-      routingContext.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Error: " + e.getMessage()).encode());
+
+  private List<Thumbnail> thumbnails(String fileName) throws IOException {
+    try (InputStream in = Files.newInputStream(Path.of(fileName))) {
+      List<Thumbnail> thumbnails = new ArrayList<>();
+      ThumbnailGenerator.generate(in, thumbnailSizes, maxThumbnailPixels).forEach((size, data) ->
+        thumbnails.add(new Thumbnail(size, data, BlobStore.describe(data))));
+      thumbnails.sort(Comparator.comparingInt(Thumbnail::size));
+      return thumbnails;
     }
   }
 
 
+  /**
+   * Fehlerhafte Bilddaten verhindern nur die Thumbnails, alle anderen Fehler (zu große Bilder, Dateisystem, Speicher)
+   * lassen den Upload fehlschlagen
+   */
+  private static <T> Future<List<T>> withoutThumbnails(String fileName, Throwable e) {
+    if (!(e instanceof IIOException)) {
+      return Future.failedFuture(e);
+    }
+    System.out.println("Thumbnails für " + fileName + " konnten nicht erzeugt werden: " + e.getMessage());
+    return Future.succeededFuture(List.of());
+  }
+
+
+  /**
+   * Zeigt ein Foto anhand der photoID. Mit dem optionalen Query Parameter size wird die kleinste Thumbnail Variante
+   * ausgeliefert, deren längste Kante mindestens size Pixel hat. Gibt es keine solche Variante, wird das Original ausgeliefert.
+   * Die Datei wird per sendFile direkt aus dem Speicher übertragen, sodass der Kernel die Bytes kopiert.
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void servePhoto(RoutingContext context) {
+    String photoIDParam = context.pathParam("photoID");
+
+    if (photoIDParam == null || photoIDParam.isEmpty()) {
+      context.response().setStatusCode(400).end("Photo-ID darf nicht leer sein");
+      return;
+    }
+
+    int photoID;
+    try {
+      photoID = Integer.parseInt(photoIDParam);
+    } catch (NumberFormatException e) {
+      context.response().setStatusCode(400).end("Ungültige Photo-ID");
+      return;
+    }
+
+    String sizeParam = context.queryParams().get("size");
+    int size = 0;
+    if (sizeParam != null) {
+      try {
+        size = Integer.parseInt(sizeParam);
+      } catch (NumberFormatException e) {
+        context.response().setStatusCode(400).end("Ungültige Größe");
+        return;
+      }
+    }
+
+    // passende variante wählen, ohne passende variante wird das original ausgeliefert. thumbnails sind immer jpeg.
+    // der hash des originals dient als version des fotos, der hash der variante als etag.
+    // die metadaten ändern sich nie und kommen daher nach dem ersten abruf aus dem cache
+    int variantSize = Math.max(size, 0);
+    PhotoCache.Variant cached = photoCache.variant(photoID, variantSize);
+    Future<PhotoCache.Variant> variant;
+    if (cached != null) {
+      variant = Future.succeededFuture(cached);
+    } else {
+      String query = variantSize > 0
+        ? "SELECT p.blob_hash AS version, COALESCE(t.blob_hash, p.blob_hash) AS blob_hash, COALESCE(t.blob_size, p.blob_size) AS blob_size, "
+          + "IF(t.blob_hash IS NULL, p.mime_type, 'image/jpeg') AS mime_type, UNIX_TIMESTAMP(p.created_at) AS modified "
+          + "FROM photos p LEFT JOIN photo_thumbnails t ON t.photo_id = p.photoID "
+          + "AND t.size = (SELECT MIN(size) FROM photo_thumbnails WHERE photo_id = p.photoID AND size >= ?) WHERE p.photoID = ?"
+        : "SELECT blob_hash AS version, blob_hash, blob_size, mime_type, UNIX_TIMESTAMP(created_at) AS modified FROM photos WHERE photoID = ?";
+      Tuple params = variantSize > 0 ? Tuple.of(variantSize, photoID) : Tuple.of(photoID);
+      variant = db.preparedQuery(variantSize > 0 ? "photos.serve.variant" : "photos.serve", query, params)
+        .map(rows -> {
+          if (rows.size() == 0) {
+            return null;
+          }
+          Row row = rows.iterator().next();
+          PhotoCache.Variant found = new PhotoCache.Variant(row.getString("version"), row.getString("blob_hash"),
+            row.getLong("blob_size"), row.getString("mime_type"), row.getLong("modified"));
+          photoCache.putVariant(photoID, variantSize, found);
+          return found;
+        });
+    }
+
+    variant
+      .onSuccess(found -> {
+        if (found != null) {
+          sendVariant(context, found);
+        } else {
+          context.response().setStatusCode(404).end("Foto nicht gefunden");
+        }
+      })
+      .onFailure(e -> context.response().setStatusCode(500).end("Error: " + e.getMessage()));
+  }
+
+
+  /**
+   * Liefert eine Variante eines Fotos mit Caching Headern aus, ganz oder in Bereichen.
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   * @param variant Metadaten der Variante
+   */
+  private void sendVariant(RoutingContext context, PhotoCache.Variant variant) {
+    String hash = variant.hash();
+    String etag = "\"" + hash + "\"";
+    Instant lastModified = Instant.ofEpochSecond(variant.modified());
+    HttpServerResponse response = context.response();
+
+    // der inhalt eines fotos ändert sich nie. urls mit aktueller version dürfen daher dauerhaft gecacht werden,
+    // alle anderen müssen vom browser per etag revalidiert werden
+    boolean versioned = variant.version().equals(context.queryParams().get("v"));
+    response
+      .putHeader("ETag", etag)
+      .putHeader("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atOffset(ZoneOffset.UTC)))
+      .putHeader("Cache-Control", versioned ? "private, max-age=31536000, immutable" : "private, no-cache");
+
+    if (isNotModified(context.request(), etag, lastModified)) {
+      response.setStatusCode(304).end();
+      return;
+    }
+
+    // range anfragen werden nur beantwortet, wenn die im if-range genannte version noch aktuell ist
+    long fileSize = variant.size();
+    String mimeType = variant.mimeType();
+    String path = blobStore.path(hash);
+    List<ByteRange> ranges = ifRangeMatches(context.request(), etag, lastModified)
+      ? ByteRange.parse(context.request().getHeader("Range"), fileSize)
+      : null;
+    response.putHeader("Accept-Ranges", "bytes");
+
+    if (ranges == null) {
+      response.putHeader("Content-Type", mimeType);
+      sendCached(response, hash, path, fileSize);
+    } else if (ranges.isEmpty()) {
+      response.setStatusCode(416)
+        .putHeader("Content-Range", "bytes */" + fileSize)
+        .end();
+    } else if (ranges.size() == 1) {
+      // einzelner bereich: sendFile springt direkt an die position, es wird nur der bereich gelesen
+      ByteRange range = ranges.get(0);
+      response.setStatusCode(206)
+        .putHeader("Content-Type", mimeType)
+        .putHeader("Content-Range", range.contentRange(fileSize))
+        .sendFile(path, range.start(), range.length())
+        .onFailure(e -> sendFileFailed(response, e));
+    } else {
+      sendMultipartRanges(response, path, mimeType, fileSize, ranges);
+    }
+  }
+
+
+  /**
+   * Liefert eine ganze Datei aus. Liegt sie im Cache, wird sie ohne Zugriff auf die Platte aus dem Cache gesendet.
+   * Sonst wird sie per sendFile übertragen und danach auf einem Worker Thread in den Cache geladen.
+   * @param response HTTP Antwort
+   * @param hash SHA-256 Hash der Datei
+   * @param path Pfad der Datei
+   * @param size Größe der Datei
+   */
+  private void sendCached(HttpServerResponse response, String hash, String path, long size) {
+    if (photoCache.send(hash, response)) {
+      return;
+    }
+    response.sendFile(path).onFailure(e -> sendFileFailed(response, e));
+    photoCache.load(vertx, hash, path, size);
+  }
+
+
+  /**
+   * Liest eine Datei aus dem Cache bzw. aus dem Speicher und legt sie danach im Cache ab.
+   * @param hash SHA-256 Hash der Datei
+   * @param path Pfad der Datei
+   * @return Inhalt der Datei
+   */
+  private Future<Buffer> readCached(String hash, String path) {
+    Buffer cached = photoCache.copy(hash);
+    if (cached != null) {
+      return Future.succeededFuture(cached);
+    }
+    return vertx.fileSystem().readFile(path)
+      .onSuccess(data -> photoCache.put(hash, data));
+  }
+
+
+  /**
+   * Beantwortet eine Anfrage mit mehreren Bereichen als multipart/byteranges. Die Bereiche werden blockweise
+   * per positionellem Lesen aus der Datei übertragen, sodass nie die ganze Datei im Speicher liegt.
+   * @param response HTTP Antwort
+   * @param path Pfad der Datei
+   * @param mimeType MIME Type der Datei
+   * @param size Größe der Datei
+   * @param ranges auszuliefernde Bereiche
+   */
+  private void sendMultipartRanges(HttpServerResponse response, String path, String mimeType, long size, List<ByteRange> ranges) {
+    String boundary = UUID.randomUUID().toString().replace("-", "");
+    List<Buffer> partHeaders = new ArrayList<>();
+    long contentLength = 0;
+    for (ByteRange range : ranges) {
+      Buffer partHeader = Buffer.buffer("\r\n--" + boundary + "\r\nContent-Type: " + mimeType
+        + "\r\nContent-Range: " + range.contentRange(size) + "\r\n\r\n");
+      partHeaders.add(partHeader);
+      contentLength += partHeader.length() + range.length();
+    }
+    Buffer trailer = Buffer.buffer("\r\n--" + boundary + "--\r\n");
+    long totalLength = contentLength + trailer.length();
+
+    vertx.fileSystem().open(path, new OpenOptions().setRead(true).setWrite(false))
+      .onSuccess(file -> {
+        response.setStatusCode(206)
+          .putHeader("Content-Type", "multipart/byteranges; boundary=" + boundary)
+          .putHeader("Content-Length", String.valueOf(totalLength));
+
+        Future<Void> written = Future.succeededFuture();
+        for (int i = 0; i < ranges.size(); i++) {
+          Buffer partHeader = partHeaders.get(i);
+          ByteRange range = ranges.get(i);
+          written = written.compose(v -> {
+            response.write(partHeader);
+            return writeRange(response, file, range.start(), range.end() + 1);
+          });
+        }
+        // die datei wird nur hier geschlossen, auch ein abbruch des clients beendet die kette über writeRange
+        written.compose(v -> response.end(trailer))
+          .onFailure(e -> response.reset())
+          .onComplete(ar -> file.close());
+      })
+      .onFailure(e -> response.setStatusCode(500).end("Error: " + e.getMessage()));
+  }
+
+
+  /**
+   * Schreibt einen Bereich einer Datei blockweise in die Antwort. Der nächste Block wird erst gelesen,
+   * wenn die Schreibwarteschlange der Antwort wieder Platz hat. Schließt der Client die Verbindung,
+   * schlägt das Future fehl, auch während auf Platz in der Warteschlange gewartet wird.
+   * @param response HTTP Antwort
+   * @param file geöffnete Datei
+   * @param position Position des nächsten Bytes
+   * @param end Position hinter dem letzten Byte
+   * @return Future das nach dem Schreiben des Bereichs abgeschlossen wird
+   */
+  private Future<Void> writeRange(HttpServerResponse response, AsyncFile file, long position, long end) {
+    if (position >= end) {
+      return Future.succeededFuture();
+    }
+    if (response.closed()) {
+      return Future.failedFuture("Verbindung wurde geschlossen");
+    }
+    int length = (int) Math.min(RANGE_CHUNK_SIZE, end - position);
+    return file.read(Buffer.buffer(length), 0, position, length)
+      .compose(chunk -> {
+        if (chunk.length() == 0) {
+          return Future.failedFuture("Datei ist kürzer als erwartet");
+        }
+        if (response.closed()) {
+          return Future.failedFuture("Verbindung wurde geschlossen");
+        }
+        response.write(chunk);
+        long next = position + chunk.length();
+        if (!response.writeQueueFull()) {
+          return writeRange(response, file, next, end);
+        }
+        // nach einem abbruch kommt kein drain mehr, ohne close handler bliebe die kette für immer offen
+        Promise<Void> drained = Promise.promise();
+        response.drainHandler(v -> drained.tryComplete());
+        response.closeHandler(v -> drained.tryFail("Verbindung wurde geschlossen"));
+        return drained.future().compose(v -> writeRange(response, file, next, end));
+      });
+  }
+
+
+  /**
+   * Beantwortet einen Fehler von sendFile mit 500, oder bricht die Verbindung ab wenn bereits Daten gesendet wurden.
+   * @param response HTTP Antwort
+   * @param e Fehler
+   */
+  private static void sendFileFailed(HttpServerResponse response, Throwable e) {
+    if (!response.headWritten()) {
+      response.setStatusCode(500).end("Error: " + e.getMessage());
+    } else {
+      response.reset();
+    }
+  }
+
+
+  /**
+   * Prüft ob ein If-Range Header zur aktuellen Version passt. Verglichen wird stark, schwache ETags passen nie.
+   * @param request HTTP Anfrage
+   * @param etag aktueller ETag der Ressource
+   * @param lastModified Zeitpunkt der letzten Änderung der Ressource
+   * @return true wenn kein If-Range gesendet wurde oder er zur aktuellen Version passt
+   */
+  private static boolean ifRangeMatches(HttpServerRequest request, String etag, Instant lastModified) {
+    String ifRange = request.getHeader("If-Range");
+    if (ifRange == null) {
+      return true;
+    }
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+      return ifRange.equals(etag);
+    }
+    try {
+      return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().equals(lastModified);
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
+
+  /**
+   * Prüft die bedingten Header einer Anfrage. If-None-Match hat Vorrang, If-Modified-Since wird nur ausgewertet
+   * wenn kein If-None-Match gesendet wurde.
+   * @param request HTTP Anfrage
+   * @param etag aktueller ETag der Ressource
+   * @param lastModified Zeitpunkt der letzten Änderung der Ressource
+   * @return true wenn die Kopie des Clients aktuell ist und mit 304 geantwortet werden kann
+   */
+  private static boolean isNotModified(HttpServerRequest request, String etag, Instant lastModified) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String candidate : ifNoneMatch.split(",")) {
+        String tag = candidate.trim();
+        // für get anfragen wird schwach verglichen, ein W/ präfix wird ignoriert
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if (tag.equals("*") || tag.equals(etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    String ifModifiedSince = request.getHeader("If-Modified-Since");
+    if (ifModifiedSince != null) {
+      try {
+        Instant since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        return !lastModified.isAfter(since);
+      } catch (DateTimeParseException e) {
+        // ungültige datumsangaben werden laut http spezifikation ignoriert
+        return false;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * Liefert eine Seite der Treffer einer Suche im Index, sortiert nach Relevanz und ID.
+   * @param context Kontext der HTTP-Anfrage
+   * @param index Index der Fotos bzw. Alben
+   * @param userID Benutzer
+   * @param searchTerm Suchbegriffe
+   * @param page angefragte Seite mit Relevanz und ID als Cursor
+   * @return höchstens limit Treffer
+   */
+  private static List<SearchIndex.Hit> searchPage(RoutingContext context, SearchIndex index, int userID, String searchTerm, Pagination page) {
+    List<SearchIndex.Hit> candidates = index.search(userID, searchTerm).stream()
+      .filter(hit -> page.first() || hit.after(page.cursor()))
+      .limit(page.fetchSize())
+      .toList();
+    return page.page(context, candidates, hit -> List.of(hit.score(), hit.id()));
+  }
+
+
+  /**
+   * Größe der in den Foto Listen verlinkten Thumbnails
+   * @return kleinste konfigurierte Größe, 0 ohne Thumbnails
+   */
+  private int listThumbnailSize() {
+    return thumbnailSizes.stream().min(Integer::compare).orElse(0);
+  }
+
+
+  /**
+   * Wandelt eine Zeile der Album Listen (albumID, title, tags) in das JSON der Antwort um
+   * @param row Zeile der Abfrage
+   * @return Album als JSON
+   */
+  static JsonObject albumJson(Row row) {
+    return new JsonObject()
+      .put("albumID", row.getInteger("albumID"))
+      .put("title", row.getString("title"))
+      .put("tags", row.getString("tags"));
+  }
+
+
+  /**
+   * Wandelt eine Zeile der Foto Listen in das JSON der Antwort um. Der Hash des Originals dient als Version in den URLs.
+   * @param row Zeile der Abfrage mit photoID, title, capture_date, tags und blob_hash
+   * @param thumbnailSize Größe des verlinkten Thumbnails
+   * @return Foto als JSON
+   */
+  static JsonObject photoJson(Row row, int thumbnailSize) {
+    int photoID = row.getInteger("photoID");
+    String version = row.getString("blob_hash");
+    return new JsonObject()
+      .put("photoID", photoID)
+      .put("title", row.getString("title"))
+      .put("capture_date", row.getLocalDate("capture_date").toString())
+      .put("tags", row.getString("tags"))
+      .put("version", version)
+      .put("url", "/photos/" + photoID + "?v=" + version)
+      .put("thumbnailUrl", "/photos/" + photoID + "?size=" + thumbnailSize + "&v=" + version);
+  }
+
+
+  /**
+   * Bettet Bilddaten als Data-URL ein
+   * @param mimeType MIME Type der Daten
+   * @param data Bilddaten
+   * @return z.B. "data:image/jpeg;base64,..."
+   */
+  static String dataUrl(String mimeType, Buffer data) {
+    return "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(data.getBytes());
+  }
+
+
+  /**
+   * Erzeugt die Platzhalter einer IN Liste, aufgerundet nach {@link Statements#bucket(int)}
+   * @param count Anzahl der Werte
+   * @return z.B. "?, ?, ?, ?" für drei Werte
+   */
+  private static String placeholders(int count) {
+    return String.join(", ", Collections.nCopies(Statements.bucket(count), "?"));
+  }
+
+
+  /**
+   * Ergänzt die Parameter um die Werte einer IN Liste aus {@link #placeholders(int)}. Die überzähligen Platzhalter
+   * werden mit dem letzten Wert belegt, das Ergebnis der Abfrage bleibt dadurch gleich.
+   * @param params Parameter der Abfrage
+   * @param values Werte der IN Liste, nicht leer
+   * @return die ergänzten Parameter
+   */
+  private static Tuple addInValues(Tuple params, List<?> values) {
+    values.forEach(params::addValue);
+    for (int i = values.size(); i < Statements.bucket(values.size()); i++) {
+      params.addValue(values.get(values.size() - 1));
+    }
+    return params;
+  }
+
+
+  /**
+   * Parameter einer Abfrage der Form WHERE user_id = ? AND id IN (...)
+   * @param userID Benutzer
+   * @param hits Treffer deren IDs abgefragt werden
+   * @return Parameter der Abfrage
+   */
+  private static Tuple hitParams(int userID, List<SearchIndex.Hit> hits) {
+    return addInValues(Tuple.of(userID), hits.stream().map(SearchIndex.Hit::id).toList());
+  }
+
+
+  /**
+   * Ergänzt die Parameter einer Fotoabfrage um den Cursor (capture_date, capture_date, photoID) und das Limit.
+   * @param params Parameter der Filterbedingung
+   * @param page angefragte Seite
+   * @return vollständige Parameter der Abfrage
+   */
+  private static Tuple photoPageParams(Tuple params, Pagination page) {
+    if (!page.first()) {
+      params.addValue(page.cursor().get(0)).addValue(page.cursor().get(0)).addValue(page.cursor().get(1));
+    }
+    return params.addInteger(page.fetchSize());
+  }
+
+
+  /**
+   * Liefert die Sortierschlüssel eines Fotos für den Cursor der nächsten Seite
+   * @param row Zeile des Fotos
+   * @return capture_date und photoID
+   */
+  private static List<Object> photoCursor(Row row) {
+    return List.of(row.getLocalDate("capture_date"), row.getInteger("photoID"));
+  }
+
+
+  /**
+   * Ruft alle Fotos des angemeldeten Benutzers ab
+   * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void getAllPhotos(RoutingContext routingContext) {
+    Integer sessionUserID = AuthHandler.userID(routingContext);
+
+    if (sessionUserID == null) {
+      routingContext.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um ihre Fotos zu sehen").encode());
+      return;
+    }
+
+    Pagination page;
+    try {
+      page = Pagination.of(routingContext, paginationConfig, LocalDate.class, Integer.class);
+    } catch (IllegalArgumentException e) {
+      routingContext.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", e.getMessage()).encode());
+      return;
+    }
+
+    // seitenweise nach aufnahmedatum und photoID über den index (user_id, capture_date, photoID)
+    String query = "SELECT photoID, title, capture_date, tags, blob_hash FROM photos WHERE user_id = ?"
+      + (page.first() ? "" : " AND (capture_date > ? OR (capture_date = ? AND photoID > ?))")
+      + " ORDER BY capture_date, photoID LIMIT ?";
+    db.preparedQuery(page.first() ? "photos.page" : "photos.page.next", query, photoPageParams(Tuple.of(sessionUserID), page))
+      .onSuccess(rows -> {
+        JsonArray photos = new JsonArray();
+
+        for (Row row : page.page(routingContext, rows, MainVerticle::photoCursor)) {
+          photos.add(photoJson(row, listThumbnailSize()));
+        }
+
+        routingContext.response()
+          .setStatusCode(200)
+          .putHeader("Content-Type", "application/json")
+          .end(photos.encode());
+      })
+      .onFailure(e -> routingContext.response()
+        .setStatusCode(500)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Error: " + e.getMessage()).encode()));
+  }
+
+
   /**
    * Sucht nach Fotos des angemeldeten Benutzers anhand von Titel und/oder Tags
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void searchPhoto(RoutingContext context) {
-    Integer sessionUserID = context.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
       context.response()
@@ -634,46 +1566,152 @@ public class MainVerticle extends AbstractVerticle {
     }
 
     String searchTerm = context.queryParam("searchTerm").stream().findFirst().orElse("");
-    searchTerm = "%" + searchTerm + "%";
 
+    Pagination page;
     try {
-      String searchSql = "SELECT photoID, title, capture_date, tags FROM photos WHERE user_id = ? AND (title LIKE ? OR tags LIKE ?)";
-      PreparedStatement preparedStatement = conn.prepareStatement(searchSql);
-      preparedStatement.setInt(1, userID);
-      preparedStatement.setString(2, searchTerm);
-      preparedStatement.setString(3, searchTerm);
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      JsonArray photos = new JsonArray();
-
-      while (resultSet.next()) {
-        JsonObject photo = new JsonObject()
-          .put("photoID", resultSet.getInt("photoID"))
-          .put("title", resultSet.getString("title"))
-          .put("capture_date", resultSet.getDate("capture_date").toString())
-          .put("tags", resultSet.getString("tags"))
-          .put("url", "/photo/" + resultSet.getInt("photoID"));
-        photos.add(photo);
-      }
+      page = Pagination.of(context, paginationConfig, Integer.class, Integer.class);
+    } catch (IllegalArgumentException e) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", e.getMessage()).encode());
+      return;
+    }
+
+    // treffer und reihenfolge kommen aus dem invertierten index, aus der datenbank werden nur die fotos der seite geladen
+    List<SearchIndex.Hit> hits = searchPage(context, photoIndex, userID, searchTerm, page);
+    if (hits.isEmpty()) {
+      context.response()
+        .setStatusCode(404)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Keine Fotos gefunden").encode());
+      return;
+    }
+
+    String searchSql = "SELECT photoID, title, capture_date, tags, blob_hash FROM photos WHERE user_id = ? AND photoID IN ("
+      + placeholders(hits.size()) + ")";
+    db.preparedQuery("photos.byIds." + Statements.bucket(hits.size()), searchSql, hitParams(userID, hits))
+      .onSuccess(rows -> {
+        Map<Integer, JsonObject> found = new HashMap<>();
+        for (Row row : rows) {
+          found.put(row.getInteger("photoID"), photoJson(row, listThumbnailSize()));
+        }
+        JsonArray photos = new JsonArray();
+        hits.stream().map(hit -> found.get(hit.id())).filter(photo -> photo != null).forEach(photos::add);
+
+        if (!photos.isEmpty()) {
+          context.response()
+            .setStatusCode(200)
+            .putHeader("Content-Type", "application/json")
+            .end(photos.encode());
+        } else {
+          context.response()
+            .setStatusCode(404)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Keine Fotos gefunden").encode());
+        }
+      })
+      .onFailure(e -> context.response()
+        .setStatusCode(500)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Error: " + e.getMessage()).encode()));
+  }
+
+
+  /**
+   * Ruft die Fotos des angemeldeten Benutzers ab, die alle angegebenen Tags tragen
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void getTaggedPhotos(RoutingContext context) {
+    Integer sessionUserID = AuthHandler.userID(context);
+
+    if (sessionUserID == null) {
+      context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um ihre Fotos zu sehen").encode());
+      return;
+    }
+
+    String userIDParam = context.pathParam("userID");
+
+    if (userIDParam == null || userIDParam.isEmpty()) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "User-ID darf nicht leer sein").encode());
+      return;
+    }
+
+    int userID;
+    try {
+      userID = Integer.parseInt(userIDParam);
+    } catch (NumberFormatException e) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Ungültige User-ID").encode());
+      return;
+    }
+
+    if (!sessionUserID.equals(userID)) {
+      context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie können nur ihre eigenen Fotos sehen").encode());
+      return;
+    }
+
+    List<String> tags = TagStore.parse(String.join(",", context.queryParam("tags")));
+    if (tags.isEmpty()) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Mindestens ein Tag wird benötigt").encode());
+      return;
+    }
+
+    Pagination page;
+    try {
+      page = Pagination.of(context, paginationConfig, LocalDate.class, Integer.class);
+    } catch (IllegalArgumentException e) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", e.getMessage()).encode());
+      return;
+    }
+
+    // nur fotos bei denen alle angefragten tags zugeordnet sind, sortiert wie die fotoliste
+    String query = "SELECT p.photoID, p.title, p.capture_date, p.tags, p.blob_hash FROM photos p"
+      + " JOIN photo_tags pt ON pt.photo_id = p.photoID JOIN tags t ON t.tagID = pt.tag_id"
+      + " WHERE p.user_id = ? AND t.name IN (" + placeholders(tags.size()) + ")"
+      + (page.first() ? "" : " AND (p.capture_date > ? OR (p.capture_date = ? AND p.photoID > ?))")
+      + " GROUP BY p.photoID HAVING COUNT(*) = ? ORDER BY p.capture_date, p.photoID LIMIT ?";
+    Tuple params = addInValues(Tuple.of(userID), tags);
+    if (!page.first()) {
+      params.addValue(page.cursor().get(0)).addValue(page.cursor().get(0)).addValue(page.cursor().get(1));
+    }
+    params.addInteger(tags.size()).addInteger(page.fetchSize());
+
+    String name = "photos.tagged." + Statements.bucket(tags.size()) + (page.first() ? "" : ".next");
+    db.preparedQuery(name, query, params)
+      .onSuccess(rows -> {
+        JsonArray photos = new JsonArray();
+
+        for (Row row : page.page(context, rows, MainVerticle::photoCursor)) {
+          photos.add(photoJson(row, listThumbnailSize()));
+        }
 
-      if (!photos.isEmpty()) {
         context.response()
           .setStatusCode(200)
           .putHeader("Content-Type", "application/json")
           .end(photos.encode());
-      } else {
-        context.response()
-          .setStatusCode(404)
-          .putHeader("Content-Type", "application/json")
-          .end(new JsonObject().put("message", "Keine Fotos gefunden").encode());
-      }
-
-    } catch (SQLException e) {
-      context.response()
+      })
+      .onFailure(e -> context.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Error: " + e.getMessage()).encode());
-    }
+        .end(new JsonObject().put("message", "Error: " + e.getMessage()).encode()));
   }
 
 
@@ -682,7 +1720,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void editPhoto(RoutingContext context) {
-    Integer sessionUserID = context.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
       context.response()
@@ -753,32 +1791,27 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try {
-      // überprüfen ob das foto existiert und welchem benutzer gehört
-      String checkPhotoSql = "SELECT * FROM photos WHERE photoID = ? AND user_id = ?";
-      try (PreparedStatement checkStmt = conn.prepareStatement(checkPhotoSql)) {
-        checkStmt.setInt(1, photoID);
-        checkStmt.setInt(2, userID);
-        try (ResultSet checkResult = checkStmt.executeQuery()) {
-          if (!checkResult.next()) {
-            context.response()
-              .setStatusCode(404)
-              .putHeader("Content-Type", "application/json")
-              .end(new JsonObject().put("message", "Foto nicht gefunden oder gehört nicht zu diesem Benutzer").encode());
-            return;
-          }
-        }
-      }
-
-      String updateSql = "UPDATE photos SET title = ?, tags = ? WHERE photoID = ? AND user_id = ?";
-      try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-        updateStmt.setString(1, newTitle);
-        updateStmt.setString(2, newTags);
-        updateStmt.setInt(3, photoID);
-        updateStmt.setInt(4, userID);
+    // der besitzerindex beantwortet die prüfung ohne datenbankzugriff. ist das foto dort noch nicht bekannt,
+    // prüft die bedingung user_id = ? der änderung den besitz in derselben abfrage
+    Integer owner = photoOwners.owner(photoID);
+    if (owner != null && owner != userID) {
+      context.response()
+        .setStatusCode(404)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Foto nicht gefunden oder gehört nicht zu diesem Benutzer").encode());
+      return;
+    }
 
-        int rowsAffected = updateStmt.executeUpdate();
-        if (rowsAffected > 0) {
+    // tag text und tag zuordnungen werden gemeinsam geändert
+    String updateSql = "UPDATE photos SET title = ?, tags = ? WHERE photoID = ? AND user_id = ?";
+    db.withTransaction(conn -> Statements.define("photos.update", updateSql).execute(conn, Tuple.of(newTitle, newTags, photoID, userID))
+        .compose(rows -> rows.rowCount() > 0
+          ? TagStore.PHOTOS.replace(conn, photoID, newTags).map(rows)
+          : Future.succeededFuture(rows)))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          photoIndex.put(userID, photoID, newTitle, newTags);
+          tagSuggestions.put(userID, TagSuggestions.photo(photoID), newTags);
           context.response()
             .setStatusCode(200)
             .putHeader("Content-Type", "application/json")
@@ -789,20 +1822,14 @@ public class MainVerticle extends AbstractVerticle {
             .putHeader("Content-Type", "application/json")
             .end(new JsonObject().put("message", "Foto nicht gefunden.").encode());
         }
-      }
-    } catch (SQLException e) {
-      e.printStackTrace();
-      context.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Foto konnte nicht geändert werden: " + e.getMessage()).encode());
-    } catch (Exception e) {
-      e.printStackTrace();
-      context.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Ein unerwarteter Fehler ist aufgetreten: " + e.getMessage()).encode());
-    }
+      })
+      .onFailure(e -> {
+        e.printStackTrace();
+        context.response()
+          .setStatusCode(500)
+          .putHeader("Content-Type", "application/json")
+          .end(new JsonObject().put("message", "Foto konnte nicht geändert werden: " + e.getMessage()).encode());
+      });
   }
 
 
@@ -811,7 +1838,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void deletePhoto(RoutingContext context) {
-    Integer sessionUserID = context.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
       context.response()
@@ -861,27 +1888,61 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try (PreparedStatement preparedStatement = conn.prepareStatement("DELETE FROM photos WHERE photoID = ? AND user_id = ?")) {
-      preparedStatement.setInt(1, photoID);
-      preparedStatement.setInt(2, userID);
-      int rowsAffected = preparedStatement.executeUpdate();
-
-      if (rowsAffected > 0) {
-        context.response()
-          .setStatusCode(204)
-          .end();
-      } else {
-        context.response()
-          .setStatusCode(404)
-          .putHeader("Content-Type", "application/json")
-          .end(new JsonObject().put("message", "Foto existiert nicht oder wurde bereits gelöscht").encode());
-      }
-    } catch (SQLException e) {
-      context.response()
+    // referenzen auf original und thumbnails werden in derselben transaktion freigegeben,
+    // nicht mehr referenzierte dateien werden erst nach dem commit aus dem speicher gelöscht
+    String hashesSql = "SELECT p.blob_hash AS photo_hash, t.blob_hash AS thumb_hash FROM photos p "
+      + "LEFT JOIN photo_thumbnails t ON t.photo_id = p.photoID WHERE p.photoID = ? AND p.user_id = ? FOR UPDATE";
+    List<String> hashes = new ArrayList<>();
+    List<String> unreferenced = new ArrayList<>();
+    db.withTransaction(conn -> Statements.define("photos.delete.hashes", hashesSql).execute(conn, Tuple.of(photoID, userID))
+        .compose(hashRows -> Statements.define("photos.delete", "DELETE FROM photos WHERE photoID = ? AND user_id = ?")
+          .execute(conn, Tuple.of(photoID, userID))
+          .compose(rows -> {
+            // jede referenz wird einzeln freigegeben, das original steht durch den join in jeder zeile
+            for (Row row : hashRows) {
+              if (hashes.isEmpty()) {
+                hashes.add(row.getString("photo_hash"));
+              }
+              if (row.getString("thumb_hash") != null) {
+                hashes.add(row.getString("thumb_hash"));
+              }
+            }
+            // nach hash sortiert, damit die zeilen in blobs in derselben reihenfolge wie beim hochladen gesperrt werden
+            Future<Void> released = Future.succeededFuture();
+            for (String hash : hashes.stream().sorted().toList()) {
+              released = released.compose(v -> blobStore.release(conn, hash))
+                .map(deleted -> {
+                  if (deleted) {
+                    unreferenced.add(hash);
+                  }
+                  return null;
+                });
+            }
+            return released.map(rows);
+          })))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          // erst nach dem commit aus dem cache entfernen, noch referenzierte inhalte werden beim nächsten abruf neu geladen
+          hashes.forEach(photoCache::invalidate);
+          photoCache.invalidatePhoto(photoID);
+          blobStore.purge(db, unreferenced);
+          photoIndex.remove(userID, photoID);
+          photoOwners.remove(photoID);
+          tagSuggestions.remove(userID, TagSuggestions.photo(photoID));
+          context.response()
+            .setStatusCode(204)
+            .end();
+        } else {
+          context.response()
+            .setStatusCode(404)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Foto existiert nicht oder wurde bereits gelöscht").encode());
+        }
+      })
+      .onFailure(e -> context.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
-    }
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
   }
 
 
@@ -890,7 +1951,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void createAlbum(RoutingContext routingContext) {
-    Integer sessionUserID = routingContext.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(routingContext);
 
     if (sessionUserID == null) {
       routingContext.response()
@@ -920,61 +1981,323 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try {
-      // Insert new album into the database
-      String insertAlbumSql = "INSERT INTO albums (title, tags, user_id) VALUES (?, ?, ?)";
-      try (PreparedStatement insertAlbumStmt = conn.prepareStatement(insertAlbumSql)) {
-        insertAlbumStmt.setString(1, title);
-        insertAlbumStmt.setString(2, tags);
-        insertAlbumStmt.setInt(3, sessionUserID);
-        int rowsInserted = insertAlbumStmt.executeUpdate();
-
-        if (rowsInserted > 0) {
-          System.out.println("Insert erfolgreich \nAlbum: " + title + " \nTags: " + tags + " wurde erstellt.");
-          routingContext.response()
-            .setStatusCode(201)
-            .putHeader("Content-Type", "application/json")
-            .end(new JsonObject().put("message", "Album erfolgreich erstellt").encode());
-        } else {
-          routingContext.response()
-            .setStatusCode(500)
-            .putHeader("Content-Type", "application/json")
-            .end(new JsonObject().put("message", "Album konnte nicht erstellt werden").encode());
+    // Insert new album into the database
+    String insertAlbumSql = "INSERT INTO albums (title, tags, user_id) VALUES (?, ?, ?)";
+    db.withTransaction(conn -> Statements.define("albums.insert", insertAlbumSql).execute(conn, Tuple.of(title, tags, sessionUserID))
+        .compose(rows -> TagStore.ALBUMS.replace(conn, rows.property(MySQLClient.LAST_INSERTED_ID).intValue(), tags).map(rows)))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          int albumID = rows.property(MySQLClient.LAST_INSERTED_ID).intValue();
+          albumIndex.put(sessionUserID, albumID, title, tags);
+          albumOwners.put(albumID, sessionUserID);
+          tagSuggestions.put(sessionUserID, TagSuggestions.album(albumID), tags);
+          System.out.println("Insert erfolgreich \nAlbum: " + title + " \nTags: " + tags + " wurde erstellt.");
+          routingContext.response()
+            .setStatusCode(201)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Album erfolgreich erstellt").encode());
+        } else {
+          routingContext.response()
+            .setStatusCode(500)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Album konnte nicht erstellt werden").encode());
+        }
+      })
+      .onFailure(e -> routingContext.response()
+        .setStatusCode(500)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
+  }
+
+
+  /**
+   * Ruft alle Alben des angemeldeten Benutzers ab
+   * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void getAllAlbums(RoutingContext routingContext) {
+    Integer sessionUserID = AuthHandler.userID(routingContext);
+
+    if (sessionUserID == null) {
+      routingContext.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um Ihre Alben zu sehen").encode());
+      return;
+    }
+
+    String userIDParam = routingContext.pathParam("userID");
+
+    if (userIDParam == null || userIDParam.isEmpty()) {
+      routingContext.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "User-ID darf nicht leer sein").encode());
+      return;
+    }
+
+    int userID;
+    try {
+      userID = Integer.parseInt(userIDParam);
+    } catch (NumberFormatException e) {
+      routingContext.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Ungültige User-ID").encode());
+      return;
+    }
+
+    if (!sessionUserID.equals(userID)) {
+      routingContext.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie können nur Ihre eigenen Alben sehen").encode());
+      return;
+    }
+
+    Pagination page;
+    try {
+      page = Pagination.of(routingContext, paginationConfig, Integer.class);
+    } catch (IllegalArgumentException e) {
+      routingContext.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", e.getMessage()).encode());
+      return;
+    }
+
+    // seitenweise nach albumID über den index (user_id, albumID)
+    String query = "SELECT albumID, title, tags FROM albums WHERE user_id = ?"
+      + (page.first() ? "" : " AND albumID > ?") + " ORDER BY albumID LIMIT ?";
+    db.preparedQuery(page.first() ? "albums.page" : "albums.page.next", query, page.bind(Tuple.of(userID)))
+      .onSuccess(rows -> {
+        JsonArray albums = new JsonArray();
+
+        for (Row row : page.page(routingContext, rows, row -> List.of(row.getInteger("albumID")))) {
+          albums.add(albumJson(row));
+        }
+
+        routingContext.response()
+          .setStatusCode(200)
+          .putHeader("Content-Type", "application/json")
+          .end(albums.encode());
+      })
+      .onFailure(e -> routingContext.response()
+        .setStatusCode(500)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode()));
+  }
+
+
+  /**
+   * Sucht nach Alben des angemeldeten Benutzers anhand Titel und/oder Tags
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void searchAlbum(RoutingContext context) {
+    Integer sessionUserID = AuthHandler.userID(context);
+
+    if (sessionUserID == null) {
+      context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um nach Alben zu suchen").encode());
+      return;
+    }
+
+    String userIDParam = context.pathParam("userID");
+
+    if (userIDParam == null || userIDParam.isEmpty()) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "User-ID darf nicht leer sein").encode());
+      return;
+    }
+
+    int userID;
+    try {
+      userID = Integer.parseInt(userIDParam);
+    } catch (NumberFormatException e) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Ungültige User-ID").encode());
+      return;
+    }
+
+    if (!sessionUserID.equals(userID)) {
+      context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie dürfen nur nach Ihren eigenen Alben suchen").encode());
+      return;
+    }
+
+    String searchTerm = context.queryParam("searchTerm").stream().findFirst().orElse("");
+
+    Pagination page;
+    try {
+      page = Pagination.of(context, paginationConfig, Integer.class, Integer.class);
+    } catch (IllegalArgumentException e) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", e.getMessage()).encode());
+      return;
+    }
+
+    // treffer und reihenfolge kommen aus dem invertierten index, aus der datenbank werden nur die alben der seite geladen
+    List<SearchIndex.Hit> hits = searchPage(context, albumIndex, userID, searchTerm, page);
+    if (hits.isEmpty()) {
+      context.response()
+        .setStatusCode(404)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Keine Alben gefunden").encode());
+      return;
+    }
+
+    String searchSql = "SELECT albumID, title, tags FROM albums WHERE user_id = ? AND albumID IN (" + placeholders(hits.size()) + ")";
+    db.preparedQuery("albums.byIds." + Statements.bucket(hits.size()), searchSql, hitParams(userID, hits))
+      .onSuccess(rows -> {
+        Map<Integer, JsonObject> found = new HashMap<>();
+        for (Row row : rows) {
+          found.put(row.getInteger("albumID"), albumJson(row));
+        }
+        JsonArray albums = new JsonArray();
+        hits.stream().map(hit -> found.get(hit.id())).filter(album -> album != null).forEach(albums::add);
+
+        if (albums.isEmpty()) {
+          context.response()
+            .setStatusCode(404)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Keine Alben gefunden").encode());
+        } else {
+          context.response()
+            .setStatusCode(200)
+            .putHeader("Content-Type", "application/json")
+            .end(albums.encode());
+        }
+      })
+      .onFailure(e -> context.response()
+        .setStatusCode(500)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
+  }
+
+
+  /**
+   * Ruft die Alben des angemeldeten Benutzers ab, die alle angegebenen Tags tragen
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void getTaggedAlbums(RoutingContext context) {
+    Integer sessionUserID = AuthHandler.userID(context);
+
+    if (sessionUserID == null) {
+      context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um Ihre Alben zu sehen").encode());
+      return;
+    }
+
+    String userIDParam = context.pathParam("userID");
+
+    if (userIDParam == null || userIDParam.isEmpty()) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "User-ID darf nicht leer sein").encode());
+      return;
+    }
+
+    int userID;
+    try {
+      userID = Integer.parseInt(userIDParam);
+    } catch (NumberFormatException e) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Ungültige User-ID").encode());
+      return;
+    }
+
+    if (!sessionUserID.equals(userID)) {
+      context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie können nur Ihre eigenen Alben sehen").encode());
+      return;
+    }
+
+    List<String> tags = TagStore.parse(String.join(",", context.queryParam("tags")));
+    if (tags.isEmpty()) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Mindestens ein Tag wird benötigt").encode());
+      return;
+    }
+
+    Pagination page;
+    try {
+      page = Pagination.of(context, paginationConfig, Integer.class);
+    } catch (IllegalArgumentException e) {
+      context.response()
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", e.getMessage()).encode());
+      return;
+    }
+
+    // nur alben bei denen alle angefragten tags zugeordnet sind, sortiert wie die albenliste
+    String query = "SELECT a.albumID, a.title, a.tags FROM albums a"
+      + " JOIN album_tags at ON at.album_id = a.albumID JOIN tags t ON t.tagID = at.tag_id"
+      + " WHERE a.user_id = ? AND t.name IN (" + placeholders(tags.size()) + ")"
+      + (page.first() ? "" : " AND a.albumID > ?")
+      + " GROUP BY a.albumID HAVING COUNT(*) = ? ORDER BY a.albumID LIMIT ?";
+    Tuple params = addInValues(Tuple.of(userID), tags);
+    page.cursor().forEach(params::addValue);
+    params.addInteger(tags.size()).addInteger(page.fetchSize());
+
+    String name = "albums.tagged." + Statements.bucket(tags.size()) + (page.first() ? "" : ".next");
+    db.preparedQuery(name, query, params)
+      .onSuccess(rows -> {
+        JsonArray albums = new JsonArray();
+
+        for (Row row : page.page(context, rows, row -> List.of(row.getInteger("albumID")))) {
+          albums.add(albumJson(row));
         }
-      }
-    } catch (SQLException e) {
-      routingContext.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
-    } catch (Exception e) {
-      routingContext.response()
+
+        context.response()
+          .setStatusCode(200)
+          .putHeader("Content-Type", "application/json")
+          .end(albums.encode());
+      })
+      .onFailure(e -> context.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode());
-    }
+        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode()));
   }
 
 
   /**
-   * Ruft alle Alben des angemeldeten Benutzers ab
-   * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
+   * Ruft alle Tags des angemeldeten Benutzers mit der Anzahl der zugeordneten Fotos und Alben ab
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
-  private void getAllAlbums(RoutingContext routingContext) {
-    Integer sessionUserID = routingContext.session().get("userID");
+  private void getTagCounts(RoutingContext context) {
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
-      routingContext.response()
+      context.response()
         .setStatusCode(403)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um Ihre Alben zu sehen").encode());
+        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um Ihre Tags zu sehen").encode());
       return;
     }
 
-    String userIDParam = routingContext.pathParam("userID");
+    String userIDParam = context.pathParam("userID");
 
     if (userIDParam == null || userIDParam.isEmpty()) {
-      routingContext.response()
+      context.response()
         .setStatusCode(400)
         .putHeader("Content-Type", "application/json")
         .end(new JsonObject().put("message", "User-ID darf nicht leer sein").encode());
@@ -985,7 +2308,7 @@ public class MainVerticle extends AbstractVerticle {
     try {
       userID = Integer.parseInt(userIDParam);
     } catch (NumberFormatException e) {
-      routingContext.response()
+      context.response()
         .setStatusCode(400)
         .putHeader("Content-Type", "application/json")
         .end(new JsonObject().put("message", "Ungültige User-ID").encode());
@@ -993,53 +2316,55 @@ public class MainVerticle extends AbstractVerticle {
     }
 
     if (!sessionUserID.equals(userID)) {
-      routingContext.response()
+      context.response()
         .setStatusCode(403)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Sie können nur Ihre eigenen Alben sehen").encode());
+        .end(new JsonObject().put("message", "Sie können nur Ihre eigenen Tags sehen").encode());
       return;
     }
 
-    try (PreparedStatement preparedStatement = conn.prepareStatement("SELECT albumID, title, tags FROM albums WHERE user_id = ?")) {
-      preparedStatement.setInt(1, userID);
-      try (ResultSet resultSet = preparedStatement.executeQuery()) {
-
-        JsonArray albums = new JsonArray();
+    // gezählt wird pro tag über die zuordnungstabellen, nicht über den tag text
+    String query = "SELECT t.name, CAST(SUM(c.photos) AS SIGNED) AS photos, CAST(SUM(c.albums) AS SIGNED) AS albums FROM ("
+      + "SELECT pt.tag_id, COUNT(*) AS photos, 0 AS albums FROM photos p JOIN photo_tags pt ON pt.photo_id = p.photoID"
+      + " WHERE p.user_id = ? GROUP BY pt.tag_id"
+      + " UNION ALL SELECT at.tag_id, 0, COUNT(*) FROM albums a JOIN album_tags at ON at.album_id = a.albumID"
+      + " WHERE a.user_id = ? GROUP BY at.tag_id"
+      + ") c JOIN tags t ON t.tagID = c.tag_id GROUP BY t.tagID, t.name ORDER BY photos DESC, albums DESC, t.name";
+    db.preparedQuery("tags.counts", query, Tuple.of(userID, userID))
+      .onSuccess(rows -> {
+        JsonArray tags = new JsonArray();
 
-        while (resultSet.next()) {
-          JsonObject album = new JsonObject()
-            .put("albumID", resultSet.getInt("albumID"))
-            .put("title", resultSet.getString("title"))
-            .put("tags", resultSet.getString("tags"));
-          albums.add(album);
+        for (Row row : rows) {
+          tags.add(new JsonObject()
+            .put("tag", row.getString("name"))
+            .put("photos", row.getLong("photos"))
+            .put("albums", row.getLong("albums")));
         }
 
-        routingContext.response()
+        context.response()
           .setStatusCode(200)
           .putHeader("Content-Type", "application/json")
-          .end(albums.encode());
-      }
-    } catch (SQLException e) {
-      routingContext.response()
+          .end(tags.encode());
+      })
+      .onFailure(e -> context.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode());
-    }
+        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode()));
   }
 
 
   /**
-   * Sucht nach Alben des angemeldeten Benutzers anhand Titel und/oder Tags
+   * Schlägt Tags des angemeldeten Benutzers vor, die mit dem angegebenen Präfix beginnen
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
-  private void searchAlbum(RoutingContext context) {
-    Integer sessionUserID = context.session().get("userID");
+  private void suggestTags(RoutingContext context) {
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
       context.response()
         .setStatusCode(403)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um nach Alben zu suchen").encode());
+        .end(new JsonObject().put("message", "Sie müssen angemeldet sein um Ihre Tags zu sehen").encode());
       return;
     }
 
@@ -1054,13 +2379,15 @@ public class MainVerticle extends AbstractVerticle {
     }
 
     int userID;
+    int limit;
     try {
       userID = Integer.parseInt(userIDParam);
+      limit = Integer.parseInt(context.queryParam("limit").stream().findFirst().orElse(String.valueOf(SUGGEST_DEFAULT_LIMIT)));
     } catch (NumberFormatException e) {
       context.response()
         .setStatusCode(400)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Ungültige User-ID").encode());
+        .end(new JsonObject().put("message", "Ungültige User-ID oder ungültiges Limit").encode());
       return;
     }
 
@@ -1068,47 +2395,23 @@ public class MainVerticle extends AbstractVerticle {
       context.response()
         .setStatusCode(403)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Sie dürfen nur nach Ihren eigenen Alben suchen").encode());
+        .end(new JsonObject().put("message", "Sie können nur Ihre eigenen Tags sehen").encode());
       return;
     }
 
-    String searchTerm = context.queryParam("searchTerm").stream().findFirst().orElse("");
-    searchTerm = "%" + searchTerm + "%";
-
-    try (PreparedStatement preparedStatement = conn.prepareStatement("SELECT albumID, title, tags FROM albums WHERE user_id = ? AND (title LIKE ? OR tags LIKE ?)")) {
-      preparedStatement.setInt(1, userID);
-      preparedStatement.setString(2, searchTerm);
-      preparedStatement.setString(3, searchTerm);
-
-      try (ResultSet resultSet = preparedStatement.executeQuery()) {
-        JsonArray albums = new JsonArray();
-
-        while (resultSet.next()) {
-          JsonObject album = new JsonObject()
-            .put("albumID", resultSet.getInt("albumID"))
-            .put("title", resultSet.getString("title"))
-            .put("tags", resultSet.getString("tags"));
-          albums.add(album);
-        }
-
-        if (albums.isEmpty()) {
-          context.response()
-            .setStatusCode(404)
-            .putHeader("Content-Type", "application/json")
-            .end(new JsonObject().put("message", "Keine Alben gefunden").encode());
-        } else {
-          context.response()
-            .setStatusCode(200)
-            .putHeader("Content-Type", "application/json")
-            .end(albums.encode());
-        }
-      }
-    } catch (SQLException e) {
-      context.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
+    // vorschläge kommen ohne datenbankzugriff aus dem präfixbaum
+    String prefix = context.queryParam("prefix").stream().findFirst().orElse("");
+    JsonArray suggestions = new JsonArray();
+    for (TagSuggestions.Suggestion suggestion : tagSuggestions.suggest(userID, prefix, Math.min(limit, SUGGEST_MAX_LIMIT))) {
+      suggestions.add(new JsonObject()
+        .put("tag", suggestion.tag())
+        .put("count", suggestion.count()));
     }
+
+    context.response()
+      .setStatusCode(200)
+      .putHeader("Content-Type", "application/json")
+      .end(suggestions.encode());
   }
 
 
@@ -1117,7 +2420,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void editAlbum(RoutingContext context) {
-    Integer sessionUserID = context.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
       context.response()
@@ -1187,32 +2490,27 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try {
-      // überprüfen ob das album existiert und dem benutzer gehört
-      String checkAlbumSql = "SELECT * FROM albums WHERE albumID = ? AND user_id = ?";
-      try (PreparedStatement checkStmt = conn.prepareStatement(checkAlbumSql)) {
-        checkStmt.setInt(1, albumID);
-        checkStmt.setInt(2, userID);
-        try (ResultSet checkResult = checkStmt.executeQuery()) {
-          if (!checkResult.next()) {
-            context.response()
-              .setStatusCode(404)
-              .putHeader("Content-Type", "application/json")
-              .end(new JsonObject().put("message", "Album nicht gefunden oder gehört nicht zu diesem Benutzer").encode());
-            return;
-          }
-        }
-      }
-
-      String updateSql = "UPDATE albums SET title = ?, tags = ? WHERE albumID = ? AND user_id = ?";
-      try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-        updateStmt.setString(1, newTitle);
-        updateStmt.setString(2, newTags);
-        updateStmt.setInt(3, albumID);
-        updateStmt.setInt(4, userID);
+    // der besitzerindex beantwortet die prüfung ohne datenbankzugriff. ist das album dort noch nicht bekannt,
+    // prüft die bedingung user_id = ? der änderung den besitz in derselben abfrage
+    Integer owner = albumOwners.owner(albumID);
+    if (owner != null && owner != userID) {
+      context.response()
+        .setStatusCode(404)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Album nicht gefunden oder gehört nicht zu diesem Benutzer").encode());
+      return;
+    }
 
-        int rowsAffected = updateStmt.executeUpdate();
-        if (rowsAffected > 0) {
+    // tag text und tag zuordnungen werden gemeinsam geändert
+    String updateSql = "UPDATE albums SET title = ?, tags = ? WHERE albumID = ? AND user_id = ?";
+    db.withTransaction(conn -> Statements.define("albums.update", updateSql).execute(conn, Tuple.of(newTitle, newTags, albumID, userID))
+        .compose(rows -> rows.rowCount() > 0
+          ? TagStore.ALBUMS.replace(conn, albumID, newTags).map(rows)
+          : Future.succeededFuture(rows)))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          albumIndex.put(userID, albumID, newTitle, newTags);
+          tagSuggestions.put(userID, TagSuggestions.album(albumID), newTags);
           context.response()
             .setStatusCode(200)
             .putHeader("Content-Type", "application/json")
@@ -1223,20 +2521,14 @@ public class MainVerticle extends AbstractVerticle {
             .putHeader("Content-Type", "application/json")
             .end(new JsonObject().put("message", "Album nicht gefunden.").encode());
         }
-      }
-    } catch (SQLException e) {
-      e.printStackTrace();
-      context.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Album konnte nicht geändert werden: " + e.getMessage()).encode());
-    } catch (Exception e) {
-      e.printStackTrace();
-      context.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode());
-    }
+      })
+      .onFailure(e -> {
+        e.printStackTrace();
+        context.response()
+          .setStatusCode(500)
+          .putHeader("Content-Type", "application/json")
+          .end(new JsonObject().put("message", "Album konnte nicht geändert werden: " + e.getMessage()).encode());
+      });
   }
 
 
@@ -1245,7 +2537,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void deleteAlbum(RoutingContext context) {
-    Integer sessionUserID = context.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
       context.response()
@@ -1295,27 +2587,26 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try (PreparedStatement preparedStatement = conn.prepareStatement("DELETE FROM albums WHERE albumID = ? AND user_id = ?")) {
-      preparedStatement.setInt(1, albumID);
-      preparedStatement.setInt(2, userID);
-      int rowsAffected = preparedStatement.executeUpdate();
-
-      if (rowsAffected > 0) {
-        context.response()
-          .setStatusCode(204)
-          .end();
-      } else {
-        context.response()
-          .setStatusCode(404)
-          .putHeader("Content-Type", "application/json")
-          .end(new JsonObject().put("message", "Album existiert nicht oder wurde bereits gelöscht").encode());
-      }
-    } catch (SQLException e) {
-      context.response()
+    db.preparedQuery("albums.delete", "DELETE FROM albums WHERE albumID = ? AND user_id = ?", Tuple.of(albumID, userID))
+      .onSuccess(rows -> {
+        if (rows.rowCount() > 0) {
+          albumIndex.remove(userID, albumID);
+          albumOwners.remove(albumID);
+          tagSuggestions.remove(userID, TagSuggestions.album(albumID));
+          context.response()
+            .setStatusCode(204)
+            .end();
+        } else {
+          context.response()
+            .setStatusCode(404)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Album existiert nicht oder wurde bereits gelöscht").encode());
+        }
+      })
+      .onFailure(e -> context.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
-    }
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
   }
 
 
@@ -1324,7 +2615,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void addPhotoToAlbum(RoutingContext routingContext) {
-    Integer sessionUserID = routingContext.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(routingContext);
 
     if (sessionUserID == null) {
       routingContext.response()
@@ -1385,52 +2676,49 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try {
-      // überprüfen ob das album zum benutzer gehört
-      String verifyAlbumSql = "SELECT user_id FROM albums WHERE albumID = ? AND user_id = ?";
-      try (PreparedStatement verifyAlbumStmt = conn.prepareStatement(verifyAlbumSql)) {
-        verifyAlbumStmt.setInt(1, albumID);
-        verifyAlbumStmt.setInt(2, userID);
-        try (ResultSet albumResultSet = verifyAlbumStmt.executeQuery()) {
-          if (!albumResultSet.next()) {
-            routingContext.response()
-              .setStatusCode(403)
-              .putHeader("Content-Type", "application/json")
-              .end(new JsonObject().put("message", "Sie haben nicht die Berechtigung, Fotos in dieses Album hinzuzufügen").encode());
-            return;
-          }
+    // überprüfen ob album und foto zum benutzer gehören, beide prüfungen sind meist nur ein zugriff auf die besitzerindizes
+    Future.all(albumOwners.owns(db, userID, albumID), photoOwners.owns(db, userID, photoID))
+      .onSuccess(owned -> {
+        if (!owned.<Boolean>resultAt(0)) {
+          routingContext.response()
+            .setStatusCode(403)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Sie haben nicht die Berechtigung, Fotos in dieses Album hinzuzufügen").encode());
+          return;
         }
-      }
 
-      String insertSql = "INSERT INTO album_photos (album_id, photo_id) VALUES (?, ?)";
-      try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-        insertStmt.setInt(1, albumID);
-        insertStmt.setInt(2, photoID);
-        int rowsInserted = insertStmt.executeUpdate();
-
-        if (rowsInserted > 0) {
+        if (!owned.<Boolean>resultAt(1)) {
           routingContext.response()
-            .setStatusCode(201)
+            .setStatusCode(404)
             .putHeader("Content-Type", "application/json")
-            .end(new JsonObject().put("message", "Foto erfolgreich zum Album hinzugefügt").encode());
-        } else {
-          routingContext.response()
+            .end(new JsonObject().put("message", "Foto nicht gefunden").encode());
+          return;
+        }
+
+        String insertSql = "INSERT INTO album_photos (album_id, photo_id) VALUES (?, ?)";
+        db.preparedQuery("albumPhotos.insert", insertSql, Tuple.of(albumID, photoID))
+          .onSuccess(rows -> {
+            if (rows.rowCount() > 0) {
+              routingContext.response()
+                .setStatusCode(201)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("message", "Foto erfolgreich zum Album hinzugefügt").encode());
+            } else {
+              routingContext.response()
+                .setStatusCode(500)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("message", "Foto konnte nicht zum Album hinzugefügt werden").encode());
+            }
+          })
+          .onFailure(e -> routingContext.response()
             .setStatusCode(500)
             .putHeader("Content-Type", "application/json")
-            .end(new JsonObject().put("message", "Foto konnte nicht zum Album hinzugefügt werden").encode());
-        }
-      }
-    } catch (SQLException e) {
-      routingContext.response()
-        .setStatusCode(500)
-        .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
-    } catch (Exception e) {
-      routingContext.response()
+            .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
+      })
+      .onFailure(e -> routingContext.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode());
-    }
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
   }
 
 
@@ -1439,7 +2727,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param routingContext Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void getAllPhotosFromAlbum(RoutingContext routingContext) {
-    Integer sessionUserID = routingContext.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(routingContext);
 
     if (sessionUserID == null) {
       routingContext.response()
@@ -1489,58 +2777,115 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try {
-      String verifyAlbumSql = "SELECT user_id FROM albums WHERE albumID = ? AND user_id = ?";
-      try (PreparedStatement verifyAlbumStmt = conn.prepareStatement(verifyAlbumSql)) {
-        verifyAlbumStmt.setInt(1, albumID);
-        verifyAlbumStmt.setInt(2, userID);
-        try (ResultSet albumResultSet = verifyAlbumStmt.executeQuery()) {
-          if (!albumResultSet.next()) {
-            routingContext.response()
-              .setStatusCode(403)
-              .putHeader("Content-Type", "application/json")
-              .end(new JsonObject().put("message", "Sie haben nicht die Berechtigung, Fotos in diesem Album zu sehen").encode());
-            return;
-          }
+    // besitz des albums über den besitzerindex prüfen, die datenbank wird nur beim ersten zugriff gefragt
+    albumOwners.owns(db, userID, albumID)
+      .onSuccess(albumOwned -> {
+        if (!albumOwned) {
+          routingContext.response()
+            .setStatusCode(403)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Sie haben nicht die Berechtigung, Fotos in diesem Album zu sehen").encode());
+          return;
         }
-      }
-
-      String getPhotosSql = "SELECT p.photoID, p.title, p.capture_date, p.tags, p.photo_blob FROM photos p JOIN album_photos ap ON p.photoID = ap.photo_id WHERE ap.album_id = ?";
-      try (PreparedStatement getPhotosStmt = conn.prepareStatement(getPhotosSql)) {
-        getPhotosStmt.setInt(1, albumID);
-        try (ResultSet resultSet = getPhotosStmt.executeQuery()) {
-
-          JsonArray photos = new JsonArray();
-
-          while (resultSet.next()) {
-            JsonObject photo = new JsonObject()
-              .put("photoID", resultSet.getInt("photoID"))
-              .put("title", resultSet.getString("title"))
-              .put("capture_date", resultSet.getDate("capture_date").toString())
-              .put("tags", resultSet.getString("tags"))
-              .put("photo_blob", resultSet.getBytes("photo_blob"));
-            photos.add(photo);
-          }
 
-          if (!photos.isEmpty()) {
-            routingContext.response()
-              .setStatusCode(200)
-              .putHeader("Content-Type", "application/json")
-              .end(photos.encode());
-          } else {
-            routingContext.response()
-              .setStatusCode(404)
-              .putHeader("Content-Type", "application/json")
-              .end(new JsonObject().put("message", "Keine Fotos im Album gefunden").encode());
-          }
-        }
-      }
-    } catch (SQLException e) {
-      routingContext.response()
+        // die antwort enthält nur metadaten und urls und wird zeilenweise über einen cursor geschrieben,
+        // sodass nie das ganze album im speicher liegt. mit ?embed=thumb wird das kleinste thumbnail eingebettet
+        boolean embedThumbnails = "thumb".equals(routingContext.queryParams().get("embed"));
+        String getPhotosSql = "SELECT p.photoID, p.title, p.capture_date, p.tags, p.blob_hash, "
+          + "COALESCE(t.blob_hash, p.blob_hash) AS thumb_hash, COALESCE(t.blob_size, p.blob_size) AS thumb_size, "
+          + "IF(t.blob_hash IS NULL, p.mime_type, 'image/jpeg') AS thumb_mime "
+          + "FROM photos p JOIN album_photos ap ON p.photoID = ap.photo_id "
+          + "LEFT JOIN photo_thumbnails t ON t.photo_id = p.photoID "
+          + "AND t.size = (SELECT MIN(size) FROM photo_thumbnails WHERE photo_id = p.photoID) WHERE ap.album_id = ?";
+        int thumbnailSize = listThumbnailSize();
+        HttpServerResponse response = routingContext.response();
+
+        db.withConnection(conn -> Statements.define("albumPhotos.list", getPhotosSql).prepare(conn).compose(statement -> {
+            Promise<Long> done = Promise.promise();
+            RowStream<Row> stream = statement.createStream(ALBUM_FETCH_SIZE, Tuple.of(albumID));
+            long[] count = {0};
+            // zuletzt gestartetes schreiben, das ende wird erst nach dessen abschluss gemeldet
+            AtomicReference<Future<Void>> pending = new AtomicReference<>(Future.succeededFuture());
+
+            stream.exceptionHandler(done::tryFail);
+            stream.endHandler(v -> pending.get().onComplete(ar -> done.tryComplete(count[0])));
+            // bricht der client ab während der stream auf drainHandler wartet, kommt keine zeile mehr an.
+            // cursor und verbindung werden daher beim schließen der antwort freigegeben
+            response.closeHandler(v -> {
+              stream.close();
+              done.tryFail("Verbindung wurde geschlossen");
+            });
+            response.exceptionHandler(e -> {
+              stream.close();
+              done.tryFail(e);
+            });
+            stream.handler(row -> {
+              if (response.closed()) {
+                stream.close();
+                done.tryFail("Verbindung wurde geschlossen");
+                return;
+              }
+              if (count[0]++ == 0) {
+                response.setStatusCode(200)
+                  .setChunked(true)
+                  .putHeader("Content-Type", "application/json")
+                  .write("[");
+              } else {
+                response.write(",");
+              }
+
+              JsonObject photo = photoJson(row, thumbnailSize);
+
+              // der stream pausiert bis die zeile geschrieben ist, damit die reihenfolge erhalten bleibt
+              // und die schreibwarteschlange der antwort nicht überläuft
+              stream.pause();
+              Future<Void> written = embedThumbnails && row.getLong("thumb_size") <= EMBED_MAX_BYTES
+                ? readCached(row.getString("thumb_hash"), blobStore.path(row.getString("thumb_hash")))
+                  .map(data -> {
+                    photo.put("thumbnail", dataUrl(row.getString("thumb_mime"), data));
+                    return (Void) null;
+                  })
+                  .otherwiseEmpty()
+                : Future.succeededFuture();
+              pending.set(written.onComplete(ar -> {
+                if (response.closed()) {
+                  return;
+                }
+                response.write(photo.encode());
+                if (response.writeQueueFull()) {
+                  response.drainHandler(v -> stream.resume());
+                } else {
+                  stream.resume();
+                }
+              }));
+            });
+            return done.future().eventually(() -> statement.close());
+          }))
+          .onSuccess(count -> {
+            if (count > 0) {
+              response.end("]");
+            } else {
+              response
+                .setStatusCode(404)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("message", "Keine Fotos im Album gefunden").encode());
+            }
+          })
+          .onFailure(e -> {
+            if (!response.headWritten()) {
+              response
+                .setStatusCode(500)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
+            } else {
+              response.reset();
+            }
+          });
+      })
+      .onFailure(e -> routingContext.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
-    }
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
   }
 
 
@@ -1549,7 +2894,7 @@ public class MainVerticle extends AbstractVerticle {
    * @param context Kontext für die Weiterleitung der HTTP-Anfrage
    */
   private void deletePhotoFromAlbum(RoutingContext context) {
-    Integer sessionUserID = context.session().get("userID");
+    Integer sessionUserID = AuthHandler.userID(context);
 
     if (sessionUserID == null) {
       context.response()
@@ -1610,53 +2955,231 @@ public class MainVerticle extends AbstractVerticle {
       return;
     }
 
-    try {
-      String verifyAlbumSql = "SELECT user_id FROM albums WHERE albumID = ? AND user_id = ?";
-      try (PreparedStatement verifyAlbumStmt = conn.prepareStatement(verifyAlbumSql)) {
-        verifyAlbumStmt.setInt(1, albumID);
-        verifyAlbumStmt.setInt(2, userID);
-        try (ResultSet albumResultSet = verifyAlbumStmt.executeQuery()) {
-          if (!albumResultSet.next()) {
-            context.response()
-              .setStatusCode(403)
-              .putHeader("Content-Type", "application/json")
-              .end(new JsonObject().put("message", "Sie haben nicht die Berechtigung, Fotos in diesem Album zu löschen").encode());
-            return;
-          }
+    // besitz des albums über den besitzerindex prüfen, die datenbank wird nur beim ersten zugriff gefragt
+    albumOwners.owns(db, userID, albumID)
+      .onSuccess(albumOwned -> {
+        if (!albumOwned) {
+          context.response()
+            .setStatusCode(403)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Sie haben nicht die Berechtigung, Fotos in diesem Album zu löschen").encode());
+          return;
         }
-      }
 
-      String deleteSql = "DELETE FROM album_photos WHERE album_id = ? AND photo_id = ?";
-      try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-        deleteStmt.setInt(1, albumID);
-        deleteStmt.setInt(2, photoID);
-        int rowsDeleted = deleteStmt.executeUpdate();
-
-        if (rowsDeleted > 0) {
-          context.response()
-            .setStatusCode(204)
-            .end();
-        } else {
-          context.response()
-            .setStatusCode(404)
+        String deleteSql = "DELETE FROM album_photos WHERE album_id = ? AND photo_id = ?";
+        db.preparedQuery("albumPhotos.delete", deleteSql, Tuple.of(albumID, photoID))
+          .onSuccess(rows -> {
+            if (rows.rowCount() > 0) {
+              context.response()
+                .setStatusCode(204)
+                .end();
+            } else {
+              context.response()
+                .setStatusCode(404)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("message", "Foto nicht im Album gefunden oder bereits gelöscht").encode());
+            }
+          })
+          .onFailure(e -> context.response()
+            .setStatusCode(500)
             .putHeader("Content-Type", "application/json")
-            .end(new JsonObject().put("message", "Foto nicht im Album gefunden oder bereits gelöscht").encode());
+            .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
+      })
+      .onFailure(e -> context.response()
+        .setStatusCode(500)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
+  }
+
+
+  /**
+   * Fügt mehrere Fotos mit einer Anfrage zu einem Album hinzu. Fotos die bereits im Album liegen bleiben unverändert.
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void addPhotosToAlbum(RoutingContext context) {
+    changeAlbumPhotos(context, Statements.define("albumPhotos.insertIgnore", "INSERT IGNORE INTO album_photos (album_id, photo_id) VALUES (?, ?)"),
+      201, "Foto zum Album hinzugefügt", 409, "Foto ist bereits im Album");
+  }
+
+
+  /**
+   * Entfernt mehrere Fotos mit einer Anfrage aus einem Album.
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void deletePhotosFromAlbum(RoutingContext context) {
+    changeAlbumPhotos(context, Statements.define("albumPhotos.delete", "DELETE FROM album_photos WHERE album_id = ? AND photo_id = ?"),
+      200, "Foto aus dem Album entfernt", 404, "Foto nicht im Album gefunden oder bereits gelöscht");
+  }
+
+
+  /**
+   * Fügt Fotos aus der Liste photoIDs im Body zu einem Album hinzu bzw. entfernt sie. Besitz des Albums und aller Fotos wird
+   * über die Besitzerindizes geprüft, unbekannte Fotos mit einer Abfrage nachgeladen. Die Änderungen laufen als Batch in einer Transaktion. Das Ergebnis enthält den
+   * Status jedes Fotos; Fotos die nicht dem Benutzer gehören werden mit 404 übersprungen.
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   * @param change Anweisung mit den Parametern album_id und photo_id
+   * @param changedStatus Status eines geänderten Fotos
+   * @param changedMessage Meldung eines geänderten Fotos
+   * @param unchangedStatus Status eines Fotos, bei dem die Anweisung keine Zeile geändert hat
+   * @param unchangedMessage Meldung eines Fotos, bei dem die Anweisung keine Zeile geändert hat
+   */
+  private void changeAlbumPhotos(RoutingContext context, Statements.Statement change, int changedStatus, String changedMessage,
+                                 int unchangedStatus, String unchangedMessage) {
+    Integer sessionUserID = AuthHandler.userID(context);
+
+    if (sessionUserID == null) {
+      context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie müssen eingeloggt sein um Alben zu bearbeiten").encode());
+      return;
+    }
+
+    int userID;
+    int albumID;
+    // doppelte ids nur einmal bearbeiten, die reihenfolge der anfrage bleibt erhalten
+    Set<Integer> photoIDs = new LinkedHashSet<>();
+    try {
+      userID = Integer.parseInt(context.pathParam("userID"));
+      albumID = Integer.parseInt(context.pathParam("albumID"));
+      JsonObject jsonBody = context.getBodyAsJson();
+      JsonArray photoIDsParam = jsonBody == null ? null : jsonBody.getJsonArray("photoIDs");
+      if (photoIDsParam == null) {
+        throw new IllegalArgumentException("photoIDs fehlt");
+      }
+      for (Object photoID : photoIDsParam) {
+        if (!(photoID instanceof Integer id)) {
+          throw new IllegalArgumentException("Ungültige Photo-ID " + photoID);
         }
+        photoIDs.add(id);
       }
-    } catch (SQLException e) {
+    } catch (RuntimeException e) {
       context.response()
-        .setStatusCode(500)
+        .setStatusCode(400)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Ungültige User-ID, Album-ID oder Liste photoIDs").encode());
+      return;
+    }
+
+    if (photoIDs.isEmpty() || photoIDs.size() > ALBUM_BATCH_MAX_PHOTOS) {
+      context.response()
+        .setStatusCode(400)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode());
-    } catch (Exception e) {
+        .end(new JsonObject().put("message", "photoIDs muss zwischen 1 und " + ALBUM_BATCH_MAX_PHOTOS + " Fotos enthalten").encode());
+      return;
+    }
+
+    if (!sessionUserID.equals(userID)) {
       context.response()
+        .setStatusCode(403)
+        .putHeader("Content-Type", "application/json")
+        .end(new JsonObject().put("message", "Sie können nur eigene Alben bearbeiten").encode());
+      return;
+    }
+
+    Map<Integer, JsonObject> results = new LinkedHashMap<>();
+    photoIDs.forEach(photoID -> results.put(photoID, new JsonObject().put("photoID", photoID)
+      .put("status", 404).put("message", "Foto nicht gefunden")));
+
+    Future.all(albumOwners.owns(db, userID, albumID), photoOwners.owned(db, userID, photoIDs))
+      .compose(owned -> {
+        if (!owned.<Boolean>resultAt(0)) {
+          return Future.succeededFuture(false);
+        }
+        Set<Integer> ownedIDs = owned.resultAt(1);
+        if (ownedIDs.isEmpty()) {
+          return Future.succeededFuture(true);
+        }
+        // in der reihenfolge der anfrage, der batch liefert pro foto eine ergebnismenge mit der anzahl geänderter zeilen
+        List<Integer> changed = photoIDs.stream().filter(ownedIDs::contains).toList();
+        return db.withTransaction(conn -> change.executeBatch(conn, changed.stream().map(photoID -> Tuple.of(albumID, photoID)).toList()))
+          .map(rows -> {
+            RowSet<Row> result = rows;
+            for (Integer photoID : changed) {
+              boolean rowChanged = result.rowCount() > 0;
+              results.get(photoID)
+                .put("status", rowChanged ? changedStatus : unchangedStatus)
+                .put("message", rowChanged ? changedMessage : unchangedMessage);
+              result = result.next();
+            }
+            return true;
+          });
+      })
+      .onSuccess(albumOwned -> {
+        if (!albumOwned) {
+          context.response()
+            .setStatusCode(403)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("message", "Sie haben nicht die Berechtigung, dieses Album zu bearbeiten").encode());
+          return;
+        }
+        long done = results.values().stream().filter(result -> result.getInteger("status") == changedStatus).count();
+        context.response()
+          .setStatusCode(done == results.size() ? changedStatus : 207)
+          .putHeader("Content-Type", "application/json")
+          .end(new JsonObject()
+            .put("message", done + " von " + results.size() + " Fotos geändert")
+            .put("results", new JsonArray(new ArrayList<>(results.values())))
+            .encode());
+      })
+      .onFailure(e -> context.response()
         .setStatusCode(500)
         .putHeader("Content-Type", "application/json")
-        .end(new JsonObject().put("message", "Fehler: " + e.getMessage()).encode());
+        .end(new JsonObject().put("message", "Datenbankfehler: " + e.getMessage()).encode()));
+  }
+
+
+  /**
+   * Liefert den Zustand des Datenbank-Verbindungspools und des Hashing Pools, wobei nur Benutzer mit der Rolle Admin dazu berechtigt sind
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void getPoolStats(RoutingContext context) {
+    if (!AuthHandler.isAdmin(context)) {
+      context.response().setStatusCode(403).end("Nur der Admin hat Zugriff auf die Statistiken");
+      return;
     }
+
+    context.response()
+      .setStatusCode(200)
+      .putHeader("Content-Type", "application/json")
+      .end(db.stats().put("bcrypt", hasher.stats()).put("photoCache", photoCache.stats())
+        .put("searchIndex", new JsonObject().put("photos", photoIndex.stats()).put("albums", albumIndex.stats()))
+        .put("ownership", new JsonObject().put("photos", photoOwners.stats()).put("albums", albumOwners.stats()))
+        .put("tagSuggestions", tagSuggestions.stats()).put("usernameIndex", usernameIndex.stats()).encode());
   }
 
-}
+
+  /**
+   * Liefert Aufrufe, Fehler und Ausführungszeiten je SQL Anweisung, wobei nur Benutzer mit der Rolle Admin dazu berechtigt sind
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void getStatementStats(RoutingContext context) {
+    if (!AuthHandler.isAdmin(context)) {
+      context.response().setStatusCode(403).end("Nur der Admin hat Zugriff auf die Statistiken");
+      return;
+    }
+
+    context.response()
+      .setStatusCode(200)
+      .putHeader("Content-Type", "application/json")
+      .end(Statements.stats().encode());
+  }
 
 
+  /**
+   * Liefert die Laufzeitmetriken im Textformat von Prometheus, wobei nur Admins und Anfragen mit dem konfigurierten Token dazu berechtigt sind
+   * @param context Kontext für die Weiterleitung der HTTP-Anfrage
+   */
+  private void getMetrics(RoutingContext context) {
+    if (!metrics.authorized(context)) {
+      context.response().setStatusCode(403).end("Nur der Admin hat Zugriff auf die Metriken");
+      return;
+    }
+
+    context.response()
+      .setStatusCode(200)
+      .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+      .end(metrics.scrape(db, hasher, photoCache));
+  }
 
+}
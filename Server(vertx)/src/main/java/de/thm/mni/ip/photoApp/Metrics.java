@@ -0,0 +1,267 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Laufzeitmetriken des Servers im Textformat von Prometheus: Anfragen, Statuscodes, Dauer und Antwortgröße je Route,
+ * Dauer der SQL Anweisungen und der Verbindungsvergabe, BCrypt, Foto Cache, Verzögerung der Event Loops und JVM.
+ * Erfasst wird mit {@link LongAdder} und {@link Histogram} ohne Sperren; das Aufbereiten der Quantile
+ * und des Textes passiert erst beim Abruf von /metrics.
+ */
+public final class Metrics {
+
+  private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+  private static final String UNMATCHED = "unmatched";
+
+  private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> eventLoopDelays = new ConcurrentHashMap<>();
+  private final String token;
+  private final long eventLoopIntervalMs;
+
+  private Metrics(String token, long eventLoopIntervalMs) {
+    this.token = token;
+    this.eventLoopIntervalMs = eventLoopIntervalMs;
+  }
+
+  /**
+   * Erstellt die Metriken anhand der "metrics" Konfiguration.
+   * @param config Konfiguration mit token und eventLoopIntervalMs
+   * @return die erstellten Metriken
+   */
+  public static Metrics create(JsonObject config) {
+    String token = config.getString("token");
+    return new Metrics(token == null || token.isEmpty() ? null : token, config.getLong("eventLoopIntervalMs", 100L));
+  }
+
+  /**
+   * Handler, der als erster Handler des Routers jede Anfrage misst. Gezählt wird beim Ende der Antwort
+   * unter dem Pfad der zuletzt bearbeitenden Route, z.B. "/:userID/photos", damit die Anzahl der Zeitreihen begrenzt bleibt.
+   * @return Handler für router.route()
+   */
+  public Handler<RoutingContext> handler() {
+    return context -> {
+      long start = System.nanoTime();
+      context.addEndHandler(v -> {
+        Route route = context.currentRoute();
+        String path = route == null || route.getPath() == null ? UNMATCHED : route.getPath();
+        routes.computeIfAbsent(context.request().method().name() + " " + path, key -> new RouteMetrics())
+          .record(context.response().getStatusCode(), System.nanoTime() - start, context.response().bytesWritten());
+      });
+      context.next();
+    };
+  }
+
+  /**
+   * Misst die Verzögerung des Event Loops, auf dem der Aufrufer läuft: ein periodischer Timer vergleicht den geplanten
+   * mit dem tatsächlichen Zeitpunkt. Muss im start der Verticle Instanz aufgerufen werden, der Timer endet mit der Instanz.
+   * @param vertx Vert.x Instanz
+   */
+  public void monitorEventLoop(Vertx vertx) {
+    Histogram delays = eventLoopDelays.computeIfAbsent(Thread.currentThread().getName(), thread -> new Histogram());
+    long intervalNanos = TimeUnit.MILLISECONDS.toNanos(eventLoopIntervalMs);
+    long[] expected = {System.nanoTime() + intervalNanos};
+    vertx.setPeriodic(eventLoopIntervalMs, id -> {
+      long now = System.nanoTime();
+      delays.recordNanos(now - expected[0]);
+      // der timer läuft mit fester rate, verspätete ausführungen werden danach nachgeholt
+      expected[0] += intervalNanos;
+    });
+  }
+
+  /**
+   * Prüft ob eine Anfrage die Metriken lesen darf: Admins, und wenn "token" konfiguriert ist auch Anfragen mit
+   * Authorization: Bearer {token}, z.B. von Prometheus.
+   * @param context Kontext der HTTP-Anfrage
+   * @return true wenn der Zugriff erlaubt ist
+   */
+  public boolean authorized(RoutingContext context) {
+    if (AuthHandler.isAdmin(context)) {
+      return true;
+    }
+    String authorization = context.request().getHeader("Authorization");
+    return token != null && authorization != null && MessageDigest.isEqual(
+      ("Bearer " + token).getBytes(StandardCharsets.UTF_8), authorization.trim().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Liefert alle Metriken im Textformat 0.0.4 von Prometheus.
+   * @param db Verbindungspool
+   * @param hasher Hashing Pool
+   * @param photoCache Foto Cache
+   * @return Text für die Antwort von /metrics
+   */
+  public String scrape(DatabasePool db, PasswordHasher hasher, PhotoCache photoCache) {
+    Exposition out = new Exposition();
+    Map<String, RouteMetrics> sortedRoutes = new TreeMap<>(routes);
+
+    out.family("photoapp_http_requests_total", "counter", "HTTP Anfragen je Route und Statuscode");
+    sortedRoutes.forEach((key, metrics) -> {
+      for (int status = 0; status < metrics.statuses.length(); status++) {
+        long count = metrics.statuses.get(status);
+        if (count > 0) {
+          out.sample("photoapp_http_requests_total", routeLabels(key) + ",status=\"" + (status + RouteMetrics.MIN_STATUS) + "\"", count);
+        }
+      }
+    });
+    out.family("photoapp_http_request_duration_seconds", "summary", "Dauer der HTTP Anfragen bis zum Ende der Antwort");
+    sortedRoutes.forEach((key, metrics) -> out.summary("photoapp_http_request_duration_seconds", routeLabels(key), metrics.duration));
+    out.family("photoapp_http_response_bytes_total", "counter", "Gesendete Bytes je Route inklusive sendFile");
+    sortedRoutes.forEach((key, metrics) -> out.sample("photoapp_http_response_bytes_total", routeLabels(key), metrics.bytes.sum()));
+
+    out.family("photoapp_db_query_duration_seconds", "summary", "Dauer der SQL Anweisungen inklusive Netzwerk");
+    Statements.all().forEach(statement -> out.summary("photoapp_db_query_duration_seconds",
+      "statement=\"" + escape(statement.name()) + "\"", statement.latency()));
+    out.family("photoapp_db_query_failures_total", "counter", "Fehlgeschlagene SQL Anweisungen");
+    Statements.all().forEach(statement -> out.sample("photoapp_db_query_failures_total",
+      "statement=\"" + escape(statement.name()) + "\"", statement.failures()));
+    out.family("photoapp_db_pool_acquire_duration_seconds", "summary", "Wartezeit auf eine geprüfte Verbindung aus dem Pool");
+    out.summary("photoapp_db_pool_acquire_duration_seconds", "", db.acquireTime());
+    JsonObject pool = db.stats();
+    out.gauge("photoapp_db_pool_connections_active", "Ausgegebene Verbindungen", pool.getInteger("active"));
+    out.gauge("photoapp_db_pool_connections_idle", "Freie Verbindungen", pool.getInteger("idle"));
+    out.gauge("photoapp_db_pool_waiters", "Wartende Verbindungsanfragen", pool.getInteger("waiters"));
+    out.counter("photoapp_db_pool_acquire_failures_total", "Fehlgeschlagene Verbindungsanfragen", pool.getLong("acquireFailures"));
+
+    out.family("photoapp_bcrypt_duration_seconds", "summary", "Wartezeit in der Warteschlange und Rechenzeit von BCrypt");
+    out.summary("photoapp_bcrypt_duration_seconds", "phase=\"queue\"", hasher.queueTime());
+    out.summary("photoapp_bcrypt_duration_seconds", "phase=\"compute\"", hasher.computeTime());
+    JsonObject bcrypt = hasher.stats();
+    out.gauge("photoapp_bcrypt_queued", "Wartende BCrypt Aufgaben", bcrypt.getInteger("queued"));
+    out.counter("photoapp_bcrypt_rejected_total", "Wegen voller Warteschlange abgelehnte BCrypt Aufgaben", bcrypt.getLong("rejected"));
+
+    JsonObject cache = photoCache.stats();
+    out.gauge("photoapp_photo_cache_bytes", "Belegte Bytes im Foto Cache", cache.getLong("bytes"));
+    out.counter("photoapp_photo_cache_hits_total", "Treffer im Foto Cache", cache.getLong("hits"));
+    out.counter("photoapp_photo_cache_misses_total", "Fehlschläge im Foto Cache", cache.getLong("misses"));
+
+    out.family("photoapp_event_loop_delay_seconds", "summary", "Verzögerung geplanter Timer je Event Loop");
+    new TreeMap<>(eventLoopDelays).forEach((thread, delays) -> out.summary("photoapp_event_loop_delay_seconds",
+      "thread=\"" + escape(thread) + "\"", delays));
+
+    writeJvm(out);
+    return out.toString();
+  }
+
+
+  private static void writeJvm(Exposition out) {
+    MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+    out.family("jvm_memory_used_bytes", "gauge", "Belegter Speicher der JVM");
+    out.sample("jvm_memory_used_bytes", "area=\"heap\"", heap.getUsed());
+    out.sample("jvm_memory_used_bytes", "area=\"nonheap\"", nonHeap.getUsed());
+    out.family("jvm_memory_max_bytes", "gauge", "Höchstmöglicher Speicher der JVM, -1 wenn unbegrenzt");
+    out.sample("jvm_memory_max_bytes", "area=\"heap\"", heap.getMax());
+    out.sample("jvm_memory_max_bytes", "area=\"nonheap\"", nonHeap.getMax());
+
+    out.family("jvm_gc_collections_total", "counter", "Läufe des Garbage Collectors");
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      out.sample("jvm_gc_collections_total", "gc=\"" + escape(gc.getName()) + "\"", gc.getCollectionCount());
+    }
+    out.family("jvm_gc_collection_seconds_total", "counter", "Dauer der Läufe des Garbage Collectors");
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      out.sample("jvm_gc_collection_seconds_total", "gc=\"" + escape(gc.getName()) + "\"", gc.getCollectionTime() / 1000.0);
+    }
+
+    out.gauge("jvm_threads_live", "Laufende Threads", ManagementFactory.getThreadMXBean().getThreadCount());
+    out.gauge("process_uptime_seconds", "Laufzeit des Prozesses", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+      out.counter("process_cpu_seconds_total", "Verbrauchte CPU Zeit des Prozesses", os.getProcessCpuTime() / 1e9);
+    }
+  }
+
+  private static String routeLabels(String key) {
+    int space = key.indexOf(' ');
+    return "method=\"" + key.substring(0, space) + "\",route=\"" + escape(key.substring(space + 1)) + "\"";
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+
+  /**
+   * Zähler einer Route: Statuscodes, Dauer und gesendete Bytes
+   */
+  private static final class RouteMetrics {
+    private static final int MIN_STATUS = 100;
+
+    private final AtomicLongArray statuses = new AtomicLongArray(500);
+    private final Histogram duration = new Histogram();
+    private final LongAdder bytes = new LongAdder();
+
+    private void record(int status, long nanos, long bytesWritten) {
+      if (status >= MIN_STATUS && status < MIN_STATUS + statuses.length()) {
+        statuses.incrementAndGet(status - MIN_STATUS);
+      }
+      duration.recordNanos(nanos);
+      bytes.add(bytesWritten);
+    }
+  }
+
+
+  /**
+   * Aufbau des Textformats: je Metrik eine HELP und TYPE Zeile, danach die Werte mit ihren Labels
+   */
+  private static final class Exposition {
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+
+    private void family(String name, String type, String help) {
+      text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+      text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(String name, String labels, double value) {
+      text.append(name);
+      if (!labels.isEmpty()) {
+        text.append('{').append(labels).append('}');
+      }
+      text.append(' ');
+      if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+        text.append((long) value);
+      } else {
+        text.append(value);
+      }
+      text.append('\n');
+    }
+
+    private void gauge(String name, String help, double value) {
+      family(name, "gauge", help);
+      sample(name, "", value);
+    }
+
+    private void counter(String name, String help, double value) {
+      family(name, "counter", help);
+      sample(name, "", value);
+    }
+
+    private void summary(String name, String labels, Histogram histogram) {
+      String separator = labels.isEmpty() ? "" : ",";
+      for (double quantile : QUANTILES) {
+        sample(name, labels + separator + "quantile=\"" + quantile + "\"", histogram.quantileSeconds(quantile));
+      }
+      sample(name + "_sum", labels, histogram.sumSeconds());
+      sample(name + "_count", labels, histogram.count());
+    }
+
+    @Override
+    public String toString() {
+      return text.toString();
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Index der Besitzer von Fotos bzw. Alben (ID -> userID) für die Berechtigungsprüfungen. Einträge werden beim ersten Zugriff
+ * aus der Datenbank geladen und beim Anlegen direkt eingetragen, eine Prüfung kostet danach nur einen Map Zugriff.
+ * Gelöschte IDs werden entfernt und geben ihren Platz frei. Damit eine noch laufende Abfrage einen gelöschten Eintrag
+ * nicht wieder einträgt, zählt der Index die Löschungen; eine Abfrage trägt ihr Ergebnis nur ein, wenn seit ihrem Start
+ * nichts gelöscht wurde. Die Anzahl der Einträge ist durch maxEntries begrenzt, darüber hinaus wird weiter aus der
+ * Datenbank geprüft.
+ */
+public final class OwnershipIndex {
+
+  // besitzer eines nicht vorhandenen eintrags, userIDs sind immer positiv
+  private static final int NONE = 0;
+
+  private final String table;
+  private final String idColumn;
+  private final int maxEntries;
+  private final Map<Integer, Integer> owners = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  // anzahl der löschungen, nur unter der sperre des index geändert
+  private final AtomicLong removals = new AtomicLong();
+
+  private OwnershipIndex(String table, String idColumn, int maxEntries) {
+    this.table = table;
+    this.idColumn = idColumn;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Erstellt den Index der Fotos anhand der "ownership" Konfiguration
+   * @param config Konfiguration mit maxEntries
+   * @return Index über die Tabelle photos
+   */
+  public static OwnershipIndex photos(JsonObject config) {
+    return new OwnershipIndex("photos", "photoID", config.getInteger("maxEntries", 1_000_000));
+  }
+
+  /**
+   * Erstellt den Index der Alben anhand der "ownership" Konfiguration
+   * @param config Konfiguration mit maxEntries
+   * @return Index über die Tabelle albums
+   */
+  public static OwnershipIndex albums(JsonObject config) {
+    return new OwnershipIndex("albums", "albumID", config.getInteger("maxEntries", 1_000_000));
+  }
+
+  /**
+   * Liefert den Besitzer ohne Zugriff auf die Datenbank.
+   * @param id ID des Fotos bzw. Albums
+   * @return userID oder null wenn der Eintrag nicht geladen oder gelöscht ist
+   */
+  public Integer owner(int id) {
+    Integer owner = owners.get(id);
+    (owner == null ? misses : hits).increment();
+    return owner;
+  }
+
+  /**
+   * Prüft ob ein Foto bzw. Album dem Benutzer gehört und lädt den Besitzer bei Bedarf aus der Datenbank.
+   * @param db Verbindungspool
+   * @param userID Benutzer
+   * @param id ID des Fotos bzw. Albums
+   * @return true wenn der Eintrag existiert und dem Benutzer gehört
+   */
+  public Future<Boolean> owns(DatabasePool db, int userID, int id) {
+    Integer owner = owner(id);
+    if (owner != null) {
+      return Future.succeededFuture(owner == userID);
+    }
+    return load(db, List.of(id)).map(loaded -> loaded.getOrDefault(id, NONE) == userID);
+  }
+
+  /**
+   * Prüft für mehrere Fotos bzw. Alben ob sie dem Benutzer gehören. Nicht geladene Einträge werden mit einer Abfrage geladen.
+   * @param db Verbindungspool
+   * @param userID Benutzer
+   * @param ids IDs der Fotos bzw. Alben
+   * @return die IDs, die existieren und dem Benutzer gehören
+   */
+  public Future<Set<Integer>> owned(DatabasePool db, int userID, Collection<Integer> ids) {
+    List<Integer> unknown = new ArrayList<>();
+    for (Integer id : ids) {
+      if (owner(id) == null) {
+        unknown.add(id);
+      }
+    }
+    Future<Map<Integer, Integer>> found = unknown.isEmpty() ? Future.succeededFuture(Map.of()) : load(db, unknown);
+    return found.map(loaded -> {
+      Set<Integer> result = new HashSet<>();
+      for (Integer id : ids) {
+        Integer owner = owners.get(id);
+        if ((owner != null ? owner : loaded.getOrDefault(id, NONE)) == userID) {
+          result.add(id);
+        }
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Trägt ein neu angelegtes Foto bzw. Album ein.
+   * @param id ID des Fotos bzw. Albums
+   * @param userID Besitzer
+   */
+  public void put(int id, int userID) {
+    if (owners.size() < maxEntries) {
+      owners.put(id, userID);
+    }
+  }
+
+  /**
+   * Entfernt ein gelöschtes Foto bzw. Album.
+   * @param id ID des Fotos bzw. Albums
+   */
+  public synchronized void remove(int id) {
+    removals.incrementAndGet();
+    owners.remove(id);
+  }
+
+  /**
+   * Entfernt alle Einträge eines gelöschten Benutzers.
+   * @param userID Benutzer
+   */
+  public synchronized void removeUser(int userID) {
+    removals.incrementAndGet();
+    owners.values().removeIf(owner -> owner == userID);
+  }
+
+  /**
+   * Liefert Größe und Trefferquote des Index.
+   * @return Einträge, Treffer, Fehlschläge und Trefferquote als JSON
+   */
+  public JsonObject stats() {
+    long hitCount = hits.sum();
+    long missCount = misses.sum();
+    long lookups = hitCount + missCount;
+    return new JsonObject()
+      .put("entries", owners.size())
+      .put("maxEntries", maxEntries)
+      .put("hits", hitCount)
+      .put("misses", missCount)
+      .put("hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+  }
+
+
+  /**
+   * Lädt die Besitzer der IDs mit einer Abfrage. Nicht gefundene IDs werden nicht eingetragen,
+   * sie können noch angelegt werden und werden dann über {@link #put(int, int)} bekannt.
+   */
+  private Future<Map<Integer, Integer>> load(DatabasePool db, List<Integer> ids) {
+    long removalsBefore = removals.get();
+    int bucket = Statements.bucket(ids.size());
+    String sql = "SELECT " + idColumn + " AS id, user_id FROM " + table + " WHERE " + idColumn + " IN ("
+      + String.join(", ", Collections.nCopies(bucket, "?")) + ")";
+    Tuple params = Tuple.tuple();
+    for (int i = 0; i < bucket; i++) {
+      params.addValue(ids.get(Math.min(i, ids.size() - 1)));
+    }
+    return db.preparedQuery(table + ".owners." + bucket, sql, params).map(rows -> {
+      Map<Integer, Integer> loaded = new HashMap<>();
+      for (Row row : rows) {
+        Integer owner = row.getInteger("user_id");
+        if (owner != null) {
+          loaded.put(row.getInteger("id"), owner);
+        }
+      }
+      remember(loaded, removalsBefore);
+      return loaded;
+    });
+  }
+
+
+  /**
+   * Trägt geladene Besitzer ein, wenn seit dem Start der Abfrage nichts gelöscht wurde. Sonst könnte die Abfrage
+   * einen Eintrag gelesen haben, der inzwischen gelöscht ist.
+   */
+  private synchronized void remember(Map<Integer, Integer> loaded, long removalsBefore) {
+    if (removals.get() != removalsBefore) {
+      return;
+    }
+    // ein inzwischen eingetragener besitzer hat vorrang vor dem gelesenen wert
+    loaded.forEach((id, owner) -> {
+      if (owners.size() < maxEntries) {
+        owners.putIfAbsent(id, owner);
+      }
+    });
+  }
+}
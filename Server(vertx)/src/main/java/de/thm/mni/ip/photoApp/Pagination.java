@@ -0,0 +1,161 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.sqlclient.Tuple;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+
+/**
+ * Seitenweise Abfrage von Listen nach dem Keyset Verfahren. Statt eines Offsets enthält der Cursor die Sortierschlüssel
+ * der letzten ausgelieferten Zeile, die nächste Seite beginnt direkt dahinter. Mit passendem zusammengesetztem Index
+ * ist damit jede Seite ein Bereichsscan, unabhängig davon wie weit geblättert wurde.
+ * Der Cursor der nächsten Seite wird in den Headern X-Next-Cursor und Link zurückgegeben, der Body bleibt ein JSON Array.
+ * @param limit Anzahl Zeilen pro Seite
+ * @param cursor Sortierschlüssel der letzten Zeile der vorherigen Seite; leer für die erste Seite
+ */
+public record Pagination(int limit, List<Object> cursor) {
+
+  /**
+   * Name des Headers mit dem Cursor der nächsten Seite
+   */
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  /**
+   * Liest limit und cursor aus den Query Parametern einer Anfrage.
+   * @param context Kontext der HTTP-Anfrage
+   * @param config Konfiguration mit defaultLimit und maxLimit
+   * @param keyTypes Typen der Sortierschlüssel im Cursor (Integer oder LocalDate)
+   * @return die angefragte Seite
+   * @throws IllegalArgumentException wenn limit oder cursor ungültig sind
+   */
+  public static Pagination of(RoutingContext context, JsonObject config, Class<?>... keyTypes) {
+    int limit = config.getInteger("defaultLimit", 100);
+    String limitParam = context.queryParams().get("limit");
+    if (limitParam != null) {
+      try {
+        limit = Integer.parseInt(limitParam);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Ungültiges Limit");
+      }
+      if (limit < 1) {
+        throw new IllegalArgumentException("Ungültiges Limit");
+      }
+    }
+    limit = Math.min(limit, config.getInteger("maxLimit", 1000));
+
+    String cursorParam = context.queryParams().get("cursor");
+    if (cursorParam == null || cursorParam.isEmpty()) {
+      return new Pagination(limit, List.of());
+    }
+    return new Pagination(limit, decode(cursorParam, keyTypes));
+  }
+
+  /**
+   * Gibt an ob die erste Seite angefragt wurde
+   * @return true wenn kein Cursor angegeben wurde
+   */
+  public boolean first() {
+    return cursor.isEmpty();
+  }
+
+  /**
+   * Liefert die Zeilen der Seite. Abgefragt wird eine Zeile mehr als angezeigt, um zu erkennen ob es eine weitere Seite gibt;
+   * in diesem Fall wird der Cursor der nächsten Seite in die Antwort geschrieben.
+   * @param context Kontext der HTTP-Anfrage
+   * @param rows Ergebnis einer Abfrage mit LIMIT {@link #fetchSize()} bzw. höchstens so viele Einträge
+   * @param cursorKeys Sortierschlüssel einer Zeile in Reihenfolge der Sortierung
+   * @param <T> Typ der Zeilen
+   * @return höchstens limit Zeilen
+   */
+  public <T> List<T> page(RoutingContext context, Iterable<T> rows, Function<T, List<Object>> cursorKeys) {
+    List<T> page = new ArrayList<>();
+    for (T row : rows) {
+      if (page.size() == limit) {
+        String next = encode(cursorKeys.apply(page.get(page.size() - 1)));
+        context.response()
+          .putHeader(NEXT_CURSOR_HEADER, next)
+          .putHeader("Link", "<" + context.request().path() + "?" + nextQuery(context, next) + ">; rel=\"next\"");
+        break;
+      }
+      page.add(row);
+    }
+    return page;
+  }
+
+  /**
+   * Ergänzt die Parameter einer Abfrage um die Sortierschlüssel des Cursors und das Limit.
+   * Für Abfragen der Form ... AND key > ? ORDER BY key LIMIT ?
+   * @param params Parameter der Filterbedingung
+   * @return vollständige Parameter der Abfrage
+   */
+  public Tuple bind(Tuple params) {
+    cursor.forEach(params::addValue);
+    return params.addInteger(fetchSize());
+  }
+
+  /**
+   * Anzahl der abzufragenden Zeilen für den LIMIT Parameter
+   * @return limit + 1
+   */
+  public int fetchSize() {
+    return limit + 1;
+  }
+
+  /**
+   * Kodiert die Sortierschlüssel einer Zeile als Cursor (Base64url ohne Padding, Schlüssel durch "|" getrennt)
+   * @param keys Sortierschlüssel
+   * @return Cursor für den Query Parameter cursor
+   */
+  static String encode(List<Object> keys) {
+    StringBuilder joined = new StringBuilder();
+    for (Object key : keys) {
+      if (joined.length() > 0) {
+        joined.append('|');
+      }
+      joined.append(key);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Liest die Sortierschlüssel aus einem Cursor von {@link #encode(List)}.
+   * @param cursor Cursor aus dem Query Parameter
+   * @param keyTypes Typen der Sortierschlüssel (Integer oder LocalDate)
+   * @return Sortierschlüssel
+   * @throws IllegalArgumentException wenn der Cursor ungültig ist
+   */
+  static List<Object> decode(String cursor, Class<?>... keyTypes) {
+    try {
+      String[] keys = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+      if (keys.length != keyTypes.length) {
+        throw new IllegalArgumentException("Ungültiger Cursor");
+      }
+      List<Object> decoded = new ArrayList<>();
+      for (int i = 0; i < keys.length; i++) {
+        decoded.add(keyTypes[i] == LocalDate.class ? LocalDate.parse(keys[i]) : Integer.valueOf(keys[i]));
+      }
+      return decoded;
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new IllegalArgumentException("Ungültiger Cursor");
+    }
+  }
+
+  private String nextQuery(RoutingContext context, String next) {
+    StringBuilder query = new StringBuilder();
+    context.queryParams().forEach(param -> {
+      if (!param.getKey().equals("cursor") && !param.getKey().equals("limit")) {
+        query.append(param.getKey()).append('=')
+          .append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8)).append('&');
+      }
+    });
+    return query.append("limit=").append(limit).append("&cursor=").append(next).toString();
+  }
+}
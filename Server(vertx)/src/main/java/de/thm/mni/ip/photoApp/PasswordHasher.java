@@ -0,0 +1,169 @@
+package de.thm.mni.ip.photoApp;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Führt BCrypt Hashing und Verifikation auf einem eigenen, begrenzten Thread Pool aus,
+ * damit der Event Loop nicht durch die CPU-intensive Berechnung blockiert wird.
+ * Ist die Warteschlange voll, wird die Anfrage sofort mit {@link SaturatedException} abgelehnt.
+ */
+public class PasswordHasher {
+
+  private final Vertx vertx;
+  private final ThreadPoolExecutor executor;
+  private final int cost;
+  private final boolean rehashOnLogin;
+
+  private final AtomicLong rejected = new AtomicLong();
+  private final Histogram queueTime = new Histogram();
+  private final Histogram computeTime = new Histogram();
+
+  /**
+   * Wird geworfen wenn der Hashing Pool ausgelastet ist.
+   */
+  public static class SaturatedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SaturatedException() {
+      super("Passwort-Verarbeitung ausgelastet");
+    }
+  }
+
+  private PasswordHasher(Vertx vertx, int threads, int queueSize, int cost, boolean rehashOnLogin) {
+    this.vertx = vertx;
+    this.cost = cost;
+    this.rehashOnLogin = rehashOnLogin;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(queueSize),
+      runnable -> {
+        Thread thread = new Thread(runnable, "bcrypt-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      },
+      new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * Erstellt den Hasher anhand der "bcrypt" Konfiguration. Fehlende Werte werden mit Standardwerten belegt.
+   * @param vertx Vert.x Instanz
+   * @param config Konfiguration mit threads, queueSize, cost und rehashOnLogin
+   * @return der erstellte Hasher
+   */
+  public static PasswordHasher create(Vertx vertx, JsonObject config) {
+    return new PasswordHasher(vertx,
+      config.getInteger("threads", Runtime.getRuntime().availableProcessors()),
+      config.getInteger("queueSize", 64),
+      config.getInteger("cost", 12),
+      config.getBoolean("rehashOnLogin", false));
+  }
+
+  /**
+   * Erstellt einen BCrypt Hash mit dem konfigurierten Kostenfaktor.
+   * @param password Passwort im Klartext
+   * @return Future mit dem Hash
+   */
+  public Future<String> hash(String password) {
+    return submit(() -> BCrypt.withDefaults().hashToString(cost, password.toCharArray()));
+  }
+
+  /**
+   * Prüft ein Passwort gegen einen gespeicherten BCrypt Hash.
+   * @param password Passwort im Klartext
+   * @param hashedPassword gespeicherter Hash
+   * @return Future mit dem Ergebnis der Prüfung
+   */
+  public Future<Boolean> verify(String password, String hashedPassword) {
+    return submit(() -> BCrypt.verifyer().verify(password.toCharArray(), hashedPassword).verified);
+  }
+
+  /**
+   * Gibt an ob ein gespeicherter Hash nach erfolgreichem Login mit dem konfigurierten Kostenfaktor
+   * neu berechnet werden soll (Durchsatzmodus: Anpassung bestehender Hashes an die aktuelle Kostenstufe).
+   * @param hashedPassword gespeicherter Hash
+   * @return true wenn der Hash neu berechnet werden soll
+   */
+  public boolean needsRehash(String hashedPassword) {
+    if (!rehashOnLogin || hashedPassword == null || hashedPassword.length() < 7) {
+      return false;
+    }
+    try {
+      // format: $2a$12$...
+      return Integer.parseInt(hashedPassword.substring(4, 6)) != cost;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Liefert den Zustand des Pools.
+   * @return Statistik als JSON
+   */
+  public JsonObject stats() {
+    return new JsonObject()
+      .put("threads", executor.getMaximumPoolSize())
+      .put("active", executor.getActiveCount())
+      .put("queued", executor.getQueue().size())
+      .put("completed", executor.getCompletedTaskCount())
+      .put("rejected", rejected.get());
+  }
+
+  /**
+   * Verteilung der Wartezeit in der Warteschlange bis ein Thread frei ist
+   * @return Histogramm über alle ausgeführten Aufgaben
+   */
+  public Histogram queueTime() {
+    return queueTime;
+  }
+
+  /**
+   * Verteilung der Rechenzeit für Hashing und Verifikation
+   * @return Histogramm über alle ausgeführten Aufgaben
+   */
+  public Histogram computeTime() {
+    return computeTime;
+  }
+
+  /**
+   * Beendet den Thread Pool.
+   */
+  public void close() {
+    executor.shutdown();
+  }
+
+  private <T> Future<T> submit(Callable<T> task) {
+    Context context = vertx.getOrCreateContext();
+    Promise<T> promise = Promise.promise();
+    long submitted = System.nanoTime();
+    try {
+      executor.execute(() -> {
+        long started = System.nanoTime();
+        queueTime.recordNanos(started - submitted);
+        try {
+          T result = task.call();
+          computeTime.recordNanos(System.nanoTime() - started);
+          context.runOnContext(v -> promise.complete(result));
+        } catch (Throwable t) {
+          context.runOnContext(v -> promise.fail(t));
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejected.incrementAndGet();
+      promise.fail(new SaturatedException());
+    }
+    return promise.future();
+  }
+}
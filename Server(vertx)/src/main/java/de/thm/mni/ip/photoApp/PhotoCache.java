@@ -0,0 +1,314 @@
+package de.thm.mni.ip.photoApp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * LRU Cache für häufig abgerufene Foto- und Thumbnail-Dateien. Die Bytes liegen in gepoolten Direct Buffern von Netty
+ * außerhalb des Java Heaps und werden über Referenzzähler verwaltet: der Cache hält eine Referenz, jede laufende Antwort
+ * eine weitere. Verdrängte Einträge werden sofort freigegeben, sobald keine Antwort sie mehr schreibt, das Budget maxBytes
+ * begrenzt damit auch den nativen Speicher. Schlüssel ist der SHA-256 Hash des Inhalts, ein Eintrag kann daher nie veralten.
+ * Zusätzlich merkt sich der Cache für die zuletzt abgerufenen Fotos die Metadaten der ausgelieferten Variante,
+ * ein Treffer kommt damit ohne Datenbankabfrage aus.
+ */
+public class PhotoCache {
+
+  /**
+   * Metadaten der ausgelieferten Variante eines Fotos. Der Inhalt eines Fotos ändert sich nie, die Metadaten
+   * werden daher nur beim Löschen des Fotos entfernt.
+   * @param version SHA-256 Hash des Originals
+   * @param hash SHA-256 Hash der Variante
+   * @param size Größe der Variante in Bytes
+   * @param mimeType MIME Type der Variante
+   * @param modified Zeitpunkt des Hochladens in Sekunden seit 1970
+   */
+  public record Variant(String version, String hash, long size, String mimeType, long modified) {
+  }
+
+  // höchstens so viele angefragte größen pro foto, beliebige size parameter füllen den cache damit nicht
+  private static final int MAX_SIZES_PER_PHOTO = 16;
+  // gelöschtes foto: eine noch laufende abfrage kann die metadaten so nicht wieder eintragen
+  private static final Map<Integer, Variant> DELETED = Map.of();
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+  private final int maxPhotos;
+  // zugriffsreihenfolge: der erste eintrag ist der am längsten nicht genutzte
+  private final LinkedHashMap<String, ByteBuf> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<Integer, Map<Integer, Variant>> variants = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<String> loading = new HashSet<>();
+  private long bytes;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long variantHits;
+  private long variantMisses;
+
+  private PhotoCache(long maxBytes, long maxEntryBytes, int maxPhotos) {
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    this.maxPhotos = maxPhotos;
+  }
+
+  /**
+   * Erstellt den Cache anhand der "cache" Konfiguration. Fehlende Werte werden mit Standardwerten belegt.
+   * @param config Konfiguration mit maxBytes, maxEntryBytes und maxPhotos
+   * @return der erstellte Cache
+   */
+  public static PhotoCache create(JsonObject config) {
+    return new PhotoCache(
+      config.getLong("maxBytes", 256L * 1024 * 1024),
+      config.getLong("maxEntryBytes", 8L * 1024 * 1024),
+      config.getInteger("maxPhotos", 100_000));
+  }
+
+  /**
+   * Gibt an ob ein Inhalt dieser Größe in den Cache aufgenommen wird
+   * @param size Größe in Bytes
+   * @return true wenn der Inhalt nicht größer als die erlaubte Eintragsgröße ist
+   */
+  public boolean accepts(long size) {
+    return size <= maxEntryBytes;
+  }
+
+  /**
+   * Beendet eine Antwort mit einem Inhalt aus dem Cache. Der Eintrag bleibt reserviert, bis die Antwort geschrieben ist.
+   * @param hash SHA-256 Hash des Inhalts
+   * @param response HTTP Antwort, Status und Header sind bereits gesetzt
+   * @return true wenn der Inhalt im Cache lag und gesendet wird, false wenn die Antwort unverändert ist
+   */
+  public boolean send(String hash, HttpServerResponse response) {
+    ByteBuf entry = acquire(hash);
+    if (entry == null) {
+      return false;
+    }
+    response.end(wrap(entry)).onComplete(ar -> entry.release());
+    return true;
+  }
+
+  /**
+   * Kopiert einen Inhalt aus dem Cache in den Heap, z.B. um ihn als Data-URL einzubetten.
+   * @param hash SHA-256 Hash des Inhalts
+   * @return Kopie des Inhalts oder null wenn er nicht im Cache liegt
+   */
+  public Buffer copy(String hash) {
+    ByteBuf entry = acquire(hash);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      byte[] data = new byte[entry.readableBytes()];
+      entry.getBytes(entry.readerIndex(), data);
+      return Buffer.buffer(data);
+    } finally {
+      entry.release();
+    }
+  }
+
+  /**
+   * Liest eine Datei auf einem Worker Thread direkt in einen Direct Buffer und legt sie im Cache ab. Zu große,
+   * bereits vorhandene oder gerade geladene Inhalte werden übersprungen, ebenso Dateien die kürzer als size sind.
+   * @param vertx Vert.x Instanz für den Worker Thread
+   * @param hash SHA-256 Hash des Inhalts
+   * @param path Pfad der Datei
+   * @param size Größe der Datei
+   * @return Future das nach dem Laden abgeschlossen wird
+   */
+  public Future<Void> load(Vertx vertx, String hash, String path, long size) {
+    if (!accepts(size)) {
+      return Future.succeededFuture();
+    }
+    synchronized (this) {
+      if (entries.containsKey(hash) || !loading.add(hash)) {
+        return Future.succeededFuture();
+      }
+    }
+    return vertx.<ByteBuf>executeBlocking(() -> {
+        ByteBuf data = PooledByteBufAllocator.DEFAULT.directBuffer((int) size, (int) size);
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+          while (data.isWritable() && data.writeBytes(channel, data.writerIndex(), data.writableBytes()) >= 0) {
+            // weiterlesen bis der puffer voll ist
+          }
+          if (data.readableBytes() != size) {
+            // datei kürzer als erwartet, ein abgeschnittener inhalt darf nie ausgeliefert werden
+            data.release();
+            return null;
+          }
+          return data;
+        } catch (Exception e) {
+          data.release();
+          throw e;
+        }
+      }, false)
+      .onSuccess(data -> {
+        if (data != null) {
+          put(hash, data);
+        }
+      })
+      .onComplete(ar -> {
+        synchronized (this) {
+          loading.remove(hash);
+        }
+      })
+      .mapEmpty();
+  }
+
+  /**
+   * Legt einen Inhalt im Cache ab und entfernt bei Bedarf die am längsten nicht genutzten Einträge.
+   * @param hash SHA-256 Hash des Inhalts
+   * @param data Inhalt
+   */
+  public void put(String hash, Buffer data) {
+    if (!accepts(data.length())) {
+      return;
+    }
+    // kopieren außerhalb der sperre, nur das einfügen ist synchronisiert
+    ByteBuf entry = PooledByteBufAllocator.DEFAULT.directBuffer(data.length(), data.length());
+    entry.writeBytes(data.getBytes());
+    put(hash, entry);
+  }
+
+  /**
+   * Liefert die Metadaten der Variante eines Fotos
+   * @param photoID ID des Fotos
+   * @param size angefragte Größe, 0 für das Original
+   * @return Metadaten oder null wenn sie nicht im Cache liegen
+   */
+  public synchronized Variant variant(int photoID, int size) {
+    Map<Integer, Variant> sizes = variants.get(photoID);
+    Variant variant = sizes == null ? null : sizes.get(size);
+    if (variant == null) {
+      variantMisses++;
+    } else {
+      variantHits++;
+    }
+    return variant;
+  }
+
+  /**
+   * Legt die Metadaten der Variante eines Fotos ab und entfernt bei Bedarf die am längsten nicht genutzten Fotos.
+   * @param photoID ID des Fotos
+   * @param size angefragte Größe, 0 für das Original
+   * @param variant Metadaten der ausgelieferten Variante
+   */
+  public synchronized void putVariant(int photoID, int size, Variant variant) {
+    Map<Integer, Variant> sizes = variants.computeIfAbsent(photoID, id -> new HashMap<>());
+    if (sizes == DELETED || sizes.size() >= MAX_SIZES_PER_PHOTO) {
+      return;
+    }
+    sizes.put(size, variant);
+    trimVariants();
+  }
+
+  /**
+   * Entfernt die Metadaten eines gelöschten Fotos. Bis der Eintrag verdrängt wird, werden keine neuen Metadaten aufgenommen.
+   * @param photoID ID des Fotos
+   */
+  public synchronized void invalidatePhoto(int photoID) {
+    variants.put(photoID, DELETED);
+    trimVariants();
+  }
+
+  /**
+   * Entfernt einen Inhalt aus dem Cache
+   * @param hash SHA-256 Hash des Inhalts
+   */
+  public synchronized void invalidate(String hash) {
+    ByteBuf removed = entries.remove(hash);
+    if (removed != null) {
+      bytes -= removed.capacity();
+      removed.release();
+    }
+  }
+
+  /**
+   * Liefert Füllstand und Trefferzahlen des Caches.
+   * @return Statistik als JSON
+   */
+  public synchronized JsonObject stats() {
+    long requests = hits + misses;
+    long variantRequests = variantHits + variantMisses;
+    return new JsonObject()
+      .put("maxBytes", maxBytes)
+      .put("maxEntryBytes", maxEntryBytes)
+      .put("bytes", bytes)
+      .put("entries", entries.size())
+      .put("hits", hits)
+      .put("misses", misses)
+      .put("evictions", evictions)
+      .put("hitRate", requests == 0 ? 0.0 : (double) hits / requests)
+      .put("photos", variants.size())
+      .put("maxPhotos", maxPhotos)
+      .put("metadataHitRate", variantRequests == 0 ? 0.0 : (double) variantHits / variantRequests);
+  }
+
+
+  /**
+   * Liefert einen Eintrag mit einer zusätzlichen Referenz, die der Aufrufer wieder freigeben muss
+   */
+  private synchronized ByteBuf acquire(String hash) {
+    ByteBuf entry = entries.get(hash);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.retain();
+  }
+
+  private void trimVariants() {
+    Iterator<Integer> eldest = variants.keySet().iterator();
+    while (variants.size() > maxPhotos && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  private void put(String hash, ByteBuf entry) {
+    synchronized (this) {
+      if (entries.containsKey(hash)) {
+        // gleichzeitig geladen, der vorhandene eintrag bleibt
+        entry.release();
+        return;
+      }
+      entries.put(hash, entry);
+      bytes += entry.capacity();
+
+      Iterator<Map.Entry<String, ByteBuf>> eldest = entries.entrySet().iterator();
+      while (bytes > maxBytes && eldest.hasNext()) {
+        ByteBuf evicted = eldest.next().getValue();
+        bytes -= evicted.capacity();
+        eldest.remove();
+        evicted.release();
+        evictions++;
+      }
+    }
+  }
+
+  /**
+   * Sicht auf einen Eintrag für eine Antwort. Netty gibt geschriebene Puffer frei, die Sicht ist daher nicht freigebbar;
+   * die Referenz der Antwort wird nach dem Schreiben in {@link #send(String, HttpServerResponse)} freigegeben.
+   * Vert.x 4 bietet keinen anderen Weg, einen Netty Puffer ohne Kopie zu senden.
+   */
+  @SuppressWarnings("deprecation")
+  private static Buffer wrap(ByteBuf entry) {
+    return Buffer.buffer(Unpooled.unreleasableBuffer(entry.duplicate()));
+  }
+}
@@ -0,0 +1,215 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Invertierter Index über die Wörter in Titel und Tags, getrennt nach Benutzer.
+ * Jeder Suchbegriff wird als Präfix gesucht, mehrere Begriffe müssen alle vorkommen (UND).
+ * Treffer werden nach Relevanz sortiert: Titelwörter zählen doppelt so viel wie Tags, vollständige Wörter doppelt so viel wie Präfixe.
+ * Die Suchzeit hängt damit nur von der Anzahl der passenden Einträge ab, nicht von der Größe der Bibliothek.
+ */
+public class SearchIndex {
+
+  /**
+   * Treffer einer Suche
+   * @param id ID des Fotos bzw. Albums
+   * @param score Relevanz, höher ist besser
+   */
+  public record Hit(int id, int score) {
+
+    /**
+     * Prüft ob der Treffer in der Sortierung nach Relevanz (absteigend) und ID (aufsteigend) hinter einem Cursor liegt.
+     * @param cursor Relevanz und ID des letzten Treffers der vorherigen Seite
+     * @return true wenn der Treffer auf eine spätere Seite gehört
+     */
+    public boolean after(List<Object> cursor) {
+      int lastScore = (Integer) cursor.get(0);
+      int lastID = (Integer) cursor.get(1);
+      return score < lastScore || (score == lastScore && id > lastID);
+    }
+  }
+
+  private static final int TITLE_WEIGHT = 2;
+  private static final int TAG_WEIGHT = 1;
+  private static final int EXACT_MATCH_FACTOR = 2;
+  private static final int LOAD_FETCH_SIZE = 500;
+
+  private static final Comparator<Hit> BY_RELEVANCE = Comparator.comparingInt(Hit::score).reversed()
+    .thenComparingInt(Hit::id);
+
+  private final Map<Integer, UserIndex> users = new ConcurrentHashMap<>();
+
+  /**
+   * Nimmt einen Eintrag in den Index auf oder ersetzt ihn.
+   * @param userID Besitzer des Eintrags
+   * @param id ID des Fotos bzw. Albums
+   * @param title Titel
+   * @param tags Tags
+   */
+  public void put(int userID, int id, String title, String tags) {
+    users.computeIfAbsent(userID, user -> new UserIndex()).put(id, title, tags);
+  }
+
+  /**
+   * Entfernt einen Eintrag aus dem Index.
+   * @param userID Besitzer des Eintrags
+   * @param id ID des Fotos bzw. Albums
+   */
+  public void remove(int userID, int id) {
+    UserIndex index = users.get(userID);
+    if (index != null) {
+      index.remove(id);
+    }
+  }
+
+  /**
+   * Entfernt alle Einträge eines Benutzers.
+   * @param userID Benutzer
+   */
+  public void removeUser(int userID) {
+    users.remove(userID);
+  }
+
+  /**
+   * Sucht in den Einträgen eines Benutzers. Ohne Suchbegriffe werden alle Einträge geliefert.
+   * @param userID Benutzer
+   * @param query Suchbegriffe
+   * @return Treffer absteigend nach Relevanz, bei gleicher Relevanz aufsteigend nach ID
+   */
+  public List<Hit> search(int userID, String query) {
+    UserIndex index = users.get(userID);
+    if (index == null) {
+      return List.of();
+    }
+    return index.search(tokenize(query));
+  }
+
+  /**
+   * Baut den Index aus der Datenbank auf. Die Zeilen werden über einen Cursor gelesen,
+   * damit nie alle Einträge gleichzeitig als Ergebnis im Speicher liegen.
+   * @param db Verbindungspool
+   * @param query Abfrage mit den Spalten id, user_id, title und tags
+   * @return Future das nach dem Aufbau abgeschlossen wird
+   */
+  public Future<Void> load(DatabasePool db, Statements.Statement query) {
+    return db.withConnection(conn -> query.prepare(conn).compose(statement -> {
+      Promise<Void> done = Promise.promise();
+      RowStream<Row> stream = statement.createStream(LOAD_FETCH_SIZE);
+      stream.exceptionHandler(done::tryFail);
+      stream.endHandler(v -> done.tryComplete());
+      stream.handler(row -> put(row.getInteger("user_id"), row.getInteger("id"), row.getString("title"), row.getString("tags")));
+      return done.future().eventually(() -> statement.close());
+    }));
+  }
+
+  /**
+   * Liefert die Größe des Index.
+   * @return Anzahl Benutzer, Einträge und Wörter als JSON
+   */
+  public JsonObject stats() {
+    int documents = 0;
+    int tokens = 0;
+    for (UserIndex index : users.values()) {
+      synchronized (index) {
+        documents += index.documents.size();
+        tokens += index.postings.size();
+      }
+    }
+    return new JsonObject()
+      .put("users", users.size())
+      .put("documents", documents)
+      .put("tokens", tokens);
+  }
+
+  static List<String> tokenize(String text) {
+    if (text == null || text.isBlank()) {
+      return List.of();
+    }
+    return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+      .filter(token -> !token.isEmpty())
+      .distinct()
+      .toList();
+  }
+
+
+  /**
+   * Index eines Benutzers: Wort -> (ID -> Gewicht) und zum Entfernen ID -> Wörter
+   */
+  private static final class UserIndex {
+
+    private final TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    private final Map<Integer, Map<String, Integer>> documents = new HashMap<>();
+
+    synchronized void put(int id, String title, String tags) {
+      remove(id);
+      Map<String, Integer> weights = new HashMap<>();
+      tokenize(title).forEach(token -> weights.merge(token, TITLE_WEIGHT, Integer::sum));
+      tokenize(tags).forEach(token -> weights.merge(token, TAG_WEIGHT, Integer::sum));
+      documents.put(id, weights);
+      weights.forEach((token, weight) -> postings.computeIfAbsent(token, t -> new HashMap<>()).put(id, weight));
+    }
+
+    synchronized void remove(int id) {
+      Map<String, Integer> weights = documents.remove(id);
+      if (weights == null) {
+        return;
+      }
+      for (String token : weights.keySet()) {
+        Map<Integer, Integer> posting = postings.get(token);
+        posting.remove(id);
+        if (posting.isEmpty()) {
+          postings.remove(token);
+        }
+      }
+    }
+
+    synchronized List<Hit> search(List<String> terms) {
+      Map<Integer, Integer> scores = null;
+      if (terms.isEmpty()) {
+        scores = new HashMap<>();
+        for (Integer id : documents.keySet()) {
+          scores.put(id, 0);
+        }
+      }
+
+      for (String term : terms) {
+        // alle wörter mit dem begriff als präfix, pro eintrag zählt das am besten passende wort
+        Map<Integer, Integer> termScores = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, Integer>> entry
+          : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+          int factor = entry.getKey().length() == term.length() ? EXACT_MATCH_FACTOR : 1;
+          entry.getValue().forEach((id, weight) -> termScores.merge(id, weight * factor, Math::max));
+        }
+
+        if (scores == null) {
+          scores = termScores;
+        } else {
+          scores.keySet().retainAll(termScores.keySet());
+          scores.replaceAll((id, score) -> score + termScores.get(id));
+        }
+        if (scores.isEmpty()) {
+          break;
+        }
+      }
+
+      List<Hit> hits = new ArrayList<>(scores.size());
+      scores.forEach((id, score) -> hits.add(new Hit(id, score)));
+      hits.sort(BY_RELEVANCE);
+      return hits;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+
+/**
+ * Zustand, den sich alle Instanzen des {@link MainVerticle} teilen: Hashing Pool, Token Schlüssel, Foto Cache, Suchindizes, Besitzerindizes, Tag Baum, Benutzerindex und Metriken.
+ * Die Objekte sind threadsicher und liegen einmal pro Vert.x Instanz in den Shared Data, sodass jede Instanz
+ * auf ihrem eigenen Event Loop dieselben Daten sieht. Die erste Instanz baut die Indizes aus der Datenbank auf,
+ * alle weiteren warten darauf. Nachdem die letzte Instanz den Zustand freigegeben hat, wird der Hashing Pool geschlossen.
+ */
+public final class SharedState implements Shareable {
+
+  private static final String MAP = "photoApp.state";
+  private static final String KEY = "state";
+
+  private final PasswordHasher hasher;
+  private final AuthTokens authTokens;
+  private final PhotoCache photoCache;
+  private final OwnershipIndex photoOwners;
+  private final OwnershipIndex albumOwners;
+  private final Metrics metrics;
+  private final SearchIndex photoIndex = new SearchIndex();
+  private final SearchIndex albumIndex = new SearchIndex();
+  private final TagSuggestions tagSuggestions = new TagSuggestions();
+  private final UsernameIndex usernameIndex = new UsernameIndex();
+  private Future<Void> loaded;
+  private int references;
+
+  private SharedState(Vertx vertx, JsonObject config) {
+    hasher = PasswordHasher.create(vertx, config.getJsonObject("bcrypt", new JsonObject()));
+    JsonObject authConfig = config.getJsonObject("auth", new JsonObject());
+    authTokens = "token".equals(authConfig.getString("mode", "session")) ? AuthTokens.create(authConfig) : null;
+    photoCache = PhotoCache.create(config.getJsonObject("cache", new JsonObject()));
+    // die besitzerindizes werden nicht beim start aufgebaut, sondern beim ersten zugriff je id gefüllt
+    JsonObject ownershipConfig = config.getJsonObject("ownership", new JsonObject());
+    photoOwners = OwnershipIndex.photos(ownershipConfig);
+    albumOwners = OwnershipIndex.albums(ownershipConfig);
+    metrics = Metrics.create(config.getJsonObject("metrics", new JsonObject()));
+  }
+
+  /**
+   * Liefert den gemeinsamen Zustand und legt ihn beim ersten Aufruf an.
+   * Jeder Aufruf muss mit {@link #release(Vertx)} wieder freigegeben werden.
+   * @param vertx Vert.x Instanz
+   * @param config Konfiguration des Servers
+   * @return der gemeinsame Zustand
+   */
+  public static SharedState acquire(Vertx vertx, JsonObject config) {
+    LocalMap<String, SharedState> map = vertx.sharedData().getLocalMap(MAP);
+    synchronized (SharedState.class) {
+      SharedState state = map.computeIfAbsent(KEY, key -> new SharedState(vertx, config));
+      state.references++;
+      return state;
+    }
+  }
+
+  /**
+   * Baut beim ersten Aufruf die Indizes aus der Datenbank auf, weitere Aufrufe warten auf denselben Aufbau.
+   * Das Ergebnis wird auf dem Context des Aufrufers gemeldet, damit dessen HTTP Server auf dem eigenen Event Loop startet.
+   * @param db Verbindungspool
+   * @param context Context der aufrufenden Verticle Instanz
+   * @return Future das nach dem Aufbau abgeschlossen wird
+   */
+  public Future<Void> load(DatabasePool db, Context context) {
+    synchronized (SharedState.class) {
+      if (loaded == null) {
+        loaded = photoIndex.load(db, Statements.define("photos.index", "SELECT photoID AS id, user_id, title, tags FROM photos"))
+          .compose(v -> albumIndex.load(db, Statements.define("albums.index", "SELECT albumID AS id, user_id, title, tags FROM albums")))
+          .compose(v -> tagSuggestions.load(db))
+          .compose(v -> usernameIndex.load(db));
+      }
+    }
+    return Future.fromCompletionStage(loaded.toCompletionStage(), context);
+  }
+
+  /**
+   * Gibt den Zustand frei. Die letzte Instanz entfernt ihn aus den Shared Data und schließt den Hashing Pool.
+   * @param vertx Vert.x Instanz
+   */
+  public void release(Vertx vertx) {
+    synchronized (SharedState.class) {
+      if (--references == 0) {
+        vertx.sharedData().getLocalMap(MAP).remove(KEY);
+        hasher.close();
+      }
+    }
+  }
+
+  /**
+   * Hashing Pool für BCrypt
+   * @return Hashing Pool
+   */
+  public PasswordHasher hasher() {
+    return hasher;
+  }
+
+  /**
+   * Token Verwaltung im Modus "token"
+   * @return Token Verwaltung oder null im Modus "session"
+   */
+  public AuthTokens authTokens() {
+    return authTokens;
+  }
+
+  /**
+   * Cache für Fotos und Thumbnails
+   * @return Foto Cache
+   */
+  public PhotoCache photoCache() {
+    return photoCache;
+  }
+
+  /**
+   * Besitzer der Fotos für die Berechtigungsprüfungen
+   * @return Besitzerindex der Fotos
+   */
+  public OwnershipIndex photoOwners() {
+    return photoOwners;
+  }
+
+  /**
+   * Besitzer der Alben für die Berechtigungsprüfungen
+   * @return Besitzerindex der Alben
+   */
+  public OwnershipIndex albumOwners() {
+    return albumOwners;
+  }
+
+  /**
+   * Laufzeitmetriken für /metrics
+   * @return Metriken
+   */
+  public Metrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Suchindex über die Fotos
+   * @return Index der Fotos
+   */
+  public SearchIndex photoIndex() {
+    return photoIndex;
+  }
+
+  /**
+   * Suchindex über die Alben
+   * @return Index der Alben
+   */
+  public SearchIndex albumIndex() {
+    return albumIndex;
+  }
+
+  /**
+   * Präfixbaum für die Tag Vorschläge
+   * @return Tag Baum
+   */
+  public TagSuggestions tagSuggestions() {
+    return tagSuggestions;
+  }
+
+  /**
+   * Trigramm Index über die Benutzernamen
+   * @return Benutzerindex
+   */
+  public UsernameIndex usernameIndex() {
+    return usernameIndex;
+  }
+}
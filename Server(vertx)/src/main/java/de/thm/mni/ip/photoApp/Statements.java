@@ -0,0 +1,185 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.PreparedStatement;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+
+/**
+ * Zentrales Verzeichnis aller SQL Anweisungen der Anwendung. Jede Anweisung hat einen festen Namen, unter dem
+ * Aufrufe, Fehler und Ausführungszeiten gezählt werden. Die Anweisungen werden vom MySQL Client pro Verbindung
+ * vorbereitet und im Prepared Statement Cache gehalten (siehe {@link DatabasePool}), sodass der Server eine Anweisung
+ * nur beim ersten Aufruf auf einer Verbindung parst. Geschlossen werden sie mit der Verbindung bzw. beim Verdrängen aus dem Cache.
+ */
+public final class Statements {
+
+  private static final Map<String, Statement> STATEMENTS = new ConcurrentHashMap<>();
+
+  private Statements() {
+  }
+
+  /**
+   * Liefert die Anweisung mit diesem Namen und legt sie beim ersten Aufruf an.
+   * @param name eindeutiger Name, z.B. "photos.insert"
+   * @param sql SQL der Anweisung
+   * @return die registrierte Anweisung
+   * @throws IllegalStateException wenn der Name bereits mit anderem SQL registriert ist
+   */
+  public static Statement define(String name, String sql) {
+    Statement statement = STATEMENTS.computeIfAbsent(name, n -> new Statement(n, sql));
+    if (!statement.sql().equals(sql)) {
+      throw new IllegalStateException("Anweisung " + name + " ist bereits mit anderem SQL registriert");
+    }
+    return statement;
+  }
+
+  /**
+   * Rundet die Anzahl der Werte einer IN Liste auf die nächste Zweierpotenz. Aufgefüllt mit Wiederholungen des letzten Werts
+   * ändert sich das Ergebnis nicht, es entstehen aber nur wenige verschiedene Anweisungen im Cache.
+   * @param count Anzahl der Werte
+   * @return Anzahl der Platzhalter
+   */
+  public static int bucket(int count) {
+    return count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+  }
+
+  /**
+   * Liefert Aufrufe, Fehler und Ausführungszeiten aller Anweisungen.
+   * @return Statistik als JSON, nach Namen sortiert
+   */
+  public static JsonObject stats() {
+    JsonObject stats = new JsonObject();
+    new TreeMap<>(STATEMENTS).forEach((name, statement) -> stats.put(name, statement.stats()));
+    return stats;
+  }
+
+  /**
+   * Liefert alle registrierten Anweisungen, z.B. für die Ausgabe unter /metrics.
+   * @return Anweisungen nach Namen sortiert
+   */
+  public static Collection<Statement> all() {
+    return new TreeMap<>(STATEMENTS).values();
+  }
+
+
+  /**
+   * Benannte SQL Anweisung mit Zählern
+   */
+  public static final class Statement {
+
+    private final String name;
+    private final String sql;
+    private final LongAdder uses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final Histogram latency = new Histogram();
+
+    private Statement(String name, String sql) {
+      this.name = name;
+      this.sql = sql;
+    }
+
+    /**
+     * Name der Anweisung
+     * @return Name
+     */
+    public String name() {
+      return name;
+    }
+
+    /**
+     * SQL der Anweisung
+     * @return SQL
+     */
+    public String sql() {
+      return sql;
+    }
+
+    /**
+     * Verteilung der Ausführungszeiten
+     * @return Histogramm über alle Ausführungen
+     */
+    public Histogram latency() {
+      return latency;
+    }
+
+    /**
+     * Anzahl fehlgeschlagener Ausführungen
+     * @return Fehler seit dem Start
+     */
+    public long failures() {
+      return failures.sum();
+    }
+
+    /**
+     * Führt die Anweisung aus.
+     * @param client Verbindung oder Pool
+     * @param params Parameter
+     * @return Ergebnis der Anweisung
+     */
+    public Future<RowSet<Row>> execute(SqlClient client, Tuple params) {
+      return timed(() -> client.preparedQuery(sql).execute(params));
+    }
+
+    /**
+     * Führt die Anweisung einmal pro Parametersatz in einem Batch aus.
+     * @param client Verbindung oder Pool
+     * @param batch Parametersätze
+     * @return Ergebnis der Anweisung
+     */
+    public Future<RowSet<Row>> executeBatch(SqlClient client, List<Tuple> batch) {
+      return timed(() -> client.preparedQuery(sql).executeBatch(batch));
+    }
+
+    /**
+     * Bereitet die Anweisung auf einer Verbindung vor, z.B. um sie über einen Cursor zu lesen.
+     * Gezählt wird nur der Aufruf, die Zeit des Lesens hängt vom Aufrufer ab.
+     * @param conn Verbindung
+     * @return vorbereitete Anweisung, muss vom Aufrufer geschlossen werden
+     */
+    public Future<PreparedStatement> prepare(SqlConnection conn) {
+      uses.increment();
+      return conn.prepare(sql).onFailure(e -> failures.increment());
+    }
+
+    private <T> Future<T> timed(Supplier<Future<T>> execution) {
+      long start = System.nanoTime();
+      uses.increment();
+      return execution.get().onComplete(ar -> {
+        long nanos = System.nanoTime() - start;
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        latency.recordNanos(nanos);
+        if (ar.failed()) {
+          failures.increment();
+        }
+      });
+    }
+
+    private JsonObject stats() {
+      long count = uses.sum();
+      long total = totalNanos.sum();
+      return new JsonObject()
+        .put("sql", sql)
+        .put("uses", count)
+        .put("failures", failures.sum())
+        .put("totalMs", total / 1_000_000.0)
+        .put("avgMs", count == 0 ? 0.0 : total / 1_000_000.0 / count)
+        .put("maxMs", maxNanos.get() / 1_000_000.0);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Launcher;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+
+/**
+ * Einmalige Migration der kommagetrennten Spalte tags von Fotos und Alben in die Tabellen tags, photo_tags und album_tags.
+ * Die Einträge werden in Blöcken nach ID gelesen und je Block in einer Transaktion übertragen. Da die Zuordnungen
+ * eines Eintrags jeweils vollständig ersetzt werden, kann die Migration gefahrlos wiederholt werden.
+ * Ausführen mit: java -cp target/photoApp-1.0.0-SNAPSHOT-fat.jar io.vertx.core.Launcher run de.thm.mni.ip.photoApp.TagMigration -conf conf.json
+ */
+public class TagMigration extends AbstractVerticle {
+
+  private static final int BATCH_SIZE = 500;
+
+  private DatabasePool db;
+  private int migrated;
+
+  /**
+   * Startet die Migration mit der Konfiguration des Servers
+   * @param args
+   */
+  public static void main(String[] args) {
+    Launcher.executeCommand("run", TagMigration.class.getName());
+  }
+
+  @Override
+  public void start(Promise<Void> startPromise) {
+    db = DatabasePool.create(vertx, config().getJsonObject("db", new JsonObject()));
+
+    migrate(Statements.define("migration.tags.photos", "SELECT photoID AS id, tags FROM photos WHERE photoID > ? ORDER BY photoID LIMIT ?"),
+      TagStore.PHOTOS, 0)
+      .compose(v -> {
+        System.out.println("Tags von " + migrated + " Fotos übertragen");
+        migrated = 0;
+        return migrate(Statements.define("migration.tags.albums", "SELECT albumID AS id, tags FROM albums WHERE albumID > ? ORDER BY albumID LIMIT ?"),
+          TagStore.ALBUMS, 0);
+      })
+      .onSuccess(v -> System.out.println("Tags von " + migrated + " Alben übertragen"))
+      .onFailure(e -> System.out.println("Migration fehlgeschlagen: " + e.getMessage()))
+      .onComplete(ar -> vertx.close());
+    startPromise.complete();
+  }
+
+
+  private Future<Void> migrate(Statements.Statement query, TagStore tagStore, int lastID) {
+    return db.withTransaction(conn -> query.execute(conn, Tuple.of(lastID, BATCH_SIZE))
+      .compose(rows -> {
+        // einträge nacheinander übertragen, da alle abfragen auf derselben verbindung laufen
+        Future<Integer> done = Future.succeededFuture(lastID);
+        for (Row row : rows) {
+          int id = row.getInteger("id");
+          String tags = row.getString("tags");
+          done = done.compose(v -> tagStore.replace(conn, id, tags).map(id));
+          migrated++;
+        }
+        return done;
+      }))
+      .compose(last -> last == lastID ? Future.succeededFuture() : migrate(query, tagStore, last));
+  }
+}
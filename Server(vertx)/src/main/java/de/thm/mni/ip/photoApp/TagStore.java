@@ -0,0 +1,99 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Normalisierte Ablage der Tags von Fotos und Alben. Jeder Tag steht genau einmal in der Tabelle tags,
+ * die Zuordnungen liegen in photo_tags bzw. album_tags. Die Spalte tags der Fotos und Alben bleibt als
+ * Anzeigetext erhalten, gefiltert und gezählt wird aber ausschließlich über die Zuordnungstabellen.
+ */
+public final class TagStore {
+
+  /**
+   * Höchstlänge eines einzelnen Tags, entspricht der Spalte tags.name
+   */
+  public static final int MAX_TAG_LENGTH = 50;
+
+  /**
+   * Zuordnung der Tags zu Fotos
+   */
+  public static final TagStore PHOTOS = new TagStore("photo_tags", "photo_id");
+
+  /**
+   * Zuordnung der Tags zu Alben
+   */
+  public static final TagStore ALBUMS = new TagStore("album_tags", "album_id");
+
+  private final String table;
+  private final String idColumn;
+
+  private TagStore(String table, String idColumn) {
+    this.table = table;
+    this.idColumn = idColumn;
+  }
+
+  /**
+   * Zerlegt den kommagetrennten Tag Text in einzelne Tags. Tags werden getrimmt, klein geschrieben und auf
+   * {@link #MAX_TAG_LENGTH} Zeichen gekürzt, leere Tags und Duplikate werden verworfen.
+   * @param tags Tag Text, z.B. "Urlaub, Strand"
+   * @return Tags in der Reihenfolge ihres ersten Auftretens
+   */
+  public static List<String> parse(String tags) {
+    if (tags == null || tags.isBlank()) {
+      return List.of();
+    }
+    return Arrays.stream(tags.split(","))
+      .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+      .filter(tag -> !tag.isEmpty())
+      .map(tag -> tag.length() > MAX_TAG_LENGTH ? tag.substring(0, MAX_TAG_LENGTH) : tag)
+      .distinct()
+      .toList();
+  }
+
+  /**
+   * Ersetzt die Tags eines Fotos bzw. Albums. Muss innerhalb der Transaktion aufgerufen werden,
+   * in der das Foto bzw. Album gespeichert wird, damit Tag Text und Zuordnungen nicht auseinanderlaufen.
+   * @param conn Verbindung der laufenden Transaktion
+   * @param id ID des Fotos bzw. Albums
+   * @param tags Tag Text, null wenn keine Tags angegeben sind
+   * @return Future das nach dem Schreiben abgeschlossen wird
+   */
+  public Future<Void> replace(SqlConnection conn, int id, String tags) {
+    return Statements.define(table + ".delete", "DELETE FROM " + table + " WHERE " + idColumn + " = ?")
+      .execute(conn, Tuple.of(id))
+      .compose(v -> insertAll(conn, Collections.singletonMap(id, tags)));
+  }
+
+  /**
+   * Legt die Tags neu angelegter Fotos bzw. Alben gemeinsam an. Jede Anweisung läuft einmal als Batch für alle Einträge,
+   * die Anzahl der Abfragen hängt damit nicht von der Anzahl der Fotos ab.
+   * @param conn Verbindung der laufenden Transaktion
+   * @param tagsByID Tag Text je ID, die Einträge dürfen noch keine Zuordnungen haben
+   * @return Future das nach dem Schreiben abgeschlossen wird
+   */
+  public Future<Void> insertAll(SqlConnection conn, Map<Integer, String> tagsByID) {
+    List<Tuple> links = new ArrayList<>();
+    tagsByID.forEach((id, tags) -> parse(tags).forEach(tag -> links.add(Tuple.of(id, tag))));
+    if (links.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    // sortiert, damit gleichzeitige transaktionen die zeilen in tags in derselben reihenfolge sperren
+    List<Tuple> newTags = links.stream().map(link -> link.getString(1)).distinct().sorted().map(Tuple::of).toList();
+
+    // neue tags anlegen, vorhandene bleiben unverändert. die zuordnung sucht die tags über die sortierung der datenbank,
+    // namen die dort als gleich gelten landen auf demselben tag
+    return Statements.define("tags.insert", "INSERT IGNORE INTO tags (name) VALUES (?)").executeBatch(conn, newTags)
+      .compose(v -> Statements.define(table + ".insert", "INSERT IGNORE INTO " + table + " (" + idColumn + ", tag_id) "
+        + "SELECT ?, tagID FROM tags WHERE name = ?").executeBatch(conn, links))
+      .mapEmpty();
+  }
+}
@@ -0,0 +1,244 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Präfixbaum (Trie) über die Tags der Fotos und Alben, getrennt nach Benutzer, für die Autovervollständigung.
+ * Jeder Knoten zählt wie oft sein Tag vergeben ist, Vorschläge werden nach dieser Häufigkeit sortiert.
+ * Der Baum wird bei jedem Schreiben eines Fotos oder Albums aktualisiert, Abfragen brauchen keine Datenbank.
+ */
+public class TagSuggestions {
+
+  /**
+   * Vorschlag für einen Tag
+   * @param tag Tag
+   * @param count Anzahl der Fotos und Alben mit diesem Tag
+   */
+  public record Suggestion(String tag, int count) {
+  }
+
+  private static final int LOAD_FETCH_SIZE = 500;
+
+  private static final Comparator<Suggestion> BY_FREQUENCY = Comparator.comparingInt(Suggestion::count).reversed()
+    .thenComparing(Suggestion::tag);
+
+  private final Map<Integer, UserTrie> users = new ConcurrentHashMap<>();
+
+  /**
+   * Schlüssel eines Fotos für {@link #put} und {@link #remove}
+   * @param photoID ID des Fotos
+   * @return Schlüssel
+   */
+  public static String photo(int photoID) {
+    return "p" + photoID;
+  }
+
+  /**
+   * Schlüssel eines Albums für {@link #put} und {@link #remove}
+   * @param albumID ID des Albums
+   * @return Schlüssel
+   */
+  public static String album(int albumID) {
+    return "a" + albumID;
+  }
+
+  /**
+   * Übernimmt die Tags eines Fotos bzw. Albums und ersetzt dabei dessen bisherige Tags.
+   * @param userID Besitzer
+   * @param document Schlüssel aus {@link #photo(int)} bzw. {@link #album(int)}
+   * @param tags Tag Text
+   */
+  public void put(int userID, String document, String tags) {
+    users.computeIfAbsent(userID, user -> new UserTrie()).put(document, TagStore.parse(tags));
+  }
+
+  /**
+   * Entfernt die Tags eines Fotos bzw. Albums.
+   * @param userID Besitzer
+   * @param document Schlüssel aus {@link #photo(int)} bzw. {@link #album(int)}
+   */
+  public void remove(int userID, String document) {
+    UserTrie trie = users.get(userID);
+    if (trie != null) {
+      trie.put(document, List.of());
+    }
+  }
+
+  /**
+   * Entfernt alle Tags eines Benutzers.
+   * @param userID Benutzer
+   */
+  public void removeUser(int userID) {
+    users.remove(userID);
+  }
+
+  /**
+   * Liefert die häufigsten Tags eines Benutzers, die mit dem Präfix beginnen.
+   * @param userID Benutzer
+   * @param prefix Anfang des Tags; leer für alle Tags
+   * @param limit Höchstanzahl an Vorschlägen
+   * @return Vorschläge absteigend nach Häufigkeit, bei gleicher Häufigkeit alphabetisch
+   */
+  public List<Suggestion> suggest(int userID, String prefix, int limit) {
+    UserTrie trie = users.get(userID);
+    if (trie == null) {
+      return List.of();
+    }
+    return trie.suggest(prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT), limit);
+  }
+
+  /**
+   * Baut den Baum aus den Tags aller Fotos und Alben auf. Die Zeilen werden über einen Cursor gelesen.
+   * @param db Verbindungspool
+   * @return Future das nach dem Aufbau abgeschlossen wird
+   */
+  public Future<Void> load(DatabasePool db) {
+    String sql = "SELECT user_id, photoID AS id, 'p' AS kind, tags FROM photos WHERE tags IS NOT NULL"
+      + " UNION ALL SELECT user_id, albumID, 'a', tags FROM albums WHERE tags IS NOT NULL";
+    return db.withConnection(conn -> Statements.define("tags.suggestions.load", sql).prepare(conn).compose(statement -> {
+      Promise<Void> done = Promise.promise();
+      RowStream<Row> stream = statement.createStream(LOAD_FETCH_SIZE);
+      stream.exceptionHandler(done::tryFail);
+      stream.endHandler(v -> done.tryComplete());
+      stream.handler(row -> put(row.getInteger("user_id"), row.getString("kind") + row.getInteger("id"), row.getString("tags")));
+      return done.future().eventually(() -> statement.close());
+    }));
+  }
+
+  /**
+   * Liefert die Größe des Baums.
+   * @return Anzahl Benutzer und verschiedener Tags als JSON
+   */
+  public JsonObject stats() {
+    int tags = 0;
+    for (UserTrie trie : users.values()) {
+      synchronized (trie) {
+        tags += trie.root.tags;
+      }
+    }
+    return new JsonObject()
+      .put("users", users.size())
+      .put("tags", tags);
+  }
+
+
+  /**
+   * Knoten des Baums. count zählt die Vergaben des Tags der genau hier endet, tags die verschiedenen Tags im Teilbaum
+   */
+  private static final class Node {
+    private final TreeMap<Character, Node> children = new TreeMap<>();
+    private int count;
+    private int tags;
+  }
+
+
+  /**
+   * Baum eines Benutzers und zum Ersetzen die Tags je Foto bzw. Album
+   */
+  private static final class UserTrie {
+
+    private final Node root = new Node();
+    private final Map<String, List<String>> documents = new HashMap<>();
+
+    synchronized void put(String document, List<String> tags) {
+      List<String> previous = documents.remove(document);
+      if (previous != null) {
+        previous.forEach(this::decrement);
+      }
+      if (!tags.isEmpty()) {
+        documents.put(document, tags);
+        tags.forEach(this::increment);
+      }
+    }
+
+    private void increment(String tag) {
+      List<Node> path = path(tag, true);
+      Node node = path.get(path.size() - 1);
+      if (node.count++ == 0) {
+        path.forEach(n -> n.tags++);
+      }
+    }
+
+    private void decrement(String tag) {
+      List<Node> path = path(tag, false);
+      if (path == null) {
+        return;
+      }
+      Node node = path.get(path.size() - 1);
+      if (--node.count > 0) {
+        return;
+      }
+      path.forEach(n -> n.tags--);
+      // leere teilbäume entfernen, damit gelöschte tags keinen speicher belegen
+      for (int i = tag.length() - 1; i >= 0; i--) {
+        if (path.get(i + 1).tags == 0) {
+          path.get(i).children.remove(tag.charAt(i));
+        }
+      }
+    }
+
+    private List<Node> path(String tag, boolean create) {
+      List<Node> path = new ArrayList<>(tag.length() + 1);
+      Node node = root;
+      path.add(node);
+      for (int i = 0; i < tag.length(); i++) {
+        Node child = node.children.get(tag.charAt(i));
+        if (child == null) {
+          if (!create) {
+            return null;
+          }
+          child = new Node();
+          node.children.put(tag.charAt(i), child);
+        }
+        node = child;
+        path.add(node);
+      }
+      return path;
+    }
+
+    synchronized List<Suggestion> suggest(String prefix, int limit) {
+      Node start = root;
+      for (int i = 0; i < prefix.length() && start != null; i++) {
+        start = start.children.get(prefix.charAt(i));
+      }
+      if (start == null || limit < 1) {
+        return List.of();
+      }
+
+      // die besten limit tags im teilbaum, der schlechteste liegt oben im heap
+      PriorityQueue<Suggestion> best = new PriorityQueue<>(limit + 1, BY_FREQUENCY.reversed());
+      collect(start, new StringBuilder(prefix), best, limit);
+      List<Suggestion> suggestions = new ArrayList<>(best);
+      suggestions.sort(BY_FREQUENCY);
+      return suggestions;
+    }
+
+    private static void collect(Node node, StringBuilder tag, PriorityQueue<Suggestion> best, int limit) {
+      if (node.count > 0) {
+        best.add(new Suggestion(tag.toString(), node.count));
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+      for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+        tag.append(child.getKey());
+        collect(child.getValue(), tag, best, limit);
+        tag.setLength(tag.length() - 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.buffer.Buffer;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Erzeugt verkleinerte JPEG Varianten (Thumbnails) eines Fotos in festen Größen.
+ * Die Berechnung ist CPU-intensiv und darf nur auf Worker Threads ausgeführt werden.
+ * Die Abmessungen werden vor dem Dekodieren aus dem Header gelesen, sodass ein kleines Bild mit riesigen Abmessungen
+ * den Heap nicht füllen kann.
+ */
+public final class ThumbnailGenerator {
+
+  /**
+   * Standardgrößen (längste Kante in Pixeln) der Varianten
+   */
+  public static final List<Integer> DEFAULT_SIZES = List.of(128, 512, 1600);
+
+  /**
+   * Standardobergrenze der Pixel eines Bildes (Breite mal Höhe)
+   */
+  public static final long DEFAULT_MAX_PIXELS = 100_000_000L;
+
+  private static final float JPEG_QUALITY = 0.85f;
+
+  private ThumbnailGenerator() {
+  }
+
+  /**
+   * Das Bild hat mehr Pixel als erlaubt und wird nicht dekodiert
+   */
+  public static final class ImageTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private ImageTooLargeException(int width, int height, long maxPixels) {
+      super("Bild hat " + width + "x" + height + " Pixel, erlaubt sind höchstens " + maxPixels);
+    }
+  }
+
+  /**
+   * Erzeugt die Varianten mit der Standardobergrenze {@link #DEFAULT_MAX_PIXELS}
+   * @param input Bilddaten des Originals
+   * @param sizes gewünschte Größen (längste Kante in Pixeln)
+   * @return Varianten nach Größe; leer wenn das Bildformat nicht unterstützt wird
+   * @throws IOException wenn beim Lesen oder Kodieren ein Fehler auftritt
+   */
+  public static Map<Integer, Buffer> generate(InputStream input, List<Integer> sizes) throws IOException {
+    return generate(input, sizes, DEFAULT_MAX_PIXELS);
+  }
+
+  /**
+   * Liest ein Bild und erzeugt für jede Größe, die kleiner als das Original ist, eine JPEG Variante.
+   * Die kleineren Varianten werden jeweils aus der nächstgrößeren berechnet.
+   * Ist das Bild mehr als doppelt so groß wie die größte Variante, wird es beim Dekodieren unterabgetastet.
+   * @param input Bilddaten des Originals
+   * @param sizes gewünschte Größen (längste Kante in Pixeln)
+   * @param maxPixels höchstens erlaubte Pixel (Breite mal Höhe) des Originals
+   * @return Varianten nach Größe; leer wenn das Bildformat nicht unterstützt wird
+   * @throws ImageTooLargeException wenn das Bild mehr als maxPixels Pixel hat
+   * @throws javax.imageio.IIOException wenn die Bilddaten fehlerhaft sind
+   * @throws IOException wenn beim Lesen oder Kodieren ein Fehler auftritt
+   */
+  public static Map<Integer, Buffer> generate(InputStream input, List<Integer> sizes, long maxPixels) throws IOException {
+    Map<Integer, Buffer> thumbnails = new LinkedHashMap<>();
+    Integer[] descending = sizes.toArray(new Integer[0]);
+    Arrays.sort(descending, (a, b) -> b - a);
+    if (descending.length == 0) {
+      return thumbnails;
+    }
+
+    BufferedImage source;
+    try (ImageInputStream imageIn = ImageIO.createImageInputStream(input)) {
+      Iterator<ImageReader> readers = imageIn == null ? null : ImageIO.getImageReaders(imageIn);
+      if (readers == null || !readers.hasNext()) {
+        return thumbnails;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(imageIn, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if ((long) width * height > maxPixels) {
+          throw new ImageTooLargeException(width, height, maxPixels);
+        }
+        // nur jede n-te zeile und spalte dekodieren, die längste kante bleibt mindestens doppelt so groß wie die größte variante
+        int step = Math.max(1, Math.max(width, height) / (2 * descending[0]));
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(step, step, 0, 0);
+        source = reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    }
+
+    BufferedImage current = source;
+    for (int size : descending) {
+      if (Math.max(current.getWidth(), current.getHeight()) <= size) {
+        // nicht vergrößern, für diese größe wird das original bzw. die nächste variante ausgeliefert
+        continue;
+      }
+      current = scale(current, size);
+      thumbnails.put(size, encodeJpeg(current));
+    }
+    return thumbnails;
+  }
+
+  private static BufferedImage scale(BufferedImage source, int maxEdge) {
+    double factor = (double) maxEdge / Math.max(source.getWidth(), source.getHeight());
+    int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * factor));
+    int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+    BufferedImage current = source;
+    int width = source.getWidth();
+    int height = source.getHeight();
+    // in halbierungsschritten verkleinern damit bilineare interpolation keine artefakte erzeugt
+    do {
+      width = Math.max(targetWidth, width / 2);
+      height = Math.max(targetHeight, height / 2);
+
+      BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = step.createGraphics();
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      // transparente bereiche werden weiß, da jpeg keinen alphakanal hat
+      graphics.drawImage(current, 0, 0, width, height, Color.WHITE, null);
+      graphics.dispose();
+      current = step;
+    } while (width != targetWidth || height != targetHeight);
+
+    return current;
+  }
+
+  private static Buffer encodeJpeg(BufferedImage image) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+      writer.setOutput(imageOut);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(JPEG_QUALITY);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return Buffer.buffer(out.toByteArray());
+  }
+}
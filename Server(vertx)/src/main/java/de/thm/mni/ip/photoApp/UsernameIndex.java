@@ -0,0 +1,277 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * Trigramm Index über die Benutzernamen für die Suche in der Benutzerverwaltung.
+ * Jeder Name wird in überlappende Folgen aus drei Zeichen zerlegt; ein Suchbegriff findet alle Namen, die den Begriff
+ * enthalten, und über den Anteil gemeinsamer Trigramme bzw. eine kleine Editierdistanz auch Namen mit Tippfehlern.
+ * Treffer werden sortiert: gleicher Name vor Namensanfang vor enthaltenem Begriff vor Tippfehler, danach nach Ähnlichkeit.
+ * Suchbegriffe unter drei Zeichen werden nur über die Trigramme gesucht, die den ganzen Begriff enthalten,
+ * d.h. über Namensanfang bzw. -ende.
+ */
+public class UsernameIndex {
+
+  /**
+   * Treffer einer Suche
+   * @param userID ID des Benutzers
+   * @param username Benutzername
+   * @param score Relevanz, höher ist besser
+   */
+  public record Hit(int userID, String username, double score) {
+  }
+
+  /**
+   * Mindestanteil gemeinsamer Trigramme (Jaccard), ab dem ein Name ohne enthaltenen Suchbegriff als Treffer gilt
+   */
+  public static final double MIN_SIMILARITY = 0.3;
+
+  private static final int LOAD_FETCH_SIZE = 500;
+
+  private static final Comparator<Hit> BY_RELEVANCE = Comparator.comparingDouble(Hit::score).reversed()
+    .thenComparingInt(Hit::userID);
+
+  /**
+   * Indizierter Name, Kleinschreibung und Anzahl der Trigramme werden beim Einfügen einmal berechnet
+   */
+  private record Name(String username, String lower, int trigrams) {
+  }
+
+  /**
+   * Kandidat einer Suche mit der Anzahl gemeinsamer Trigramme
+   */
+  private record Candidate(int userID, Name name, int common) {
+  }
+
+  // userID -> name, sortiert damit eine leere suche die ersten benutzer liefert
+  private final TreeMap<Integer, Name> usernames = new TreeMap<>();
+  private final Map<String, Set<Integer>> postings = new HashMap<>();
+
+  /**
+   * Nimmt einen Benutzer in den Index auf oder ersetzt seinen Namen.
+   * @param userID ID des Benutzers
+   * @param username Benutzername
+   */
+  public synchronized void put(int userID, String username) {
+    remove(userID);
+    Set<String> trigrams = trigrams(username);
+    Name name = new Name(username, username.toLowerCase(Locale.ROOT), trigrams.size());
+    usernames.put(userID, name);
+    for (String trigram : trigrams) {
+      postings.computeIfAbsent(trigram, t -> new HashSet<>()).add(userID);
+    }
+  }
+
+  /**
+   * Entfernt einen Benutzer aus dem Index.
+   * @param userID ID des Benutzers
+   */
+  public synchronized void remove(int userID) {
+    Name name = usernames.remove(userID);
+    if (name == null) {
+      return;
+    }
+    for (String trigram : trigrams(name.username())) {
+      Set<Integer> posting = postings.get(trigram);
+      posting.remove(userID);
+      if (posting.isEmpty()) {
+        postings.remove(trigram);
+      }
+    }
+  }
+
+  /**
+   * Sucht die zum Suchbegriff passendsten Benutzernamen. Ohne Suchbegriff werden die ersten Benutzer nach ID geliefert.
+   * Suchbegriffe unter drei Zeichen finden nur Namen, die mit dem Begriff beginnen, bei zwei Zeichen auch solche,
+   * die damit enden.
+   * @param term Suchbegriff
+   * @param limit Höchstanzahl an Treffern
+   * @return höchstens limit Treffer absteigend nach Relevanz
+   */
+  public List<Hit> search(String term, int limit) {
+    String query = term == null ? "" : term.trim().toLowerCase(Locale.ROOT);
+    if (limit < 1) {
+      return List.of();
+    }
+    if (query.isEmpty()) {
+      return first(limit);
+    }
+
+    Set<String> queryTrigrams = trigrams(query);
+    if (query.length() < 3) {
+      // zu kurz für innere trigramme: "  a" bzw. " ab" indiziert die namen mit diesem anfang, "ab " die mit diesem ende.
+      // trigramme mit nur einem teil des begriffs würden fast alle benutzer zu kandidaten machen
+      queryTrigrams.removeIf(trigram -> !trigram.contains(query));
+    }
+    // unter der sperre werden nur die kandidaten gesammelt, bewertet wird danach
+    List<Candidate> candidates = candidates(queryTrigrams);
+
+    // die besten limit treffer, der schlechteste liegt oben im heap
+    PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, BY_RELEVANCE.reversed());
+    candidates.forEach(candidate -> {
+      Hit hit = score(candidate, query, queryTrigrams.size());
+      if (hit != null) {
+        best.add(hit);
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+    });
+    List<Hit> hits = new ArrayList<>(best);
+    hits.sort(BY_RELEVANCE);
+    return hits;
+  }
+
+
+  private synchronized List<Hit> first(int limit) {
+    List<Hit> first = new ArrayList<>();
+    for (Map.Entry<Integer, Name> user : usernames.entrySet()) {
+      if (first.size() == limit) {
+        break;
+      }
+      first.add(new Hit(user.getKey(), user.getValue().username(), 0));
+    }
+    return first;
+  }
+
+
+  private synchronized List<Candidate> candidates(Set<String> queryTrigrams) {
+    Map<Integer, Integer> shared = new HashMap<>();
+    for (String trigram : queryTrigrams) {
+      for (Integer userID : postings.getOrDefault(trigram, Set.of())) {
+        shared.merge(userID, 1, Integer::sum);
+      }
+    }
+    List<Candidate> candidates = new ArrayList<>(shared.size());
+    shared.forEach((userID, common) -> candidates.add(new Candidate(userID, usernames.get(userID), common)));
+    return candidates;
+  }
+
+  /**
+   * Baut den Index aus der Datenbank auf. Die Zeilen werden über einen Cursor gelesen.
+   * @param db Verbindungspool
+   * @return Future das nach dem Aufbau abgeschlossen wird
+   */
+  public Future<Void> load(DatabasePool db) {
+    Statements.Statement query = Statements.define("users.index", "SELECT userID, username FROM users");
+    return db.withConnection(conn -> query.prepare(conn).compose(statement -> {
+      Promise<Void> done = Promise.promise();
+      RowStream<Row> stream = statement.createStream(LOAD_FETCH_SIZE);
+      stream.exceptionHandler(done::tryFail);
+      stream.endHandler(v -> done.tryComplete());
+      stream.handler(row -> put(row.getInteger("userID"), row.getString("username")));
+      return done.future().eventually(() -> statement.close());
+    }));
+  }
+
+  /**
+   * Liefert die Größe des Index.
+   * @return Anzahl Benutzer und Trigramme als JSON
+   */
+  public synchronized JsonObject stats() {
+    return new JsonObject()
+      .put("users", usernames.size())
+      .put("trigrams", postings.size());
+  }
+
+  static Set<String> trigrams(String text) {
+    // wie pg_trgm: zwei leerzeichen davor und eines danach, damit auch wortanfang und -ende zählen
+    String padded = "  " + text.toLowerCase(Locale.ROOT) + " ";
+    Set<String> trigrams = new LinkedHashSet<>();
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      trigrams.add(padded.substring(i, i + 3));
+    }
+    return trigrams;
+  }
+
+
+  private static Hit score(Candidate candidate, String query, int queryTrigrams) {
+    String name = candidate.name().lower();
+    int common = candidate.common();
+    double similarity = (double) common / (queryTrigrams + candidate.name().trigrams() - common);
+    double score = similarity;
+    if (name.equals(query)) {
+      score += 3;
+    } else if (name.startsWith(query)) {
+      score += 2;
+    } else if (name.contains(query)) {
+      score += 1;
+    } else if (isTypo(name, query)) {
+      score += 0.5;
+    } else if (similarity < MIN_SIMILARITY) {
+      return null;
+    }
+    return new Hit(candidate.userID(), candidate.name().username(), score);
+  }
+
+
+  /**
+   * Prüft ob der Suchbegriff ab 4 Zeichen bis auf einen Tippfehler (zwei ab 8 Zeichen) dem Namen oder dessen Anfang entspricht.
+   * Als ein Fehler zählen ein falsches, fehlendes oder zusätzliches Zeichen sowie zwei vertauschte Nachbarzeichen.
+   */
+  private static boolean isTypo(String name, String query) {
+    if (query.length() < 4) {
+      return false;
+    }
+    int allowed = query.length() < 8 ? 1 : 2;
+    String start = name.substring(0, Math.min(name.length(), query.length()));
+    return distance(start, query, allowed) <= allowed || distance(name, query, allowed) <= allowed;
+  }
+
+
+  /**
+   * Editierdistanz nach Damerau-Levenshtein (ohne mehrfache Bearbeitung desselben Abschnitts). Die Berechnung bricht ab,
+   * sobald die Distanz max sicher überschreitet; das Ergebnis ist dann max + 1.
+   */
+  static int distance(String a, String b, int max) {
+    if (Math.abs(a.length() - b.length()) > max) {
+      return max + 1;
+    }
+    // nur die letzten drei zeilen der matrix werden gebraucht
+    int[] previous2 = new int[b.length() + 1];
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    int previousMin = 0;
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      int rowMin = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+        if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+          current[j] = Math.min(current[j], previous2[j - 2] + 1);
+        }
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      // jede weitere zeile baut auf den letzten beiden auf und kann nicht mehr kleiner werden
+      if (rowMin > max && previousMin > max) {
+        return max + 1;
+      }
+      previousMin = rowMin;
+      int[] recycled = previous2;
+      previous2 = previous;
+      previous = current;
+      current = recycled;
+    }
+    return Math.min(previous[b.length()], max + 1);
+  }
+}
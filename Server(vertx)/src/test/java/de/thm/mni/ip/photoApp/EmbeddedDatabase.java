@@ -0,0 +1,121 @@
+package de.thm.mni.ip.photoApp;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mysqlclient.MySQLBuilder;
+import io.vertx.mysqlclient.MySQLConnectOptions;
+import io.vertx.sqlclient.Pool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Eingebettete MariaDB auf einem freien Port mit der Datenbankstruktur aus schema.sql (inklusive Admin Benutzer).
+ * Für Benchmarks und Lasttests, die den Server ohne externe Datenbank starten.
+ */
+public final class EmbeddedDatabase implements AutoCloseable {
+
+  private static final String DATABASE = "photoApp";
+
+  private final DB db;
+  private final int port;
+
+  private EmbeddedDatabase(DB db, int port) {
+    this.db = db;
+    this.port = port;
+  }
+
+  /**
+   * Startet die Datenbank und legt die Tabellen an.
+   * @return laufende Datenbank
+   * @throws Exception wenn der Start oder das Anlegen fehlschlägt
+   */
+  public static EmbeddedDatabase start() throws Exception {
+    DBConfigurationBuilder builder = DBConfigurationBuilder.newBuilder();
+    builder.setPort(0);
+    // mysqld verweigert sonst den start als root, z.b. in containern
+    builder.addArg("--user=root");
+    DB db = DB.newEmbeddedDB(builder.build());
+    db.start();
+
+    EmbeddedDatabase database = new EmbeddedDatabase(db, db.getConfiguration().getPort());
+    database.createSchema();
+    return database;
+  }
+
+  /**
+   * Konfiguration für den "db" Abschnitt des Servers
+   * @return Verbindungsdaten der eingebetteten Datenbank
+   */
+  public JsonObject config() {
+    return new JsonObject()
+      .put("host", "localhost")
+      .put("port", port)
+      .put("database", DATABASE)
+      .put("user", "root")
+      .put("password", "");
+  }
+
+  /**
+   * Führt SQL Anweisungen nacheinander auf einer eigenen Verbindung aus, z.B. um Testdaten anzulegen.
+   * @param statements SQL Anweisungen ohne Parameter
+   * @throws Exception wenn eine Anweisung fehlschlägt
+   */
+  public void execute(List<String> statements) throws Exception {
+    execute(DATABASE, statements);
+  }
+
+  /**
+   * Beendet die Datenbank. Ohne geprüfte Ausnahme, damit try-with-resources keine InterruptedException
+   * aus close() behandeln muss.
+   * @throws IllegalStateException wenn die Datenbank nicht beendet werden kann
+   */
+  @Override
+  public void close() {
+    try {
+      db.stop();
+    } catch (ManagedProcessException e) {
+      throw new IllegalStateException("Datenbank konnte nicht beendet werden", e);
+    }
+  }
+
+  private void createSchema() throws Exception {
+    execute("test", List.of("CREATE DATABASE " + DATABASE));
+    try (InputStream in = EmbeddedDatabase.class.getResourceAsStream("/schema.sql")) {
+      String schema = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      // kommentarzeilen entfernen und an semikolons am zeilenende trennen
+      String sql = schema.lines().filter(line -> !line.startsWith("--")).collect(Collectors.joining("\n"));
+      execute(DATABASE, Arrays.stream(sql.split(";\\s*\n")).map(String::trim).filter(s -> !s.isEmpty()).toList());
+    } catch (IOException e) {
+      throw new IllegalStateException("schema.sql konnte nicht gelesen werden", e);
+    }
+  }
+
+  private void execute(String database, List<String> statements) throws InterruptedException, ExecutionException {
+    Vertx vertx = Vertx.vertx();
+    Pool pool = MySQLBuilder.pool()
+      .connectingTo(new MySQLConnectOptions().setPort(port).setHost("localhost").setDatabase(database).setUser("root").setPassword(""))
+      .using(vertx)
+      .build();
+    try {
+      pool.withConnection(conn -> {
+        Future<Void> done = Future.succeededFuture();
+        for (String statement : statements) {
+          done = done.compose(v -> conn.query(statement.replaceAll(";$", "")).execute().mapEmpty());
+        }
+        return done;
+      }).toCompletionStage().toCompletableFuture().get();
+    } finally {
+      vertx.close();
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package de.thm.mni.ip.photoApp;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * JMH Microbenchmarks der CPU-lastigen Pfade des MainVerticle: Umwandlung der Abfrageergebnisse in JSON für Foto-, Album- und
+ * Album-Foto Listen, Einbetten eines Thumbnails als Data-URL, BCrypt Verifikation und der Weg einer Anfrage durch Router und Handler.
+ * Die Zeilen kommen aus einer eingebetteten MariaDB mit festen Testdaten, die Ergebnisse sind damit auf jedem Linux Rechner vergleichbar.
+ * Ausführen mit: mvn test -Dtest=HotPathBenchmark -Dbenchmark=true [-Dbenchmark.include=photoList] [-Dbenchmark.cost=12]
+ * [-Dbenchmark.forks=1] [-Dbenchmark.iterations=5] [-Dbenchmark.seconds=2] [-Dbenchmark.image=file-uploads/...]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HotPathBenchmark {
+
+  private static final int PHOTOS = 200;
+  private static final int ALBUMS = 100;
+  private static final int PORT = 18887;
+
+  /**
+   * Abfrageergebnisse aus der eingebetteten Datenbank, einmal pro Benchmark gelesen
+   */
+  @State(Scope.Benchmark)
+  public static class Rows {
+    EmbeddedDatabase database;
+    RowSet<Row> photos;
+    RowSet<Row> albums;
+    RowSet<Row> albumPhotos;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+      database = EmbeddedDatabase.start();
+      database.execute(seed());
+      Vertx vertx = Vertx.vertx();
+      DatabasePool db = DatabasePool.create(vertx, database.config());
+      try {
+        // dieselben spalten wie die listen des servers
+        photos = db.preparedQuery("bench.photos", "SELECT photoID, title, capture_date, tags, blob_hash FROM photos "
+          + "WHERE user_id = ? ORDER BY capture_date, photoID LIMIT ?", Tuple.of(1, PHOTOS)).toCompletionStage().toCompletableFuture().get();
+        albums = db.preparedQuery("bench.albums", "SELECT albumID, title, tags FROM albums WHERE user_id = ? ORDER BY albumID LIMIT ?",
+          Tuple.of(1, ALBUMS)).toCompletionStage().toCompletableFuture().get();
+        albumPhotos = db.preparedQuery("bench.albumPhotos", "SELECT p.photoID, p.title, p.capture_date, p.tags, p.blob_hash "
+          + "FROM photos p JOIN album_photos ap ON p.photoID = ap.photo_id WHERE ap.album_id = ?", Tuple.of(1))
+          .toCompletionStage().toCompletableFuture().get();
+      } finally {
+        db.close();
+        vertx.close();
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+      database.close();
+    }
+  }
+
+  /**
+   * Kleinstes Thumbnail eines Fotos aus file-uploads, wie es mit ?embed=thumb eingebettet wird
+   */
+  @State(Scope.Benchmark)
+  public static class Thumbnail {
+    Buffer data;
+
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+      try (InputStream in = Files.newInputStream(image())) {
+        data = ThumbnailGenerator.generate(in, List.of(ThumbnailGenerator.DEFAULT_SIZES.get(0))).values().iterator().next();
+      }
+    }
+  }
+
+  /**
+   * Gespeicherter Hash mit dem Kostenfaktor der Konfiguration
+   */
+  @State(Scope.Benchmark)
+  public static class Password {
+    @Param("12")
+    int cost;
+    String hash;
+
+    @Setup(Level.Trial)
+    public void hash() {
+      hash = BCrypt.withDefaults().hashToString(cost, "password".toCharArray());
+    }
+  }
+
+  /**
+   * Laufender Server mit einer Instanz gegen die eingebettete Datenbank
+   */
+  @State(Scope.Benchmark)
+  public static class Server {
+    EmbeddedDatabase database;
+    Vertx vertx;
+    WebClient client;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+      database = EmbeddedDatabase.start();
+      vertx = Vertx.vertx();
+      JsonObject config = new JsonObject()
+        .put("instances", 1)
+        .put("port", PORT)
+        .put("db", database.config())
+        .put("storage", new JsonObject().put("path", Files.createTempDirectory("photo-store").toString()));
+      vertx.deployVerticle(Deployer.class.getName(), new DeploymentOptions().setConfig(config))
+        .toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+      client = WebClient.create(vertx);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+      vertx.close().toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+      database.close();
+    }
+  }
+
+
+  @Benchmark
+  public String photoList(Rows rows) {
+    JsonArray photos = new JsonArray();
+    for (Row row : rows.photos) {
+      photos.add(MainVerticle.photoJson(row, ThumbnailGenerator.DEFAULT_SIZES.get(0)));
+    }
+    return photos.encode();
+  }
+
+  @Benchmark
+  public String albumList(Rows rows) {
+    JsonArray albums = new JsonArray();
+    for (Row row : rows.albums) {
+      albums.add(MainVerticle.albumJson(row));
+    }
+    return albums.encode();
+  }
+
+  @Benchmark
+  public String albumPhotoList(Rows rows) {
+    // der server schreibt die fotos eines albums einzeln in die gestreamte antwort
+    StringBuilder body = new StringBuilder("[");
+    for (Row row : rows.albumPhotos) {
+      if (body.length() > 1) {
+        body.append(',');
+      }
+      body.append(MainVerticle.photoJson(row, ThumbnailGenerator.DEFAULT_SIZES.get(0)).encode());
+    }
+    return body.append(']').toString();
+  }
+
+  @Benchmark
+  public String embedThumbnail(Thumbnail thumbnail) {
+    return MainVerticle.dataUrl("image/jpeg", thumbnail.data);
+  }
+
+  @Benchmark
+  public boolean bcryptVerify(Password password) {
+    return BCrypt.verifyer().verify("password".toCharArray(), password.hash).verified;
+  }
+
+  @Benchmark
+  public int routerDispatch(Server server) throws Exception {
+    // ohne anmeldung endet die anfrage nach metriken, cors, session, anmeldung und routing mit 403, ohne die datenbank zu fragen
+    return server.client.get(PORT, "localhost", "/admin/pool").send()
+      .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS).statusCode();
+  }
+
+
+  @Test
+  void run() throws Exception {
+    OptionsBuilder options = new OptionsBuilder();
+    options.include(HotPathBenchmark.class.getName() + "." + System.getProperty("benchmark.include", ""));
+    options.param("cost", System.getProperty("benchmark.cost", "12"));
+    options.forks(Integer.getInteger("benchmark.forks", 1));
+    options.warmupIterations(Integer.getInteger("benchmark.iterations", 5));
+    options.warmupTime(TimeValue.seconds(Integer.getInteger("benchmark.seconds", 2)));
+    options.measurementIterations(Integer.getInteger("benchmark.iterations", 5));
+    options.measurementTime(TimeValue.seconds(Integer.getInteger("benchmark.seconds", 2)));
+    // das bild wird auch im geforkten prozess gebraucht
+    options.jvmArgsAppend("-Dbenchmark.image=" + image().toAbsolutePath());
+
+    Collection<RunResult> results = new Runner(options.build()).run();
+    for (RunResult result : results) {
+      System.out.printf("%-16s %12.3f ± %.3f %s%n",
+        result.getParams().getBenchmark().substring(HotPathBenchmark.class.getName().length() + 1),
+        result.getPrimaryResult().getScore(), result.getPrimaryResult().getScoreError(), result.getPrimaryResult().getScoreUnit());
+    }
+    assertFalse(results.isEmpty());
+  }
+
+
+  private static Path image() {
+    return Paths.get(System.getProperty("benchmark.image", "file-uploads/25519576-44b2-479a-b53b-aef99ddfa439"));
+  }
+
+  private static List<String> seed() {
+    List<String> statements = new ArrayList<>();
+    statements.add("INSERT INTO blobs VALUES ('" + "0".repeat(64) + "', 204353, 'image/jpeg', " + PHOTOS + ")");
+    for (int i = 0; i < PHOTOS; i++) {
+      statements.add("INSERT INTO photos (title, capture_date, tags, blob_hash, blob_size, mime_type, user_id) VALUES ('Foto " + i
+        + "', DATE_ADD('2020-01-01', INTERVAL " + i + " DAY), 'urlaub, strand " + (i % 10) + "', '" + "0".repeat(64) + "', 204353, 'image/jpeg', 1)");
+    }
+    for (int i = 0; i < ALBUMS; i++) {
+      statements.add("INSERT INTO albums (title, tags, user_id) VALUES ('Album " + i + "', 'urlaub, stadt " + (i % 7) + "', 1)");
+    }
+    statements.add("INSERT INTO album_photos (album_id, photo_id) SELECT 1, photoID FROM photos");
+    return statements;
+  }
+}
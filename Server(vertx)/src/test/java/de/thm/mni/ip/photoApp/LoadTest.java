@@ -0,0 +1,359 @@
+package de.thm.mni.ip.photoApp;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.multipart.MultipartForm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lasttest des ganzen Servers gegen eine eingebettete MariaDB mit synthetischen Benutzern, Fotos und Alben. Die Bilder aus
+ * file-uploads werden einmal über die API hochgeladen und danach per SQL für alle Benutzer vervielfältigt. Die Last ist eine
+ * Mischung aus Anmelden, Galerie, Album mit eingebetteten Thumbnails, Thumbnails, Hochladen und Suche und wird mit festen Raten
+ * erzeugt (offenes Modell): Anfragen starten nach Plan, auch wenn der Server langsamer wird. Die Latenz wird ab dem geplanten
+ * Startzeitpunkt gemessen, Wartezeiten im Lastgenerator zählen also mit. Pro Rate werden Durchsatz, Quantile und Fehlerquote ausgegeben.
+ * Ausführen mit: mvn test -Dtest=LoadTest -Dbenchmark=true [-Dbenchmark.rates=50,100,200] [-Dbenchmark.seconds=20] [-Dbenchmark.warmup=5]
+ * [-Dbenchmark.users=20] [-Dbenchmark.photos=50] [-Dbenchmark.albums=5] [-Dbenchmark.instances=<Anzahl Kerne>] [-Dbenchmark.cost=12]
+ * [-Dbenchmark.mix=login=2,gallery=25,album=10,thumbnail=45,upload=3,search=15]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class LoadTest {
+
+  private static final int PORT = 18889;
+  private static final Path CORPUS = Paths.get("file-uploads");
+  private static final String DEFAULT_MIX = "login=2,gallery=25,album=10,thumbnail=45,upload=3,search=15";
+  private static final List<String> TAGS = List.of("urlaub, strand", "urlaub, berge", "stadt, nacht", "familie, geburtstag", "urlaub, stadt");
+  private static final List<String> SEARCH_TERMS = List.of("urlaub", "strand", "stadt", "berge");
+
+  /**
+   * Angemeldeter Benutzer mit den IDs seiner Fotos und Alben
+   */
+  private record User(int userID, String username, String cookie, List<Integer> photoIDs, List<Integer> albumIDs) {
+  }
+
+  /**
+   * Ergebnisse einer Anfrageart innerhalb einer Stufe
+   */
+  private static final class Result {
+    final Histogram latency = new Histogram();
+    final AtomicLong errors = new AtomicLong();
+  }
+
+  /**
+   * Ergebnisse einer Stufe mit der Zeit vom Start bis zur letzten Antwort
+   */
+  private record Step(Map<String, Result> results, double seconds) {
+  }
+
+
+  @Test
+  void openLoop() throws Exception {
+    List<Double> rates = Stream.of(System.getProperty("benchmark.rates", "50,100,200").split(","))
+      .map(String::trim).map(Double::parseDouble).collect(Collectors.toList());
+    int seconds = Integer.getInteger("benchmark.seconds", 20);
+    int warmup = Integer.getInteger("benchmark.warmup", 5);
+    int users = Integer.getInteger("benchmark.users", 20);
+    int photos = Integer.getInteger("benchmark.photos", 50);
+    int albums = Integer.getInteger("benchmark.albums", 5);
+    int instances = Integer.getInteger("benchmark.instances", Runtime.getRuntime().availableProcessors());
+    int cost = Integer.getInteger("benchmark.cost", 12);
+    Map<String, Integer> mix = mix(System.getProperty("benchmark.mix", DEFAULT_MIX));
+    if (albums == 0) {
+      mix.remove("album");
+    }
+
+    List<Path> corpus;
+    try (Stream<Path> files = Files.list(CORPUS)) {
+      corpus = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    assertTrue(!corpus.isEmpty(), "keine Bilder in " + CORPUS.toAbsolutePath());
+
+    try (EmbeddedDatabase database = EmbeddedDatabase.start()) {
+      JsonObject config = new JsonObject()
+        .put("instances", instances)
+        .put("port", PORT)
+        .put("db", database.config())
+        .put("bcrypt", new JsonObject().put("cost", cost))
+        .put("storage", new JsonObject().put("path", Files.createTempDirectory("photo-store").toString()));
+
+      // die bilder einmal über die api hochladen, damit originale und thumbnails im speicher liegen
+      Vertx setup = Vertx.vertx();
+      try {
+        deploy(setup, config);
+        WebClient client = WebClient.create(setup);
+        String cookie = await(login(client, "admin"));
+        for (int i = 0; i < corpus.size(); i++) {
+          int status = await(upload(client, 1, cookie, corpus.get(i), "Vorlage " + i, TAGS.get(i % TAGS.size())));
+          assertTrue(status == 201, "Hochladen der Vorlage " + corpus.get(i) + " fehlgeschlagen: " + status);
+        }
+      } finally {
+        await(setup.close());
+      }
+      database.execute(seed(users, photos, albums, corpus.size(), cost));
+
+      // der server für die messung lädt suchindex, tag vorschläge und benutzernamen mit den synthetischen daten
+      Vertx server = Vertx.vertx();
+      Vertx generator = Vertx.vertx();
+      try {
+        deploy(server, config);
+        WebClient client = WebClient.wrap(generator.createHttpClient(new HttpClientOptions()
+          .setDefaultHost("localhost")
+          .setDefaultPort(PORT)
+          .setKeepAlive(true), new PoolOptions().setHttp1MaxSize(Integer.getInteger("benchmark.connections", 256))));
+        List<User> accounts = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+          accounts.add(await(user(client, "user" + i)));
+        }
+
+        System.out.printf("%d Benutzer mit je %d Fotos und %d Alben, %d Instanzen, BCrypt Kosten %d, Mischung %s%n",
+          users, photos, albums, instances, cost, mix);
+        run(generator, client, accounts, corpus, mix, rates.get(0), warmup);
+        long completed = 0;
+        for (double rate : rates) {
+          completed += report(rate, run(generator, client, accounts, corpus, mix, rate, seconds));
+        }
+        assertTrue(completed > 0);
+      } finally {
+        await(generator.close());
+        await(server.close());
+      }
+    }
+  }
+
+
+  /**
+   * Sendet die Anfragen einer Stufe nach festem Plan: die i-te Anfrage startet i / rate Sekunden nach Beginn der Stufe,
+   * unabhängig davon, wie viele Anfragen noch offen sind. Art und Benutzer werden mit festem Startwert zufällig gewählt.
+   */
+  private Step run(Vertx generator, WebClient client, List<User> users, List<Path> corpus, Map<String, Integer> mix,
+                                  double rate, int seconds) throws Exception {
+    Map<String, Result> results = new LinkedHashMap<>();
+    mix.keySet().forEach(operation -> results.put(operation, new Result()));
+    int weights = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+    long total = Math.round(rate * seconds);
+    long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    CountDownLatch done = new CountDownLatch((int) total);
+    Random random = new Random(42);
+    long start = System.nanoTime();
+    AtomicLong sent = new AtomicLong();
+
+    // der timer holt nach, was seit dem letzten aufruf fällig geworden ist
+    generator.setPeriodic(1, timer -> {
+      long now = System.nanoTime();
+      while (sent.get() < total && start + sent.get() * interval <= now) {
+        long scheduled = start + sent.getAndIncrement() * interval;
+        String operation = pick(mix, weights, random);
+        User user = users.get(random.nextInt(users.size()));
+        Result result = results.get(operation);
+        send(client, operation, user, corpus, random).onComplete(ar -> {
+          result.latency.recordNanos(System.nanoTime() - scheduled);
+          if (ar.failed() || ar.result() != expected(operation)) {
+            result.errors.incrementAndGet();
+          }
+          done.countDown();
+        });
+      }
+      if (sent.get() >= total) {
+        generator.cancelTimer(timer);
+      }
+    });
+
+    assertTrue(done.await(seconds + 120L, TimeUnit.SECONDS), "nicht alle Anfragen wurden beantwortet");
+    return new Step(results, (System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Sendet eine Anfrage der gewählten Art und liefert den Statuscode
+   */
+  private Future<Integer> send(WebClient client, String operation, User user, List<Path> corpus, Random random) {
+    switch (operation) {
+      case "login":
+        return client.post("/login")
+          .timeout(30_000)
+          .sendJsonObject(new JsonObject().put("username", user.username()).put("password", "password"))
+          .map(HttpResponse::statusCode);
+      case "gallery":
+        return get(client, "/" + user.userID() + "/photos?limit=50", user);
+      case "album":
+        return get(client, "/" + user.userID() + "/albums/" + user.albumIDs().get(random.nextInt(user.albumIDs().size()))
+          + "/photos?embed=thumb", user);
+      case "thumbnail":
+        return get(client, "/photos/" + user.photoIDs().get(random.nextInt(user.photoIDs().size()))
+          + "?size=" + ThumbnailGenerator.DEFAULT_SIZES.get(0), user);
+      case "upload":
+        return upload(client, user.userID(), user.cookie(), corpus.get(random.nextInt(corpus.size())), "Upload", TAGS.get(random.nextInt(TAGS.size())));
+      case "search":
+        return get(client, "/" + user.userID() + "/photos/search?searchTerm=" + SEARCH_TERMS.get(random.nextInt(SEARCH_TERMS.size())), user);
+      default:
+        throw new IllegalArgumentException("Unbekannte Anfrageart: " + operation);
+    }
+  }
+
+  /**
+   * Gibt die Ergebnisse einer Stufe aus und liefert die Anzahl erfolgreicher Anfragen. Der Durchsatz bezieht sich auf die Zeit
+   * bis zur letzten Antwort, ein überlasteter Server erreicht die Sollrate daher nicht.
+   */
+  private long report(double rate, Step step) {
+    long requests = 0;
+    long errors = 0;
+    System.out.printf("Soll %.0f Anfragen/s, letzte Antwort nach %.1f s:%n", rate, step.seconds());
+    for (Map.Entry<String, Result> entry : step.results().entrySet()) {
+      Result result = entry.getValue();
+      long count = result.latency.count();
+      long failed = result.errors.get();
+      print(entry.getKey(), count, failed, step.seconds(), result.latency);
+      requests += count;
+      errors += failed;
+    }
+    System.out.printf("  %-10s %7d Anfragen %8.1f/s  Fehler %6.2f %%%n", "gesamt", requests, (requests - errors) / step.seconds(),
+      requests == 0 ? 0.0 : 100.0 * errors / requests);
+    return requests - errors;
+  }
+
+  private void print(String operation, long count, long failed, double seconds, Histogram latency) {
+    System.out.printf("  %-10s %7d Anfragen %8.1f/s  Fehler %6.2f %%  p50 %9.2f ms  p99 %9.2f ms  p99.9 %9.2f ms%n",
+      operation, count, (count - failed) / seconds, count == 0 ? 0.0 : 100.0 * failed / count,
+      latency.quantileSeconds(0.5) * 1000, latency.quantileSeconds(0.99) * 1000, latency.quantileSeconds(0.999) * 1000);
+  }
+
+
+  private static void deploy(Vertx vertx, JsonObject config) throws Exception {
+    await(vertx.deployVerticle(Deployer.class.getName(), new DeploymentOptions().setConfig(config)));
+  }
+
+  private static Future<String> login(WebClient client, String username) {
+    return client.post(PORT, "localhost", "/login")
+      .sendJsonObject(new JsonObject().put("username", username).put("password", "password"))
+      .map(response -> response.cookies().get(0).split(";")[0]);
+  }
+
+  /**
+   * Meldet einen synthetischen Benutzer an und liest die IDs seiner Fotos und Alben
+   */
+  private static Future<User> user(WebClient client, String username) {
+    return client.post("/login")
+      .sendJsonObject(new JsonObject().put("username", username).put("password", "password"))
+      .compose(response -> {
+        String cookie = response.cookies().get(0).split(";")[0];
+        int userID = response.bodyAsJsonObject().getInteger("userID");
+        Future<HttpResponse<Buffer>> photos = client.get("/" + userID + "/photos?limit=1000").putHeader("Cookie", cookie).send();
+        Future<HttpResponse<Buffer>> albums = client.get("/" + userID + "/albums?limit=1000").putHeader("Cookie", cookie).send();
+        return Future.all(photos, albums).map(v -> new User(userID, username, cookie,
+          ids(photos.result().bodyAsJsonArray(), "photoID"), ids(albums.result().bodyAsJsonArray(), "albumID")));
+      });
+  }
+
+  private static Future<Integer> get(WebClient client, String uri, User user) {
+    return client.get(uri)
+      .putHeader("Cookie", user.cookie())
+      .timeout(30_000)
+      .send()
+      .map(HttpResponse::statusCode);
+  }
+
+  private static Future<Integer> upload(WebClient client, int userID, String cookie, Path file, String title, String tags) {
+    return client.post(PORT, "localhost", "/" + userID + "/photos")
+      .putHeader("Cookie", cookie)
+      .timeout(30_000)
+      .sendMultipartForm(MultipartForm.create()
+        .attribute("title", title)
+        .attribute("capture_date", "2024-05-01")
+        .attribute("tags", tags)
+        .binaryFileUpload("photo", file.getFileName().toString(), file.toAbsolutePath().toString(), "image/jpeg"))
+      .map(HttpResponse::statusCode);
+  }
+
+  private static int expected(String operation) {
+    return "upload".equals(operation) ? 201 : 200;
+  }
+
+  private static String pick(Map<String, Integer> mix, int weights, Random random) {
+    int value = random.nextInt(weights);
+    for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+      value -= entry.getValue();
+      if (value < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  private static Map<String, Integer> mix(String spec) {
+    Map<String, Integer> mix = new LinkedHashMap<>();
+    for (String part : spec.split(",")) {
+      String[] weight = part.trim().split("=");
+      if (Integer.parseInt(weight[1]) > 0) {
+        mix.put(weight[0], Integer.parseInt(weight[1]));
+      }
+    }
+    return mix;
+  }
+
+  private static List<Integer> ids(JsonArray rows, String key) {
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      ids.add(rows.getJsonObject(i).getInteger(key));
+    }
+    return ids;
+  }
+
+  /**
+   * Legt Benutzer user1 bis userN an und vervielfältigt die Vorlagen des Admins (userID 1) als deren Fotos mit Thumbnails.
+   * Jedes Album enthält jedes albums-te Foto seines Besitzers, die Referenzzähler der Blobs werden zum Schluss neu berechnet.
+   */
+  private static List<String> seed(int users, int photos, int albums, int templates, int cost) {
+    String hash = BCrypt.withDefaults().hashToString(cost, "password".toCharArray());
+    List<String> statements = new ArrayList<>();
+    for (int u = 1; u <= users; u++) {
+      statements.add("INSERT INTO users (username, hashed_password, role) VALUES ('user" + u + "', '" + hash + "', 'User')");
+      for (int k = 0; k * templates < photos; k++) {
+        statements.add("INSERT INTO photos (title, capture_date, tags, blob_hash, blob_size, mime_type, user_id) "
+          + "SELECT CONCAT('Foto ', " + (k * templates) + " + photoID), DATE_ADD('2020-01-01', INTERVAL " + k + " * 7 + photoID DAY), tags, "
+          + "blob_hash, blob_size, mime_type, (SELECT userID FROM users WHERE username = 'user" + u + "') "
+          + "FROM photos WHERE user_id = 1 ORDER BY photoID LIMIT " + Math.min(templates, photos - k * templates));
+      }
+      for (int a = 0; a < albums; a++) {
+        statements.add("INSERT INTO albums (title, tags, user_id) SELECT 'Album " + a + "', '" + TAGS.get(a % TAGS.size())
+          + "', userID FROM users WHERE username = 'user" + u + "'");
+      }
+    }
+    statements.add("INSERT INTO photo_thumbnails (photo_id, size, blob_hash, blob_size) "
+      + "SELECT p.photoID, t.size, t.blob_hash, t.blob_size FROM photos p JOIN photo_thumbnails t ON t.photo_id = "
+      + "(SELECT MIN(s.photoID) FROM photos s WHERE s.user_id = 1 AND s.blob_hash = p.blob_hash) WHERE p.user_id <> 1");
+    statements.add("INSERT INTO album_photos (album_id, photo_id) SELECT a.albumID, p.photoID FROM albums a "
+      + "JOIN photos p ON p.user_id = a.user_id WHERE a.user_id <> 1 AND MOD(p.photoID, " + albums + ") = MOD(a.albumID, " + albums + ")");
+    statements.add("UPDATE blobs b SET ref_count = (SELECT COUNT(*) FROM photos WHERE blob_hash = b.hash) "
+      + "+ (SELECT COUNT(*) FROM photo_thumbnails WHERE blob_hash = b.hash)");
+    return statements;
+  }
+
+  private static <T> T await(Future<T> future) throws Exception {
+    return future.toCompletionStage().toCompletableFuture().get(120, TimeUnit.SECONDS);
+  }
+}
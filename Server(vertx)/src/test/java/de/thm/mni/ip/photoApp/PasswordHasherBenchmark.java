@@ -0,0 +1,69 @@
+package de.thm.mni.ip.photoApp;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Misst den Login Durchsatz (BCrypt Verifikationen pro Sekunde) des Hashing Pools.
+ * Ausführen mit: mvn test -Dtest=PasswordHasherBenchmark -Dbenchmark=true [-Dbenchmark.cost=12] [-Dbenchmark.seconds=10]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PasswordHasherBenchmark {
+
+  @Test
+  void loginsPerSecondPerCore() throws InterruptedException {
+    int cores = Runtime.getRuntime().availableProcessors();
+    int cost = Integer.getInteger("benchmark.cost", 12);
+    int seconds = Integer.getInteger("benchmark.seconds", 10);
+    String hash = BCrypt.withDefaults().hashToString(cost, "password".toCharArray());
+
+    Vertx vertx = Vertx.vertx();
+    PasswordHasher hasher = PasswordHasher.create(vertx, new JsonObject()
+      .put("threads", cores)
+      .put("queueSize", cores * 2)
+      .put("cost", cost));
+
+    AtomicLong completed = new AtomicLong();
+    AtomicLong rejected = new AtomicLong();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    CountDownLatch done = new CountDownLatch(cores * 2);
+
+    // pro slot immer genau eine verifikation in bearbeitung, sodass der pool ausgelastet aber nicht überlaufen ist
+    for (int i = 0; i < cores * 2; i++) {
+      vertx.runOnContext(v -> loop(hasher, hash, deadline, completed, rejected, done));
+    }
+    done.await(seconds + 30L, TimeUnit.SECONDS);
+
+    double perSecond = completed.get() / (double) seconds;
+    System.out.printf("BCrypt cost %d: %d Logins in %ds, %.1f Logins/s, %.2f Logins/s pro Kern (%d Kerne), %d abgelehnt%n",
+      cost, completed.get(), seconds, perSecond, perSecond / cores, cores, rejected.get());
+
+    hasher.close();
+    vertx.close();
+    assertTrue(completed.get() > 0);
+  }
+
+  private void loop(PasswordHasher hasher, String hash, long deadline, AtomicLong completed, AtomicLong rejected, CountDownLatch done) {
+    if (System.nanoTime() >= deadline) {
+      done.countDown();
+      return;
+    }
+    hasher.verify("password", hash).onComplete(ar -> {
+      if (ar.succeeded()) {
+        completed.incrementAndGet();
+      } else {
+        rejected.incrementAndGet();
+      }
+      loop(hasher, hash, deadline, completed, rejected, done);
+    });
+  }
+}
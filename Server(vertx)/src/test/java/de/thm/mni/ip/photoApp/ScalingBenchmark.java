@@ -0,0 +1,140 @@
+package de.thm.mni.ip.photoApp;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Misst den HTTP Durchsatz des Servers in Abhängigkeit von der Anzahl der MainVerticle Instanzen (1, 2, 4, ... bis zur Anzahl Kerne).
+ * Der Server läuft gegen eine eingebettete MariaDB, gemessen werden angemeldete Tag Vorschläge, die Routing, Session und JSON
+ * auf dem Event Loop auslasten, ohne auf die Datenbank zu warten. Lastgenerator und Server teilen sich die Kerne.
+ * Ausführen mit: mvn test -Dtest=ScalingBenchmark -Dbenchmark=true [-Dbenchmark.seconds=10] [-Dbenchmark.warmup=5] [-Dbenchmark.connections=64] [-Dbenchmark.maxInstances=<Anzahl Kerne>]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ScalingBenchmark {
+
+  private static final int PORT = 18888;
+
+  @Test
+  void requestsPerSecondByInstances() throws Exception {
+    int cores = Runtime.getRuntime().availableProcessors();
+    int seconds = Integer.getInteger("benchmark.seconds", 10);
+    int connections = Integer.getInteger("benchmark.connections", 64);
+    int maxInstances = Integer.getInteger("benchmark.maxInstances", cores);
+    int warmup = Integer.getInteger("benchmark.warmup", 5);
+
+    try (EmbeddedDatabase database = EmbeddedDatabase.start()) {
+      // tags für den admin, damit die vorschläge nicht leer sind
+      List<String> albums = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+        albums.add("INSERT INTO albums (title, tags, user_id) VALUES ('Album " + i + "', 'urlaub, strand " + (i % 50) + ", stadt " + (i % 7) + "', 1)");
+      }
+      database.execute(albums);
+
+      List<Integer> counts = new ArrayList<>();
+      for (int instances = 1; instances < maxInstances; instances *= 2) {
+        counts.add(instances);
+      }
+      counts.add(maxInstances);
+
+      double single = 0;
+      for (int instances : counts) {
+        double perSecond = measure(database, instances, warmup, seconds, connections);
+        if (instances == 1) {
+          single = perSecond;
+        }
+        System.out.printf("%2d Instanzen: %.0f Anfragen/s, Faktor %.2f gegenüber einer Instanz (%d Kerne, %d Verbindungen)%n",
+          instances, perSecond, perSecond / single, cores, connections);
+        assertTrue(perSecond > 0);
+      }
+    }
+  }
+
+  private double measure(EmbeddedDatabase database, int instances, int warmup, int seconds, int connections) throws Exception {
+    Vertx server = Vertx.vertx();
+    Vertx client = Vertx.vertx();
+    try {
+      JsonObject config = new JsonObject()
+        .put("instances", instances)
+        .put("port", PORT)
+        .put("db", database.config())
+        .put("storage", new JsonObject().put("path", Files.createTempDirectory("photo-store").toString()));
+      server.deployVerticle(Deployer.class.getName(), new DeploymentOptions().setConfig(config))
+        .toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+
+      // einmal anmelden, die session gilt in allen instanzen
+      HttpClient login = client.createHttpClient();
+      String cookie = login.request(HttpMethod.POST, PORT, "localhost", "/login")
+        .compose(request -> request.send(new JsonObject().put("username", "admin").put("password", "password").toBuffer()))
+        .map(response -> response.cookies().get(0).split(";")[0])
+        .toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+
+      // aufwärmen (jit), danach messen
+      run(client, cookie, connections, warmup);
+      long completed = run(client, cookie, connections, seconds);
+      return completed / (double) seconds;
+    } finally {
+      client.close().toCompletionStage().toCompletableFuture().get();
+      server.close().toCompletionStage().toCompletableFuture().get();
+    }
+  }
+
+  private long run(Vertx client, String cookie, int connections, int seconds) throws Exception {
+    AtomicLong completed = new AtomicLong();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    CountDownLatch done = new CountDownLatch(connections);
+
+    // der lastgenerator läuft auf allen event loops des clients, pro verbindung immer genau eine anfrage in bearbeitung
+    int generators = Math.min(connections, Runtime.getRuntime().availableProcessors());
+    AtomicLong started = new AtomicLong();
+    String deployment = client.deployVerticle(() -> new AbstractVerticle() {
+      @Override
+      public void start() {
+        long share = connections / generators + (started.getAndIncrement() < connections % generators ? 1 : 0);
+        HttpClient http = vertx.createHttpClient(new HttpClientOptions()
+          .setDefaultHost("localhost")
+          .setDefaultPort(PORT)
+          .setKeepAlive(true), new PoolOptions().setHttp1MaxSize((int) share));
+        for (int i = 0; i < share; i++) {
+          loop(http, cookie, deadline, completed, done);
+        }
+      }
+    }, new DeploymentOptions().setInstances(generators)).toCompletionStage().toCompletableFuture().get();
+
+    done.await(seconds + 30L, TimeUnit.SECONDS);
+    client.undeploy(deployment).toCompletionStage().toCompletableFuture().get();
+    return completed.get();
+  }
+
+  private void loop(HttpClient http, String cookie, long deadline, AtomicLong completed, CountDownLatch done) {
+    if (System.nanoTime() >= deadline) {
+      done.countDown();
+      return;
+    }
+    http.request(HttpMethod.GET, "/1/tags/suggest?prefix=s&limit=10")
+      .compose(request -> request.putHeader("Cookie", cookie).send())
+      .compose(response -> response.body().map(body -> response.statusCode()))
+      .onComplete(ar -> {
+        if (ar.succeeded() && ar.result() == 200) {
+          completed.incrementAndGet();
+        }
+        loop(http, cookie, deadline, completed, done);
+      });
+  }
+}
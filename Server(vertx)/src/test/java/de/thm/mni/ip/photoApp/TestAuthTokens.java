@@ -0,0 +1,129 @@
+package de.thm.mni.ip.photoApp;
+
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prüft Ausstellen und Prüfen der Anmeldetoken ohne laufenden Server
+ */
+public class TestAuthTokens {
+
+  private static final String SECRET = "0123456789abcdef0123456789abcdef";
+  private static final long NOW = 1_700_000_000L;
+
+  private final AuthTokens tokens = AuthTokens.create(new JsonObject().put("secret", SECRET).put("ttlSeconds", 60));
+
+
+  @Test
+  void issuedTokenIsVerified() {
+    AuthTokens.Principal principal = tokens.verify(tokens.issue(42, AuthTokens.ADMIN, NOW), NOW + 59);
+    assertNotNull(principal);
+    assertEquals(42, principal.userID());
+    assertTrue(principal.isAdmin());
+  }
+
+
+  @Test
+  void tamperedSignatureIsRejected() {
+    String token = tokens.issue(42, "User", NOW);
+    char last = token.charAt(token.length() - 1);
+    assertNull(tokens.verify(token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A'), NOW));
+
+    // fremder payload mit der signatur eines gültigen tokens
+    String signature = token.substring(token.indexOf('.') + 1);
+    assertNull(tokens.verify(encode("1:Admin:" + (NOW + 60)) + "." + signature, NOW));
+
+    // gleicher payload, anderer schlüssel
+    AuthTokens other = AuthTokens.create(new JsonObject().put("secret", SECRET.toUpperCase()));
+    assertNull(other.verify(token, NOW));
+  }
+
+
+  @Test
+  void expiredTokenIsRejected() {
+    String token = tokens.issue(42, "User", NOW);
+    assertNull(tokens.verify(token, NOW + 60));
+    assertNull(tokens.verify(token, NOW + 3600));
+  }
+
+
+  @Test
+  void malformedPayloadIsRejected() {
+    assertNull(tokens.verify("", NOW));
+    assertNull(tokens.verify("ohne-punkt", NOW));
+    assertNull(tokens.verify(".", NOW));
+    // korrekt signiert, aber kein gültiger inhalt
+    assertNull(tokens.verify(signed("!!!kein base64!!!"), NOW));
+    assertNull(tokens.verify(signed(encode("")), NOW));
+    assertNull(tokens.verify(signed(encode("42")), NOW));
+    assertNull(tokens.verify(signed(encode("42:User")), NOW));
+    assertNull(tokens.verify(signed(encode("x:User:" + (NOW + 60))), NOW));
+    assertNull(tokens.verify(signed(encode("42:User:bald")), NOW));
+    assertNull(tokens.verify(signed(encode("42:User:")), NOW));
+  }
+
+
+  @Test
+  void roleMayContainColons() {
+    AuthTokens.Principal principal = tokens.verify(tokens.issue(7, "Team:Admin", NOW), NOW);
+    assertNotNull(principal);
+    assertEquals(7, principal.userID());
+    assertEquals("Team:Admin", principal.role());
+    assertFalse(principal.isAdmin());
+
+    // die rolle kann weder userID noch ablaufzeit verschieben
+    assertNull(tokens.verify(signed(encode("7:Admin:" + (NOW + 60) + ":0")), NOW));
+  }
+
+
+  @Test
+  void shortSecretIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> AuthTokens.create(new JsonObject().put("secret", "geheim")));
+    assertThrows(IllegalArgumentException.class, () -> AuthTokens.create(new JsonObject().put("secret", SECRET.substring(1))));
+    // gezählt werden bytes, nicht zeichen
+    assertNotNull(AuthTokens.create(new JsonObject().put("secret", "ä".repeat(AuthTokens.MIN_SECRET_BYTES / 2))));
+  }
+
+
+  @Test
+  void generatedSecretIsUsedWithoutConfiguration() {
+    AuthTokens first = AuthTokens.create(new JsonObject());
+    AuthTokens second = AuthTokens.create(new JsonObject());
+    String token = first.issue(42, "User", NOW);
+    assertNotNull(first.verify(token, NOW));
+    assertNull(second.verify(token, NOW));
+  }
+
+
+  private static String encode(String claims) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+  }
+
+
+  /**
+   * Signiert einen beliebigen Payload mit dem Schlüssel des Tests, wie es nur der Server selbst kann
+   */
+  private static String signed(String payload) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+      byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+      return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package de.thm.mni.ip.photoApp;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prüft die Auswertung des Range Headers
+ */
+public class TestByteRange {
+
+  private static final long SIZE = 1000;
+
+
+  @Test
+  void singleRanges() {
+    assertEquals(List.of(new ByteRange(0, 99)), ByteRange.parse("bytes=0-99", SIZE));
+    assertEquals(List.of(new ByteRange(500, 999)), ByteRange.parse("bytes=500-", SIZE));
+    assertEquals(List.of(new ByteRange(900, 999)), ByteRange.parse("bytes=-100", SIZE));
+    assertEquals(List.of(new ByteRange(7, 7)), ByteRange.parse("bytes= 7-7 ", SIZE));
+  }
+
+
+  @Test
+  void rangesBeyondTheEndAreShortened() {
+    assertEquals(List.of(new ByteRange(900, 999)), ByteRange.parse("bytes=900-5000", SIZE));
+    assertEquals(List.of(new ByteRange(0, 999)), ByteRange.parse("bytes=-5000", SIZE));
+  }
+
+
+  @Test
+  void unsatisfiableRangesAreDropped() {
+    assertTrue(ByteRange.parse("bytes=1000-", SIZE).isEmpty());
+    assertTrue(ByteRange.parse("bytes=-0", SIZE).isEmpty());
+    assertTrue(ByteRange.parse("bytes=0-10", 0).isEmpty());
+    assertEquals(List.of(new ByteRange(0, 9)), ByteRange.parse("bytes=0-9,2000-3000", SIZE));
+  }
+
+
+  @Test
+  void invalidHeadersAreIgnored() {
+    assertNull(ByteRange.parse(null, SIZE));
+    assertNull(ByteRange.parse("items=0-9", SIZE));
+    assertNull(ByteRange.parse("bytes=", SIZE));
+    assertNull(ByteRange.parse("bytes=abc", SIZE));
+    assertNull(ByteRange.parse("bytes=9-0", SIZE));
+    assertNull(ByteRange.parse("bytes=--5", SIZE));
+    assertNull(ByteRange.parse("bytes=-+5", SIZE));
+    assertNull(ByteRange.parse("bytes=+1-5", SIZE));
+    assertNull(ByteRange.parse("bytes=1--5", SIZE));
+    assertNull(ByteRange.parse("bytes=0-9,x", SIZE));
+    assertNull(ByteRange.parse("bytes=0-99999999999999999999", SIZE));
+  }
+
+
+  @Test
+  void tooManyRangesAreIgnored() {
+    String header = "bytes=" + String.join(",", Collections.nCopies(ByteRange.MAX_RANGES + 1, "0-0"));
+    assertNull(ByteRange.parse(header, SIZE));
+  }
+
+
+  @Test
+  void overlappingRangesAreMerged() {
+    String header = "bytes=" + String.join(",", Collections.nCopies(ByteRange.MAX_RANGES, "0-"));
+    assertEquals(List.of(new ByteRange(0, 999)), ByteRange.parse(header, SIZE));
+    assertEquals(List.of(new ByteRange(0, 199)), ByteRange.parse("bytes=100-199,0-149", SIZE));
+    // aneinandergrenzende bereiche werden ebenfalls zusammengefasst
+    assertEquals(List.of(new ByteRange(0, 19)), ByteRange.parse("bytes=0-9,10-19", SIZE));
+    assertEquals(List.of(new ByteRange(0, 99), new ByteRange(900, 999)), ByteRange.parse("bytes=-100,0-49,50-99", SIZE));
+  }
+
+
+  @Test
+  void disjointRangesAreSortedByStart() {
+    assertEquals(List.of(new ByteRange(0, 9), new ByteRange(20, 29), new ByteRange(990, 999)),
+      ByteRange.parse("bytes=20-29,-10,0-9", SIZE));
+  }
+}
@@ -0,0 +1,80 @@
+package de.thm.mni.ip.photoApp;
+
+
+import io.vertx.sqlclient.Tuple;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prüft Kodierung und Prüfung der Cursor für die seitenweise Abfrage
+ */
+public class TestPagination {
+
+  @Test
+  void cursorRoundTrip() {
+    List<Object> keys = List.of(LocalDate.of(2024, 5, 1), 42);
+    assertEquals(keys, Pagination.decode(Pagination.encode(keys), LocalDate.class, Integer.class));
+    assertEquals(List.of(-3, 7), Pagination.decode(Pagination.encode(List.of(-3, 7)), Integer.class, Integer.class));
+  }
+
+
+  @Test
+  void cursorIsUrlSafe() {
+    // "?" und ">" ergeben im normalen base64 "/" bzw. "+"
+    String cursor = Pagination.encode(List.of("??>>", 1));
+    assertFalse(cursor.contains("/") || cursor.contains("+") || cursor.contains("="));
+    assertEquals("??>>|1", new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+  }
+
+
+  @Test
+  void invalidCursorIsRejected() {
+    assertInvalid("!!!kein base64!!!", Integer.class);
+    assertInvalid(Pagination.encode(List.of(1, 2)), Integer.class);
+    assertInvalid(Pagination.encode(List.of(1)), Integer.class, Integer.class);
+    assertInvalid(cursor("x|1"), Integer.class, Integer.class);
+    assertInvalid(cursor("|1"), Integer.class, Integer.class);
+    assertInvalid(cursor("2024-13-01|1"), LocalDate.class, Integer.class);
+    assertInvalid(cursor("1|2024-05-01"), LocalDate.class, Integer.class);
+    assertInvalid(cursor("99999999999"), Integer.class);
+  }
+
+
+  @Test
+  void bindAppendsCursorAndFetchSize() {
+    Pagination first = new Pagination(10, List.of());
+    assertTrue(first.first());
+    assertEquals(11, first.fetchSize());
+    Tuple firstParams = first.bind(Tuple.of(5));
+    assertEquals(2, firstParams.size());
+    assertEquals(11, firstParams.getInteger(1));
+
+    Pagination next = new Pagination(10, List.of(LocalDate.of(2024, 5, 1), 42));
+    assertFalse(next.first());
+    Tuple nextParams = next.bind(Tuple.of(5));
+    assertEquals(4, nextParams.size());
+    assertEquals(LocalDate.of(2024, 5, 1), nextParams.getLocalDate(1));
+    assertEquals(42, nextParams.getInteger(2));
+    assertEquals(11, nextParams.getInteger(3));
+  }
+
+
+  private static String cursor(String keys) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(keys.getBytes(StandardCharsets.UTF_8));
+  }
+
+
+  private static void assertInvalid(String cursor, Class<?>... keyTypes) {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Pagination.decode(cursor, keyTypes));
+    assertEquals("Ungültiger Cursor", e.getMessage());
+  }
+}
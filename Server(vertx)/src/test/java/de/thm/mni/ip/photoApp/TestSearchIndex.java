@@ -0,0 +1,106 @@
+package de.thm.mni.ip.photoApp;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prüft Zerlegung, Relevanz und Pflege des invertierten Suchindex
+ */
+public class TestSearchIndex {
+
+  @Test
+  void tokenizeSplitsOnNonLetters() {
+    assertEquals(List.of("urlaub", "am", "strand", "2024"), SearchIndex.tokenize("Urlaub am Strand, 2024!"));
+    assertEquals(List.of("grüße", "köln"), SearchIndex.tokenize("Grüße-Köln"));
+    assertEquals(List.of("strand"), SearchIndex.tokenize("strand Strand STRAND"));
+    assertEquals(List.of(), SearchIndex.tokenize(null));
+    assertEquals(List.of(), SearchIndex.tokenize("  ,.- "));
+  }
+
+
+  @Test
+  void titleAndExactMatchesRankFirst() {
+    SearchIndex index = new SearchIndex();
+    index.put(1, 13, "Urlaub", "strandbar");
+    index.put(1, 12, "Urlaub", "strand");
+    index.put(1, 11, "Strandkorb", null);
+    index.put(1, 10, "Strand", null);
+    index.put(1, 14, "Berge", "wandern");
+
+    // titel ganz 4, titel präfix 2, tag ganz 2, tag präfix 1; gleiche relevanz nach id
+    assertEquals(List.of(new SearchIndex.Hit(10, 4), new SearchIndex.Hit(11, 2), new SearchIndex.Hit(12, 2), new SearchIndex.Hit(13, 1)),
+      index.search(1, "strand"));
+    // titel und tag mit demselben wort zählen zusammen
+    index.put(1, 15, "Strand", "Strand");
+    assertEquals(new SearchIndex.Hit(15, 6), index.search(1, "STRAND").get(0));
+  }
+
+
+  @Test
+  void allTermsMustMatch() {
+    SearchIndex index = new SearchIndex();
+    index.put(1, 1, "Urlaub", "strand");
+    index.put(1, 2, "Urlaub", "strandbar");
+    index.put(1, 3, "Urlaub", "berge");
+    index.put(1, 4, "Strand", null);
+
+    assertEquals(List.of(new SearchIndex.Hit(1, 6), new SearchIndex.Hit(2, 5)), index.search(1, "urlaub strand"));
+    assertEquals(List.of(new SearchIndex.Hit(1, 6), new SearchIndex.Hit(2, 5)), index.search(1, "strand, urlaub"));
+    assertEquals(List.of(), index.search(1, "urlaub meer"));
+  }
+
+
+  @Test
+  void emptyQueryListsAllEntries() {
+    SearchIndex index = new SearchIndex();
+    index.put(1, 3, "C", null);
+    index.put(1, 1, "A", null);
+    index.put(1, 2, "B", null);
+
+    assertEquals(List.of(new SearchIndex.Hit(1, 0), new SearchIndex.Hit(2, 0), new SearchIndex.Hit(3, 0)), index.search(1, " "));
+    assertEquals(List.of(), index.search(2, ""));
+  }
+
+
+  @Test
+  void putReplacesAndRemoveDropsPostings() {
+    SearchIndex index = new SearchIndex();
+    index.put(1, 1, "Strand", "urlaub");
+    index.put(1, 2, "Strandkorb", null);
+    index.put(2, 1, "Strand", null);
+
+    index.put(1, 1, "Berge", null);
+    assertEquals(List.of(new SearchIndex.Hit(2, 2)), index.search(1, "strand"));
+    assertEquals(List.of(), index.search(1, "urlaub"));
+    assertEquals(List.of(new SearchIndex.Hit(1, 4)), index.search(1, "berge"));
+
+    index.remove(1, 2);
+    index.remove(1, 2);
+    index.remove(3, 1);
+    assertEquals(List.of(), index.search(1, "strand"));
+    assertEquals(List.of(new SearchIndex.Hit(1, 4)), index.search(2, "strand"));
+    assertEquals(2, index.stats().getInteger("documents"));
+    assertEquals(2, index.stats().getInteger("tokens"));
+
+    index.removeUser(2);
+    assertEquals(List.of(), index.search(2, "strand"));
+    assertEquals(1, index.stats().getInteger("users"));
+  }
+
+
+  @Test
+  void hitIsAfterCursorInRelevanceOrder() {
+    List<Object> cursor = List.of(2, 11);
+    assertTrue(new SearchIndex.Hit(12, 2).after(cursor));
+    assertTrue(new SearchIndex.Hit(1, 1).after(cursor));
+    assertFalse(new SearchIndex.Hit(11, 2).after(cursor));
+    assertFalse(new SearchIndex.Hit(10, 2).after(cursor));
+    assertFalse(new SearchIndex.Hit(99, 4).after(cursor));
+  }
+}
@@ -0,0 +1,109 @@
+package de.thm.mni.ip.photoApp;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Prüft Pflege und Abfrage des Präfixbaums für die Tag Vorschläge
+ */
+public class TestTagSuggestions {
+
+  @Test
+  void putReplacesAndRemoveDropsTags() {
+    TagSuggestions suggestions = new TagSuggestions();
+    suggestions.put(1, TagSuggestions.photo(1), "Urlaub, Strand");
+    suggestions.put(1, TagSuggestions.album(1), "urlaub");
+    assertEquals(List.of(suggestion("urlaub", 2), suggestion("strand", 1)), suggestions.suggest(1, "", 10));
+
+    // ersetzen zählt die alten tags herunter
+    suggestions.put(1, TagSuggestions.photo(1), "Berge");
+    assertEquals(List.of(suggestion("berge", 1), suggestion("urlaub", 1)), suggestions.suggest(1, "", 10));
+    assertEquals(List.of(), suggestions.suggest(1, "s", 10));
+    assertEquals(2, suggestions.stats().getInteger("tags"));
+
+    suggestions.remove(1, TagSuggestions.album(1));
+    suggestions.remove(1, TagSuggestions.album(1));
+    suggestions.remove(1, TagSuggestions.photo(99));
+    assertEquals(List.of(suggestion("berge", 1)), suggestions.suggest(1, "", 10));
+
+    suggestions.put(1, TagSuggestions.photo(1), null);
+    assertEquals(List.of(), suggestions.suggest(1, "", 10));
+    assertEquals(0, suggestions.stats().getInteger("tags"));
+  }
+
+
+  @Test
+  void removingPrefixTagKeepsLongerTag() {
+    TagSuggestions suggestions = new TagSuggestions();
+    suggestions.put(1, TagSuggestions.photo(1), "ab");
+    suggestions.put(1, TagSuggestions.photo(2), "abc");
+
+    suggestions.remove(1, TagSuggestions.photo(1));
+    assertEquals(List.of(suggestion("abc", 1)), suggestions.suggest(1, "ab", 10));
+    assertEquals(List.of(suggestion("abc", 1)), suggestions.suggest(1, "a", 10));
+    assertEquals(1, suggestions.stats().getInteger("tags"));
+
+    // der kürzere tag kann danach wieder vergeben werden
+    suggestions.put(1, TagSuggestions.photo(1), "ab");
+    assertEquals(List.of(suggestion("ab", 1), suggestion("abc", 1)), suggestions.suggest(1, "ab", 10));
+  }
+
+
+  @Test
+  void removingLongerTagKeepsPrefixTag() {
+    TagSuggestions suggestions = new TagSuggestions();
+    suggestions.put(1, TagSuggestions.photo(1), "ab");
+    suggestions.put(1, TagSuggestions.photo(2), "abc");
+
+    suggestions.remove(1, TagSuggestions.photo(2));
+    assertEquals(List.of(suggestion("ab", 1)), suggestions.suggest(1, "a", 10));
+    assertEquals(List.of(), suggestions.suggest(1, "abc", 10));
+
+    suggestions.remove(1, TagSuggestions.photo(1));
+    assertEquals(List.of(), suggestions.suggest(1, "", 10));
+    assertEquals(0, suggestions.stats().getInteger("tags"));
+  }
+
+
+  @Test
+  void topSuggestionsAreOrderedByFrequencyThenAlphabetically() {
+    TagSuggestions suggestions = new TagSuggestions();
+    suggestions.put(1, TagSuggestions.photo(1), "rot, blau, grün");
+    suggestions.put(1, TagSuggestions.photo(2), "rot, blau");
+    suggestions.put(1, TagSuggestions.photo(3), "gelb, rot");
+    suggestions.put(1, TagSuggestions.album(1), "gelb");
+
+    assertEquals(List.of(suggestion("rot", 3), suggestion("blau", 2), suggestion("gelb", 2), suggestion("grün", 1)),
+      suggestions.suggest(1, "", 10));
+    assertEquals(List.of(suggestion("rot", 3), suggestion("blau", 2), suggestion("gelb", 2)), suggestions.suggest(1, null, 3));
+    assertEquals(List.of(suggestion("gelb", 2), suggestion("grün", 1)), suggestions.suggest(1, " G ", 10));
+    assertEquals(List.of(suggestion("gelb", 2)), suggestions.suggest(1, "g", 1));
+    assertEquals(List.of(), suggestions.suggest(1, "g", 0));
+    assertEquals(List.of(), suggestions.suggest(1, "x", 10));
+  }
+
+
+  @Test
+  void usersAreSeparated() {
+    TagSuggestions suggestions = new TagSuggestions();
+    suggestions.put(1, TagSuggestions.photo(1), "urlaub");
+    suggestions.put(2, TagSuggestions.photo(1), "arbeit");
+
+    assertEquals(List.of(suggestion("urlaub", 1)), suggestions.suggest(1, "", 10));
+    assertEquals(List.of(suggestion("arbeit", 1)), suggestions.suggest(2, "", 10));
+    assertEquals(List.of(), suggestions.suggest(3, "", 10));
+
+    suggestions.removeUser(1);
+    assertEquals(List.of(), suggestions.suggest(1, "", 10));
+    assertEquals(1, suggestions.stats().getInteger("users"));
+  }
+
+
+  private static TagSuggestions.Suggestion suggestion(String tag, int count) {
+    return new TagSuggestions.Suggestion(tag, count);
+  }
+}
@@ -0,0 +1,137 @@
+package de.thm.mni.ip.photoApp;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prüft Editierdistanz, Suche und Pflege des Trigramm Index über die Benutzernamen
+ */
+public class TestUsernameIndex {
+
+  @Test
+  void distanceCountsTranspositionAsOneEdit() {
+    assertEquals(0, UsernameIndex.distance("markus", "markus", 1));
+    assertEquals(1, UsernameIndex.distance("markus", "mrakus", 1));
+    assertEquals(1, UsernameIndex.distance("markus", "marksu", 1));
+    // zwei vertauschungen liegen über max 1, aber genau auf max 2
+    assertEquals(2, UsernameIndex.distance("markus", "amrksu", 1));
+    assertEquals(2, UsernameIndex.distance("markus", "amrksu", 2));
+  }
+
+
+  @Test
+  void distanceCountsInsertAndDeleteAtBoundary() {
+    assertEquals(1, UsernameIndex.distance("anna", "anxna", 1));
+    assertEquals(1, UsernameIndex.distance("anxna", "anna", 1));
+    assertEquals(2, UsernameIndex.distance("anna", "xanxna", 2));
+    // längenunterschied über max wird ohne matrix abgelehnt
+    assertEquals(2, UsernameIndex.distance("anna", "xanxna", 1));
+    assertEquals(3, UsernameIndex.distance("anna", "annabel", 2));
+    // abbruch sobald zwei zeilen über max liegen, das ergebnis ist dann max + 1
+    assertEquals(2, UsernameIndex.distance("aaaaaaaa", "bbbbbbbb", 1));
+    assertEquals(3, UsernameIndex.distance("aaaaaaaa", "bbbbbbbb", 2));
+  }
+
+
+  @Test
+  void typoToleranceDependsOnQueryLength() {
+    UsernameIndex index = new UsernameIndex();
+    index.put(1, "Markus");
+    index.put(2, "Johannes");
+    index.put(3, "Marlene");
+
+    // ab 4 zeichen ein fehler, ab 8 zeichen zwei
+    assertEquals(List.of(1), ids(index.search("mrakus", 10)));
+    assertEquals(List.of(2), ids(index.search("johannse", 10)));
+    assertEquals(List.of(2), ids(index.search("jhoannse", 10)));
+    assertEquals(List.of(), ids(index.search("mrkaus", 10)));
+    assertEquals(List.of(), ids(index.search("amrlnee", 10)));
+    // unter 4 zeichen keine tippfehler
+    assertEquals(List.of(), ids(index.search("mra", 10)));
+  }
+
+
+  @Test
+  void shortQueryMatchesStartAndEnd() {
+    UsernameIndex index = new UsernameIndex();
+    index.put(1, "Anna");
+    index.put(2, "Hanna");
+    index.put(3, "Jan");
+    index.put(4, "Bob");
+
+    assertEquals(List.of(1), ids(index.search("a", 10)));
+    assertEquals(List.of(1, 3), ids(index.search("an", 10)));
+    assertEquals(List.of(4), ids(index.search(" B ", 10)));
+    assertEquals(List.of(), ids(index.search("x", 10)));
+  }
+
+
+  @Test
+  void hitsAreRankedExactPrefixContainsTypo() {
+    UsernameIndex index = new UsernameIndex();
+    // ids absichtlich umgekehrt zur erwarteten reihenfolge
+    index.put(1, "anan");
+    index.put(2, "Johanna");
+    index.put(3, "Annabelle");
+    index.put(4, "Anna");
+    index.put(5, "Bob");
+
+    List<UsernameIndex.Hit> hits = index.search("anna", 10);
+    assertEquals(List.of(4, 3, 2, 1), ids(hits));
+    assertEquals("Anna", hits.get(0).username());
+    for (int i = 1; i < hits.size(); i++) {
+      assertTrue(hits.get(i - 1).score() > hits.get(i).score());
+    }
+    assertEquals(List.of(4, 3), ids(index.search("ANNA", 2)));
+    assertEquals(List.of(), index.search("anna", 0));
+  }
+
+
+  @Test
+  void emptyQueryListsFirstUsers() {
+    UsernameIndex index = new UsernameIndex();
+    index.put(3, "Carla");
+    index.put(1, "Anna");
+    index.put(2, "Bob");
+
+    assertEquals(List.of(1, 2), ids(index.search("", 2)));
+    assertEquals(List.of(1, 2, 3), ids(index.search(null, 10)));
+  }
+
+
+  @Test
+  void renameAndRemoveUpdatePostings() {
+    UsernameIndex index = new UsernameIndex();
+    index.put(1, "Alice");
+    index.put(2, "Alina");
+
+    index.put(1, "Bob");
+    // der alte name findet nur noch den ähnlichen namen des anderen benutzers
+    assertEquals(List.of(2), ids(index.search("alice", 10)));
+    assertEquals(List.of(2), ids(index.search("ali", 10)));
+    List<UsernameIndex.Hit> renamed = index.search("bob", 10);
+    assertEquals(List.of(1), ids(renamed));
+    assertEquals("Bob", renamed.get(0).username());
+    assertEquals(2, index.stats().getInteger("users"));
+    assertEquals(UsernameIndex.trigrams("Alina").size() + UsernameIndex.trigrams("Bob").size(), index.stats().getInteger("trigrams"));
+
+    index.remove(1);
+    index.remove(1);
+    assertEquals(List.of(), ids(index.search("bob", 10)));
+    assertEquals(UsernameIndex.trigrams("Alina").size(), index.stats().getInteger("trigrams"));
+
+    index.remove(2);
+    assertEquals(0, index.stats().getInteger("users"));
+    assertEquals(0, index.stats().getInteger("trigrams"));
+  }
+
+
+  private static List<Integer> ids(List<UsernameIndex.Hit> hits) {
+    return hits.stream().map(UsernameIndex.Hit::userID).toList();
+  }
+}
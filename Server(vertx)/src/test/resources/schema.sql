@@ -0,0 +1,92 @@
+-- Datenbankstruktur aus der README für Benchmarks und Lasttests gegen eine eingebettete MariaDB
+-- Tabelle für Benutzer
+CREATE TABLE users (
+  userID INT AUTO_INCREMENT PRIMARY KEY,
+  username VARCHAR(50) NOT NULL UNIQUE,
+  hashed_password VARCHAR(255) NOT NULL,
+  role ENUM('Admin', 'User') NOT NULL
+);
+
+-- Inhaltsadressierter Speicher: eine Zeile pro gespeicherter Datei mit Anzahl der Referenzen
+CREATE TABLE blobs (
+  hash CHAR(64) PRIMARY KEY,
+  size BIGINT NOT NULL,
+  mime_type VARCHAR(100) NOT NULL,
+  ref_count INT NOT NULL
+);
+
+-- Tabelle für Fotos
+CREATE TABLE photos (
+  photoID INT AUTO_INCREMENT PRIMARY KEY,
+  title VARCHAR(50) NOT NULL,
+  capture_date DATE NOT NULL,
+  tags VARCHAR(255),
+  blob_hash CHAR(64) NOT NULL,
+  blob_size BIGINT NOT NULL,
+  mime_type VARCHAR(100) NOT NULL,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  user_id INT,
+  FOREIGN KEY (user_id) REFERENCES users(userID),
+  FOREIGN KEY (blob_hash) REFERENCES blobs(hash)
+);
+
+-- Tabelle für Fotoalben
+CREATE TABLE albums (
+  albumID INT AUTO_INCREMENT PRIMARY KEY,
+  title VARCHAR(50) NOT NULL,
+  tags VARCHAR(255),
+  user_id INT,
+  FOREIGN KEY (user_id) REFERENCES users(userID)
+);
+
+-- Verknüpfungstabelle zwischen Alben und Fotos
+CREATE TABLE album_photos (
+  album_id INT,
+  photo_id INT,
+  PRIMARY KEY (album_id, photo_id),
+  FOREIGN KEY (album_id) REFERENCES albums(albumID),
+  FOREIGN KEY (photo_id) REFERENCES photos(photoID)
+);
+
+-- Tabelle für die beim Hochladen erzeugten Thumbnails (längste Kante in Pixeln)
+CREATE TABLE photo_thumbnails (
+  photo_id INT,
+  size INT,
+  blob_hash CHAR(64) NOT NULL,
+  blob_size BIGINT NOT NULL,
+  PRIMARY KEY (photo_id, size),
+  FOREIGN KEY (photo_id) REFERENCES photos(photoID) ON DELETE CASCADE,
+  FOREIGN KEY (blob_hash) REFERENCES blobs(hash)
+);
+
+-- Normalisierte Tags: jeder Tag einmal, Zuordnungen zu Fotos und Alben
+CREATE TABLE tags (
+  tagID INT AUTO_INCREMENT PRIMARY KEY,
+  name VARCHAR(50) NOT NULL UNIQUE
+);
+
+CREATE TABLE photo_tags (
+  photo_id INT,
+  tag_id INT,
+  PRIMARY KEY (photo_id, tag_id),
+  INDEX idx_photo_tags_tag (tag_id, photo_id),
+  FOREIGN KEY (photo_id) REFERENCES photos(photoID) ON DELETE CASCADE,
+  FOREIGN KEY (tag_id) REFERENCES tags(tagID)
+);
+
+CREATE TABLE album_tags (
+  album_id INT,
+  tag_id INT,
+  PRIMARY KEY (album_id, tag_id),
+  INDEX idx_album_tags_tag (tag_id, album_id),
+  FOREIGN KEY (album_id) REFERENCES albums(albumID) ON DELETE CASCADE,
+  FOREIGN KEY (tag_id) REFERENCES tags(tagID)
+);
+
+-- Indizes für die seitenweise Abfrage, jede Seite ist damit ein Bereichsscan
+CREATE INDEX idx_photos_user_date ON photos (user_id, capture_date, photoID);
+CREATE INDEX idx_albums_user ON albums (user_id, albumID);
+
+-- Admin Benutzer erstellen
+INSERT INTO users (username, hashed_password, role) VALUES ('admin',
+  '$2y$12$XbAaafk7KK9RxVKoHbtPmefzOMTyCvCgpKlPhEsPIuJwFW4Q6jV32', 'Admin');